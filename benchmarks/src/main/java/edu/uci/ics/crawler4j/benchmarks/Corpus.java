@@ -0,0 +1,96 @@
+package edu.uci.ics.crawler4j.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The pages and URLs the benchmarks run on. Pages are read from the .html
+ * files of the folder set in the crawler4j.corpus system property, or
+ * generated if it is not set. Generated data is the same on every run.
+ */
+public class Corpus {
+
+	public static List<byte[]> pages() throws Exception {
+		String folder = System.getProperty("crawler4j.corpus");
+		if (folder != null) {
+			List<byte[]> pages = new ArrayList<>();
+			File[] files = new File(folder).listFiles();
+			if (files != null) {
+				for (File file : files) {
+					if (file.getName().endsWith(".html")) {
+						pages.add(Files.readAllBytes(file.toPath()));
+					}
+				}
+			}
+			if (!pages.isEmpty()) {
+				return pages;
+			}
+		}
+		return generatePages(200);
+	}
+
+	public static List<byte[]> generatePages(int count) throws Exception {
+		Random random = new Random(42);
+		List<byte[]> pages = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			StringBuilder sb = new StringBuilder();
+			sb.append("<!DOCTYPE html><html><head><meta charset=\"UTF-8\"><title>Page ").append(i).append("</title>");
+			sb.append("<link rel=\"stylesheet\" href=\"/style.css\"></head><body>");
+			int paragraphs = 20 + random.nextInt(40);
+			for (int p = 0; p < paragraphs; p++) {
+				sb.append("<div><p>Lorem ipsum dolor sit amet, consectetur adipiscing elit &amp; sed do eiusmod ");
+				sb.append("tempor incididunt ut labore et dolore magna aliqua.</p><ul>");
+				for (int l = 0; l < 5; l++) {
+					sb.append("<li><a href=\"").append(href(random)).append("\">Link ").append(l).append("</a></li>");
+				}
+				sb.append("</ul></div>");
+			}
+			sb.append("</body></html>");
+			pages.add(sb.toString().getBytes("UTF-8"));
+		}
+		return pages;
+	}
+
+	/**
+	 * Returns a mix of absolute and relative links, like the ones found in
+	 * pages.
+	 */
+	public static String[] hrefs(int count) {
+		Random random = new Random(42);
+		String[] hrefs = new String[count];
+		for (int i = 0; i < count; i++) {
+			hrefs[i] = href(random);
+		}
+		return hrefs;
+	}
+
+	/**
+	 * Returns absolute URLs of a few hundred hosts.
+	 */
+	public static String[] urls(int count) {
+		Random random = new Random(42);
+		String[] urls = new String[count];
+		for (int i = 0; i < count; i++) {
+			urls[i] = "http://www" + random.nextInt(10) + ".example" + random.nextInt(50) + ".co.uk/dir"
+					+ random.nextInt(100) + "/page" + i + ".html?b=" + random.nextInt(1000) + "&a=" + i;
+		}
+		return urls;
+	}
+
+	private static String href(Random random) {
+		int target = random.nextInt(100000);
+		switch (random.nextInt(4)) {
+		case 0:
+			return "http://www.example" + (target % 50) + ".com/page/" + target + ".html?ref=1&amp;b=" + target;
+		case 1:
+			return "/section/" + (target % 20) + "/page" + target + ".html";
+		case 2:
+			return "../other/./page" + target + ".html#top";
+		default:
+			return "page" + target + ".html";
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package edu.uci.ics.crawler4j.benchmarks;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sapienapps.scrawler.crawler.CrawlConfig;
+import com.sapienapps.scrawler.crawler.Page;
+import com.sapienapps.scrawler.fetcher.PageFetchResult;
+import edu.uci.ics.crawler4j.crawler.CrawlController;
+import edu.uci.ics.crawler4j.crawler.WebCrawler;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.robotstxt.RobotsTxtConfig;
+import edu.uci.ics.crawler4j.robotstxt.RobotsTxtServer;
+import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.IO;
+
+/**
+ * Crawls a {@link SyntheticWeb} and reports the throughput, the fetch latency
+ * percentiles and the heap and GC usage of the crawl. Arguments are
+ * name=value pairs, which set either a field of SyntheticWeb, "threads", or
+ * a CrawlConfig value, for example:
+ *
+ * <pre>
+ * threads=50 hosts=20 pagesPerHost=500 latencyMillis=20 politenessDelay=0 inMemoryFrontier=true
+ * </pre>
+ */
+public class CrawlThroughputBenchmark {
+
+	private static final AtomicLong visitedPages = new AtomicLong();
+	private static final AtomicLong lastVisitTime = new AtomicLong();
+
+	public static class BenchmarkCrawler extends WebCrawler<Void> {
+
+		@Override
+		public void visit(Page page) {
+			visitedPages.incrementAndGet();
+			lastVisitTime.set(System.nanoTime());
+		}
+	}
+
+	/**
+	 * Records the duration of every fetch.
+	 */
+	static class TimedPageFetcher extends PageFetcher {
+
+		private final List<Long> latencies = new ArrayList<>();
+
+		TimedPageFetcher(CrawlConfig config) {
+			super(config);
+		}
+
+		@Override
+		public PageFetchResult fetchHeader(WebURL webUrl) {
+			long start = System.nanoTime();
+			PageFetchResult fetchResult = super.fetchHeader(webUrl);
+			long latency = System.nanoTime() - start;
+			synchronized (latencies) {
+				latencies.add(latency);
+			}
+			return fetchResult;
+		}
+
+		long[] getLatencies() {
+			synchronized (latencies) {
+				long[] result = new long[latencies.size()];
+				for (int i = 0; i < result.length; i++) {
+					result[i] = latencies.get(i);
+				}
+				return result;
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		SyntheticWeb web = new SyntheticWeb();
+		CrawlConfig config = new CrawlConfig();
+		config.politenessDelay_$eq(0);
+		int threads = 20;
+		for (String arg : args) {
+			int eq = arg.indexOf('=');
+			if (eq < 0) {
+				throw new IllegalArgumentException("Arguments should be name=value pairs: " + arg);
+			}
+			String name = arg.substring(0, eq);
+			String value = arg.substring(eq + 1);
+			if (name.equals("threads")) {
+				threads = Integer.parseInt(value);
+			} else if (!setField(web, name, value) && !setConfig(config, name, value)) {
+				throw new IllegalArgumentException("Unknown argument: " + name);
+			}
+		}
+
+		web.start();
+		try {
+			run(web, config, threads);
+		} finally {
+			web.stop();
+		}
+	}
+
+	public static void run(SyntheticWeb web, CrawlConfig config, int threads) throws Exception {
+		java.io.File folder = Files.createTempDirectory("crawler4j-throughput").toFile();
+		config.crawlStorageFolder_$eq(folder.getAbsolutePath());
+		config.maxPagesToFetch_$eq(web.getNumberOfPages());
+		visitedPages.set(0);
+
+		TimedPageFetcher pageFetcher = new TimedPageFetcher(config);
+		RobotsTxtServer robotstxtServer = new RobotsTxtServer(new RobotsTxtConfig(), pageFetcher);
+		CrawlController<Void, BenchmarkCrawler> controller = new CrawlController<>(config, pageFetcher,
+				robotstxtServer);
+		for (int i = 0; i < web.hosts; i++) {
+			controller.addSeed(web.getUrl(i, 0));
+		}
+
+		long gcCount = getGcCount();
+		long gcTime = getGcTime();
+		long start = System.nanoTime();
+		lastVisitTime.set(start);
+		controller.start(BenchmarkCrawler.class, threads);
+		double seconds = (lastVisitTime.get() - start) / 1e9;
+
+		long[] latencies = pageFetcher.getLatencies();
+		Arrays.sort(latencies);
+		Runtime runtime = Runtime.getRuntime();
+		System.out.printf("Visited %d pages in %.2f s with %d threads: %.0f pages/s%n", visitedPages.get(), seconds,
+				threads, visitedPages.get() / seconds);
+		System.out.printf("Fetch latency (ms): p50 %.1f, p90 %.1f, p99 %.1f, max %.1f%n", percentile(latencies, 0.5),
+				percentile(latencies, 0.9), percentile(latencies, 0.99), percentile(latencies, 1.0));
+		System.out.printf("Heap used: %d MB of %d MB, GC: %d collections, %d ms%n",
+				(runtime.totalMemory() - runtime.freeMemory()) >> 20, runtime.maxMemory() >> 20, getGcCount() - gcCount,
+				getGcTime() - gcTime);
+
+		IO.deleteFolder(folder);
+	}
+
+	private static double percentile(long[] sorted, double p) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, index)] / 1e6;
+	}
+
+	private static long getGcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long getGcTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += Math.max(0, gc.getCollectionTime());
+		}
+		return time;
+	}
+
+	private static boolean setField(Object object, String name, String value) throws Exception {
+		Field field;
+		try {
+			field = object.getClass().getField(name);
+		} catch (NoSuchFieldException e) {
+			return false;
+		}
+		field.set(object, parse(field.getType(), value));
+		return true;
+	}
+
+	/**
+	 * Sets the CrawlConfig value with the given name through its Scala
+	 * setter.
+	 */
+	private static boolean setConfig(CrawlConfig config, String name, String value) throws Exception {
+		for (Method method : CrawlConfig.class.getMethods()) {
+			if (method.getName().equals(name + "_$eq") && method.getParameterTypes().length == 1) {
+				method.invoke(config, parse(method.getParameterTypes()[0], value));
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Object parse(Class<?> type, String value) {
+		if (type == int.class) {
+			return Integer.parseInt(value);
+		}
+		if (type == long.class) {
+			return Long.parseLong(value);
+		}
+		if (type == double.class) {
+			return Double.parseDouble(value);
+		}
+		if (type == boolean.class) {
+			return Boolean.parseBoolean(value);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,112 @@
+package edu.uci.ics.crawler4j.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.sapienapps.scrawler.crawler.CrawlConfig;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import edu.uci.ics.crawler4j.frontier.DocIDServer;
+import edu.uci.ics.crawler4j.frontier.InMemoryWorkQueues;
+import edu.uci.ics.crawler4j.frontier.OffHeapDocIDServer;
+import edu.uci.ics.crawler4j.frontier.WorkQueues;
+import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.IO;
+
+/**
+ * Throughput of the pending URL queues and of the docid servers of a
+ * non-resumable crawl.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FrontierBenchmark {
+
+	private static final int NUM_URLS = 1 << 16;
+
+	@Param({ "berkeley", "memory" })
+	public String storage;
+
+	private File folder;
+	private Environment env;
+	private WorkQueues workQueues;
+	private DocIDServer docIdServer;
+	private String[] urls;
+	private int docId;
+	private int next;
+
+	@Setup(Level.Iteration)
+	public void setUp() throws Exception {
+		folder = Files.createTempDirectory("crawler4j-benchmark").toFile();
+		CrawlConfig config = new CrawlConfig();
+		config.crawlStorageFolder_$eq(folder.getAbsolutePath());
+		if (storage.equals("berkeley")) {
+			EnvironmentConfig envConfig = new EnvironmentConfig();
+			envConfig.setAllowCreate(true);
+			envConfig.setTransactional(false);
+			envConfig.setLocking(false);
+			env = new Environment(folder, envConfig);
+			workQueues = new WorkQueues(env, "PendingURLsDB", false);
+			docIdServer = new DocIDServer(env, config);
+		} else {
+			workQueues = new InMemoryWorkQueues();
+			docIdServer = new OffHeapDocIDServer(config, null);
+		}
+		urls = Corpus.urls(NUM_URLS);
+		for (int i = 0; i < NUM_URLS / 2; i++) {
+			docIdServer.getNewDocID(urls[i]);
+		}
+		docId = 0;
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		workQueues.close();
+		docIdServer.close();
+		if (env != null) {
+			env.close();
+			env = null;
+		}
+		IO.deleteFolder(folder);
+	}
+
+	private String nextUrl() {
+		next = (next + 1) & (NUM_URLS - 1);
+		return urls[next];
+	}
+
+	@Benchmark
+	public int getDocId() {
+		return docIdServer.getDocId(nextUrl());
+	}
+
+	@Benchmark
+	public int getNewDocId() {
+		return docIdServer.getNewDocID(nextUrl() + "#" + docId++);
+	}
+
+	@Benchmark
+	public List<WebURL> putAndTake() {
+		for (int i = 0; i < 50; i++) {
+			WebURL webUrl = new WebURL();
+			webUrl.setURL(nextUrl());
+			webUrl.setDocid(++docId);
+			webUrl.setDepth((short) (docId % 5));
+			workQueues.put(webUrl);
+		}
+		return workQueues.take(50, null);
+	}
+}
@@ -0,0 +1,52 @@
+package edu.uci.ics.crawler4j.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.uci.ics.crawler4j.parser.ExtractedHtml;
+import edu.uci.ics.crawler4j.parser.FastHtmlExtractor;
+import edu.uci.ics.crawler4j.parser.HtmlExtractor;
+import edu.uci.ics.crawler4j.parser.TikaHtmlExtractor;
+
+/**
+ * Extraction of the links and text of HTML pages with the Tika and the fast
+ * HTML extractors alone. {@link ParserBenchmark} measures them as part of
+ * the whole parser.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HtmlExtractorBenchmark {
+
+	@Param({ "tika", "fast" })
+	public String htmlExtractor;
+
+	@Param({ "true", "false" })
+	public boolean keepText;
+
+	private HtmlExtractor extractor;
+	private List<byte[]> pages;
+	private int next;
+
+	@Setup
+	public void setUp() throws Exception {
+		extractor = htmlExtractor.equals("fast") ? new FastHtmlExtractor() : new TikaHtmlExtractor();
+		pages = Corpus.pages();
+	}
+
+	@Benchmark
+	public ExtractedHtml extract() {
+		next = (next + 1) % pages.size();
+		return extractor.extract(new ByteArrayInputStream(pages.get(next)), "UTF-8", keepText);
+	}
+}
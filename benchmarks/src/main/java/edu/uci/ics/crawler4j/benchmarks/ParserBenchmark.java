@@ -0,0 +1,60 @@
+package edu.uci.ics.crawler4j.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.sapienapps.scrawler.crawler.CrawlConfig;
+import com.sapienapps.scrawler.crawler.Page;
+import edu.uci.ics.crawler4j.parser.Parser;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * Parsing of HTML pages with each HTML extractor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParserBenchmark {
+
+	@Param({ "tika", "fast" })
+	public String htmlExtractor;
+
+	@Param({ "true", "false" })
+	public boolean keepText;
+
+	private Parser parser;
+	private List<byte[]> pages;
+	private WebURL webUrl;
+	private int next;
+
+	@Setup
+	public void setUp() throws Exception {
+		CrawlConfig config = new CrawlConfig();
+		config.htmlExtractor_$eq(htmlExtractor);
+		config.parseKeepText_$eq(keepText);
+		parser = new Parser(config);
+		pages = Corpus.pages();
+		webUrl = new WebURL();
+		webUrl.setURL("http://www.example.com/dir/index.html");
+	}
+
+	@Benchmark
+	public Page parse() {
+		next = (next + 1) % pages.size();
+		Page page = new Page(webUrl);
+		page.contentType_$eq("text/html; charset=UTF-8");
+		page.contentCharset_$eq("UTF-8");
+		page.contentData_$eq(pages.get(next));
+		parser.parse(page, webUrl.getURL());
+		return page;
+	}
+}
@@ -0,0 +1,82 @@
+package edu.uci.ics.crawler4j.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.uci.ics.crawler4j.robotstxt.HostDirectives;
+import edu.uci.ics.crawler4j.robotstxt.RobotsTxtMatcher;
+
+/**
+ * Matching of paths against the rules of a robots.txt file, through the
+ * directives of a host as the crawler does, and the compiled matcher alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RobotsTxtBenchmark {
+
+	@Param({ "10", "1000" })
+	public int rules;
+
+	/**
+	 * Whether every tenth rule has a wildcard.
+	 */
+	@Param({ "false", "true" })
+	public boolean wildcards;
+
+	private HostDirectives directives;
+	private RobotsTxtMatcher matcher;
+	private String[] paths;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		directives = new HostDirectives();
+		List<String> allows = new ArrayList<>();
+		List<String> disallows = new ArrayList<>();
+		for (int i = 0; i < rules; i++) {
+			String rule;
+			if (wildcards && i % 10 == 0) {
+				rule = "/*/private" + random.nextInt(10) + "/*.php$";
+			} else {
+				rule = "/dir" + random.nextInt(rules * 2) + "/private" + random.nextInt(10);
+			}
+			if (i % 5 == 0) {
+				directives.addAllow(rule + "/public");
+				allows.add(rule + "/public");
+			}
+			directives.addDisallow(rule);
+			disallows.add(rule);
+		}
+		matcher = new RobotsTxtMatcher(allows, disallows);
+		paths = new String[1024];
+		for (int i = 0; i < paths.length; i++) {
+			paths[i] = "/dir" + random.nextInt(rules * 2) + "/private" + random.nextInt(20) + "/page" + i
+					+ (i % 3 == 0 ? ".php" : ".html");
+		}
+	}
+
+	@Benchmark
+	public boolean hostDirectivesAllows() {
+		next = (next + 1) & 1023;
+		return directives.allows(paths[next]);
+	}
+
+	@Benchmark
+	public boolean matcherAllows() {
+		next = (next + 1) & 1023;
+		return matcher.allows(paths[next]);
+	}
+}
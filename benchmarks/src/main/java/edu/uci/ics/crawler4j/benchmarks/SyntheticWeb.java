@@ -0,0 +1,145 @@
+package edu.uci.ics.crawler4j.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A generated web served from the local machine. Each host is an embedded
+ * HTTP server on its own port of 127.0.0.1, which the crawler sees as a
+ * separate host. Every host serves pagesPerHost pages at /page/N.html, which
+ * link to fanOut pages of random hosts, and a robots.txt file which
+ * disallows /private/. The link graph, and which pages fail, only depend on
+ * the seed.
+ */
+public class SyntheticWeb {
+
+	public int hosts = 10;
+	public int pagesPerHost = 1000;
+	public int fanOut = 20;
+	public int pageSize = 16 * 1024;
+	public int latencyMillis = 0;
+	public double errorRate = 0.0;
+	public double privateLinkRate = 0.05;
+	public long seed = 42;
+
+	private final List<HttpServer> servers = new ArrayList<>();
+	private ExecutorService executor;
+
+	public void start() throws IOException {
+		executor = Executors.newCachedThreadPool();
+		for (int i = 0; i < hosts; i++) {
+			HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+			server.createContext("/", new Handler(i));
+			server.setExecutor(executor);
+			server.start();
+			servers.add(server);
+		}
+	}
+
+	public void stop() {
+		for (HttpServer server : servers) {
+			server.stop(0);
+		}
+		servers.clear();
+		executor.shutdownNow();
+	}
+
+	public String getUrl(int host, int page) {
+		return "http://127.0.0.1:" + servers.get(host).getAddress().getPort() + "/page/" + page + ".html";
+	}
+
+	/**
+	 * Returns the number of pages which can be crawled, including the failing
+	 * ones.
+	 */
+	public int getNumberOfPages() {
+		return hosts * pagesPerHost;
+	}
+
+	private class Handler implements HttpHandler {
+
+		private final int host;
+
+		Handler(int host) {
+			this.host = host;
+		}
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				if (latencyMillis > 0) {
+					Thread.sleep(latencyMillis);
+				}
+				String path = exchange.getRequestURI().getPath();
+				if (path.equals("/robots.txt")) {
+					send(exchange, 200, "text/plain", "User-agent: *\nDisallow: /private/\n");
+					return;
+				}
+				int page = getPageNumber(path);
+				if (page < 0 || page >= pagesPerHost) {
+					send(exchange, 404, "text/plain", "Not found");
+					return;
+				}
+				Random random = new Random(seed * 31 + (long) host * pagesPerHost + page);
+				if (random.nextDouble() < errorRate) {
+					send(exchange, 500, "text/plain", "Server error");
+					return;
+				}
+				send(exchange, 200, "text/html; charset=UTF-8", generatePage(random, page));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				exchange.close();
+			}
+		}
+
+		private String generatePage(Random random, int page) {
+			StringBuilder sb = new StringBuilder(pageSize + 1024);
+			sb.append("<html><head><title>Host ").append(host).append(" page ").append(page).append("</title></head><body>");
+			for (int i = 0; i < fanOut; i++) {
+				int targetHost = random.nextInt(hosts);
+				int targetPage = random.nextInt(pagesPerHost);
+				String url = getUrl(targetHost, targetPage);
+				if (random.nextDouble() < privateLinkRate) {
+					url = url.replace("/page/", "/private/");
+				}
+				sb.append("<p><a href=\"").append(url).append("\">Page ").append(targetPage).append("</a></p>");
+			}
+			while (sb.length() < pageSize) {
+				sb.append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor.</p>");
+			}
+			sb.append("</body></html>");
+			return sb.toString();
+		}
+	}
+
+	private static int getPageNumber(String path) {
+		if (!path.startsWith("/page/") || !path.endsWith(".html")) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(path.substring(6, path.length() - 5));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+		byte[] bytes = body.getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+}
@@ -0,0 +1,63 @@
+package edu.uci.ics.crawler4j.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.uci.ics.crawler4j.url.URLCanonicalizer;
+import edu.uci.ics.crawler4j.url.UrlResolver;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * Canonicalization, resolution and domain splitting of URLs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UrlBenchmark {
+
+	private static final String CONTEXT = "http://www.example.com/a/b/index.html";
+
+	private String[] hrefs;
+	private String[] urls;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		hrefs = Corpus.hrefs(1024);
+		urls = Corpus.urls(1024);
+	}
+
+	private int next() {
+		next = (next + 1) & 1023;
+		return next;
+	}
+
+	@Benchmark
+	public String canonicalizeAbsolute() {
+		return URLCanonicalizer.getCanonicalURL(urls[next()]);
+	}
+
+	@Benchmark
+	public String canonicalizeRelative() {
+		return URLCanonicalizer.getCanonicalURL(hrefs[next()], CONTEXT);
+	}
+
+	@Benchmark
+	public String resolve() {
+		return UrlResolver.resolveUrl(CONTEXT, hrefs[next()]);
+	}
+
+	@Benchmark
+	public WebURL setURL() {
+		WebURL webUrl = new WebURL();
+		webUrl.setURL(urls[next()]);
+		return webUrl;
+	}
+}
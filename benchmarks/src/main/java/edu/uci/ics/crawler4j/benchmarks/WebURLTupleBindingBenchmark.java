@@ -0,0 +1,54 @@
+package edu.uci.ics.crawler4j.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.sleepycat.je.DatabaseEntry;
+import edu.uci.ics.crawler4j.frontier.WebURLTupleBinding;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * Serialization of the URLs which are stored in the frontier.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WebURLTupleBindingBenchmark {
+
+	private WebURLTupleBinding binding;
+	private WebURL webUrl;
+	private DatabaseEntry entry;
+
+	@Setup
+	public void setUp() {
+		binding = new WebURLTupleBinding();
+		webUrl = new WebURL();
+		webUrl.setURL("http://www.example.com/dir/page.html?a=1&b=2");
+		webUrl.setDocid(123456);
+		webUrl.setParentDocid(1234);
+		webUrl.setParentUrl("http://www.example.com/dir/index.html");
+		webUrl.setDepth((short) 3);
+		webUrl.setAnchor("A link to the page");
+		entry = new DatabaseEntry();
+		binding.objectToEntry(webUrl, entry);
+	}
+
+	@Benchmark
+	public DatabaseEntry serialize() {
+		DatabaseEntry value = new DatabaseEntry();
+		binding.objectToEntry(webUrl, value);
+		return value;
+	}
+
+	@Benchmark
+	public WebURL deserialize() {
+		return binding.entryToObject(entry);
+	}
+}
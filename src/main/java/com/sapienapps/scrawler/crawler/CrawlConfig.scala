@@ -36,15 +36,61 @@ class CrawlConfig {
     if (maxDepthOfCrawling > java.lang.Short.MAX_VALUE) {
       throw new Exception("Maximum value for crawl depth is " + java.lang.Short.MAX_VALUE)
     }
+    if (seenUrlBloomFilterCapacity <= 0) {
+      throw new Exception("Invalid value for seen URL Bloom filter capacity: " + seenUrlBloomFilterCapacity)
+    }
+    if (seenUrlBloomFilterFalsePositiveRate <= 0 || seenUrlBloomFilterFalsePositiveRate >= 1) {
+      throw new Exception("Invalid value for seen URL Bloom filter false positive rate: " + seenUrlBloomFilterFalsePositiveRate)
+    }
+    if (inMemoryFrontier && resumableCrawling) {
+      throw new Exception("In-memory frontier can not be used for resumable crawling.")
+    }
+    if (tieredFrontier && (resumableCrawling || inMemoryFrontier || hostPartitionedFrontier)) {
+      throw new Exception("Tiered frontier can not be used for resumable crawling or with other frontier types.")
+    }
+    if (pipelineParseThreads <= 0 || pipelineLinkThreads <= 0 || pipelineVisitThreads <= 0) {
+      throw new Exception("Each stage of the crawl pipeline needs at least one thread.")
+    }
+    if (htmlExtractor == null) {
+      throw new Exception("HTML extractor is not set in the CrawlConfig.")
+    }
+    if (streamingParse && parseKeepHtml) {
+      throw new Exception("Streaming parse can not keep the raw HTML of pages, parseKeepHtml should be disabled.")
+    }
+    if (streamingParse && pipelinedCrawling) {
+      throw new Exception("Streaming parse can not be used for pipelined crawling.")
+    }
+    if (minAssignmentSize <= 0 || maxAssignmentSize < minAssignmentSize) {
+      throw new Exception("Invalid assignment size bounds: " + minAssignmentSize + " to " + maxAssignmentSize)
+    }
+    if (pipelineQueueSize <= 0) {
+      throw new Exception("Invalid value for pipeline queue size: " + pipelineQueueSize)
+    }
+    if (countersCheckpointInterval <= 0) {
+      throw new Exception("Invalid value for counters checkpoint interval: " + countersCheckpointInterval)
+    }
+    if (tieredFrontierHeadSize <= 0) {
+      throw new Exception("Invalid value for tiered frontier head size: " + tieredFrontierHeadSize)
+    }
   }
 
   override def toString: String = {
     val sb: StringBuilder = new StringBuilder
     sb.append("Crawl storage folder: " + crawlStorageFolder + "\n")
     sb.append("Resumable crawling: " + resumableCrawling + "\n")
+    sb.append("Counters checkpoint interval: " + countersCheckpointInterval + "\n")
+    sb.append("In-memory frontier: " + inMemoryFrontier + "\n")
+    sb.append("Tiered frontier: " + tieredFrontier + "\n")
+    sb.append("Off-heap docid server: " + offHeapDocIdServer + "\n")
+    sb.append("Seen URL Bloom filter: " + seenUrlBloomFilter + "\n")
     sb.append("Max depth of crawl: " + maxDepthOfCrawling + "\n")
     sb.append("Max pages to fetch: " + maxPagesToFetch + "\n")
+    sb.append("Min assignment size: " + minAssignmentSize + "\n")
+    sb.append("Max assignment size: " + maxAssignmentSize + "\n")
     sb.append("User agent string: " + userAgentString + "\n")
+    sb.append("Host partitioned frontier: " + hostPartitionedFrontier + "\n")
+    sb.append("Virtual threads: " + virtualThreads + "\n")
+    sb.append("Pipelined crawling: " + pipelinedCrawling + "\n")
     sb.append("Include https pages: " + includeHttpsPages + "\n")
     sb.append("Include binary content: " + includeBinaryContentInCrawling + "\n")
     sb.append("Max connections per host: " + maxConnectionsPerHost + "\n")
@@ -52,6 +98,10 @@ class CrawlConfig {
     sb.append("Socket timeout: " + socketTimeout + "\n")
     sb.append("Max total connections: " + maxTotalConnections + "\n")
     sb.append("Max outgoing links to follow: " + maxOutgoingLinksToFollow + "\n")
+    sb.append("HTML extractor: " + htmlExtractor + "\n")
+    sb.append("Streaming parse: " + streamingParse + "\n")
+    sb.append("Keep text of parsed pages: " + parseKeepText + "\n")
+    sb.append("Keep HTML of parsed pages: " + parseKeepHtml + "\n")
     sb.append("Max download size: " + maxDownloadSize + "\n")
     sb.append("Should follow redirects?: " + followRedirects + "\n")
     sb.append("Proxy host: " + proxyHost + "\n")
@@ -71,6 +121,52 @@ class CrawlConfig {
    * stopped/crashed crawl. However, it makes crawling slightly slower
    */
   var resumableCrawling: Boolean = false
+  /**
+   * Interval in milliseconds between the checkpoints of the crawl counters
+   * to disk in resumable crawls. A resumed crawl starts from the counter
+   * values of the last checkpoint.
+   */
+  var countersCheckpointInterval: Int = 10000
+  /**
+   * If this feature is enabled, the pending URLs and the docids of seen URLs
+   * are only kept in memory and no Berkeley DB environment is opened. This
+   * is the fastest option for crawls which do not need to be resumed, as
+   * long as the frontier fits in memory.
+   */
+  var inMemoryFrontier: Boolean = false
+  /**
+   * If this feature is enabled, the head of the pending URLs queue is kept
+   * in memory and only the overflow is stored in Berkeley DB. Not available
+   * for resumable crawling.
+   */
+  var tieredFrontier: Boolean = false
+  /**
+   * Maximum number of pending URLs the tiered frontier keeps in memory.
+   */
+  var tieredFrontierHeadSize: Int = 100000
+  /**
+   * If this feature is enabled, the docids of seen URLs are kept in an
+   * off-heap hash table of 64-bit URL fingerprints, memory-mapped from the
+   * crawl storage folder, instead of in Berkeley DB. This makes the seen-URL
+   * checks much cheaper on large crawls.
+   */
+  var offHeapDocIdServer: Boolean = false
+  /**
+   * If this feature is enabled, a Bloom filter of the seen URLs is kept in
+   * memory in front of the docid database, so that most new URLs are
+   * detected without a database lookup. Resumable crawls store it in the
+   * crawl storage folder on exit and reload it on start.
+   */
+  var seenUrlBloomFilter: Boolean = false
+  /**
+   * Number of URLs the seen-URL Bloom filter is initially sized for. It grows
+   * as needed.
+   */
+  var seenUrlBloomFilterCapacity: Int = 1000000
+  /**
+   * Maximum false positive rate of the seen-URL Bloom filter.
+   */
+  var seenUrlBloomFilterFalsePositiveRate: Double = 0.01
   /**
    * Maximum depth of crawling For unlimited depth this parameter should be
    * set to -1
@@ -81,6 +177,17 @@ class CrawlConfig {
    * parameter should be set to -1
    */
   var maxPagesToFetch: Int = -1
+  /**
+   * Minimum number of URLs the frontier assigns to a crawler thread at a
+   * time. The actual number adapts to the length of the queue, the number
+   * of crawler threads and the time it takes to process a page.
+   */
+  var minAssignmentSize: Int = 1
+  /**
+   * Maximum number of URLs the frontier assigns to a crawler thread at a
+   * time.
+   */
+  var maxAssignmentSize: Int = 250
   /**
    * user-agent string that is used for representing your crawler to web
    * servers. See http://en.wikipedia.org/wiki/User_agent for more details
@@ -91,6 +198,45 @@ class CrawlConfig {
    * the same host).
    */
   var politenessDelay: Int = 200
+  /**
+   * If this feature is enabled, pending URLs are partitioned by host and
+   * crawler threads get the next URL of whichever host's politeness delay
+   * ends first, instead of the first URLs of the queue. This keeps threads
+   * busy on crawls that span many hosts.
+   */
+  var hostPartitionedFrontier: Boolean = false
+  /**
+   * If this feature is enabled and the JVM supports virtual threads (Java 21
+   * or later), each crawler runs on a virtual thread instead of a platform
+   * thread. This allows many thousands of crawlers, as blocked fetches and
+   * politeness delays do not hold on to an operating system thread.
+   */
+  var virtualThreads: Boolean = false
+  /**
+   * If this feature is enabled, crawler threads only fetch pages. Parsing,
+   * processing of the outgoing links and visiting are done by separate
+   * pools of workers, connected by bounded queues. Each worker has its own
+   * instance of the crawler class, whose local data is collected along with
+   * that of the crawler threads.
+   */
+  var pipelinedCrawling: Boolean = false
+  /**
+   * Number of parser workers in pipelined crawling mode.
+   */
+  var pipelineParseThreads: Int = Runtime.getRuntime.availableProcessors
+  /**
+   * Number of link processing workers in pipelined crawling mode.
+   */
+  var pipelineLinkThreads: Int = 2
+  /**
+   * Number of visit workers in pipelined crawling mode.
+   */
+  var pipelineVisitThreads: Int = 2
+  /**
+   * Maximum number of pages waiting before each stage in pipelined crawling
+   * mode.
+   */
+  var pipelineQueueSize: Int = 1000
   /**
    * Should we also crawl https pages?
    */
@@ -119,6 +265,28 @@ class CrawlConfig {
    * Max number of outgoing links which are processed from a page
    */
   var maxOutgoingLinksToFollow: Int = 5000
+  /**
+   * The extractor of the links, title and text of HTML pages: "tika" for the
+   * Tika HTML parser, "fast" for a lightweight tokenizer of the raw bytes,
+   * or the name of a class which implements
+   * edu.uci.ics.crawler4j.parser.HtmlExtractor.
+   */
+  var htmlExtractor: String = "tika"
+  /**
+   * If this feature is enabled, HTML pages are parsed straight from the
+   * response instead of being loaded into Page.contentData first, which
+   * stays null for them. It requires parseKeepHtml to be disabled.
+   */
+  var streamingParse: Boolean = false
+  /**
+   * Should the text of HTML pages be kept in their parse data? Crawls which
+   * only need the outgoing links can disable this.
+   */
+  var parseKeepText: Boolean = true
+  /**
+   * Should the raw HTML of pages be kept in their parse data?
+   */
+  var parseKeepHtml: Boolean = true
   /**
    * Max allowed size of a page. Pages larger than this size will not be
    * fetched.
@@ -74,6 +74,15 @@ class Page() {
    * HttpEntity.
    */
   def load(entity: HttpEntity) {
+    loadMetadata(entity)
+    contentData = EntityUtils.toByteArray(entity)
+  }
+
+  /**
+   * Loads the content type, encoding and charset of this page from a
+   * fetched HttpEntity, without reading its content.
+   */
+  def loadMetadata(entity: HttpEntity) {
     contentType = null
     val `type`: Header = entity.getContentType
     if (`type` != null) {
@@ -88,6 +97,5 @@ class Page() {
     if (charset != null) {
       contentCharset = charset.displayName
     }
-    contentData = EntityUtils.toByteArray(entity)
   }
 }
\ No newline at end of file
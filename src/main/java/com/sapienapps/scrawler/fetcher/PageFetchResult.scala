@@ -49,6 +49,24 @@ class PageFetchResult {
     false
   }
 
+  /**
+   * Loads the metadata of the fetched content into the given page and leaves
+   * the content in the response, so that it can be streamed.
+   */
+  def fetchMetadata(page: Page): Boolean = {
+    try {
+      page.loadMetadata(entity)
+      page.fetchResponseHeaders_$eq(responseHeaders)
+      return true
+    }
+    catch {
+      case e: Exception => {
+        PageFetchResult.logger.info("Exception while fetching metadata for: " + page.url.getURL + " [" + e.getMessage + "]")
+      }
+    }
+    false
+  }
+
   def discardContentIfNotConsumed() {
     try {
       if (entity != null) {
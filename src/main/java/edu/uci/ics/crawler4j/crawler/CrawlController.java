@@ -24,14 +24,21 @@ import com.sleepycat.je.EnvironmentConfig;
 import edu.uci.ics.crawler4j.fetcher.PageFetcher;
 import edu.uci.ics.crawler4j.frontier.DocIDServer;
 import edu.uci.ics.crawler4j.frontier.Frontier;
+import edu.uci.ics.crawler4j.frontier.OffHeapDocIDServer;
+import edu.uci.ics.crawler4j.metrics.CrawlMetrics;
 import edu.uci.ics.crawler4j.robotstxt.RobotsTxtServer;
+import edu.uci.ics.crawler4j.robotstxt.RobotsTxtStore;
 import edu.uci.ics.crawler4j.url.URLCanonicalizer;
 import edu.uci.ics.crawler4j.url.WebURL;
 import org.apache.log4j.Logger;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The controller that manages a crawling session. This class creates the
@@ -67,16 +74,21 @@ public class CrawlController<D, T extends WebCrawler<D>> extends Configurable {
     protected boolean shuttingDown;
 
     /**
-     * Time allocated to 1st check if crawlers still active. Default 10.
+     * Time allocated to 1st check if crawlers still active. No longer used,
+     * as the frontier signals when the crawl is done.
      */
+    @Deprecated
     protected int isActive1stSleep = 5;
     /**
-     * Time allocated to 2nd check if crawlers still active. Default 10.
+     * Time allocated to 2nd check if crawlers still active. No longer used.
      */
+    @Deprecated
     protected int isActive2ndSleep = 5;
     /**
-     * Time allocated to clean up Default 10.
+     * Time allocated to clean up. No longer used, as the crawler threads are
+     * joined before clean up.
      */
+    @Deprecated
     protected int cleanUpSleep = 5;
 
     protected PageFetcher pageFetcher;
@@ -84,6 +96,22 @@ public class CrawlController<D, T extends WebCrawler<D>> extends Configurable {
     protected Frontier frontier;
     protected DocIDServer docIdServer;
 
+    /**
+     * The pipeline of the stages of a pipelined crawl, or null.
+     */
+    protected CrawlPipeline pipeline;
+
+    /**
+     * The factory of the crawler threads. If it is null, a platform thread is
+     * created for each crawler.
+     */
+    protected ThreadFactory threadFactory;
+
+    /**
+     * The metrics of this crawling session.
+     */
+    protected CrawlMetrics metrics = new CrawlMetrics();
+
     protected final Object waitingLock = new Object();
 
     public CrawlController(CrawlConfig config, PageFetcher pageFetcher, RobotsTxtServer robotstxtServer,
@@ -106,6 +134,31 @@ public class CrawlController<D, T extends WebCrawler<D>> extends Configurable {
             }
         }
 
+        Environment env = null;
+        if (!config.inMemoryFrontier()) {
+            env = createEnvironment(config);
+        }
+
+        docIdServer = createDocIDServer(env, config);
+        frontier = new Frontier(env, config, docIdServer);
+
+        this.pageFetcher = pageFetcher;
+        this.robotstxtServer = robotstxtServer;
+        if (env != null && config.resumableCrawling() && robotstxtServer.getConfig().isEnabled()) {
+            robotstxtServer.setStore(new RobotsTxtStore(env, true));
+        }
+        metrics.setFrontier(frontier);
+        pageFetcher.setMetrics(metrics);
+
+        if (config.virtualThreads()) {
+            threadFactory = createVirtualThreadFactory();
+        }
+
+        finished = false;
+        shuttingDown = false;
+    }
+
+    private static Environment createEnvironment(CrawlConfig config) throws Exception {
         boolean resumable = config.resumableCrawling();
 
         EnvironmentConfig envConfig = new EnvironmentConfig();
@@ -120,7 +173,6 @@ public class CrawlController<D, T extends WebCrawler<D>> extends Configurable {
             }
         }
 
-
         Environment env = new Environment(envHome, envConfig);
 
         if (!resumable) {
@@ -132,15 +184,66 @@ public class CrawlController<D, T extends WebCrawler<D>> extends Configurable {
             //env.removeDatabase(null, "DocIDs");
             //IO.deleteFolderContents(envHome);
         }
+        return env;
+    }
 
-        docIdServer = new DocIDServer(env, config);
-        frontier = new Frontier(env, config, docIdServer);
+    /**
+     * Returns a factory of virtual threads, or null if the running JVM does
+     * not support them. This is looked up reflectively, as virtual threads
+     * are only available on Java 21 and later.
+     */
+    private static ThreadFactory createVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (Exception e) {
+            logger.warn("Virtual threads are not supported by this JVM, using platform threads.");
+            return null;
+        }
+    }
 
-        this.pageFetcher = pageFetcher;
-        this.robotstxtServer = robotstxtServer;
+    /**
+     * Creates the thread which runs the given crawler.
+     */
+    protected Thread newCrawlerThread(T crawler, int crawlerId) {
+        return newThread(crawler, "Crawler " + crawlerId);
+    }
 
-        finished = false;
-        shuttingDown = false;
+    private Thread newThread(Runnable runnable, String name) {
+        Thread thread;
+        if (threadFactory == null) {
+            thread = new Thread(runnable);
+        } else {
+            thread = threadFactory.newThread(runnable);
+        }
+        thread.setName(name);
+        return thread;
+    }
+
+    private int getNumberOfWorkers(CrawlPipeline.Stage stage) {
+        switch (stage) {
+            case PARSE:
+                return config().pipelineParseThreads();
+            case LINKS:
+                return config().pipelineLinkThreads();
+            default:
+                return config().pipelineVisitThreads();
+        }
+    }
+
+    /**
+     * Creates the DocIDServer of this crawling session. Subclasses can override
+     * this function to plug in their own implementation.
+     */
+    protected DocIDServer createDocIDServer(Environment env, CrawlConfig config) throws Exception {
+        if (config.inMemoryFrontier()) {
+            return new OffHeapDocIDServer(config, null);
+        }
+        if (config.offHeapDocIdServer()) {
+            return new OffHeapDocIDServer(config, new File(config.crawlStorageFolder(), "docids"));
+        }
+        return new DocIDServer(env, config);
     }
 
     /**
@@ -171,10 +274,19 @@ public class CrawlController<D, T extends WebCrawler<D>> extends Configurable {
             crawlersLocalData.clear();
             final List<Thread> threads = new ArrayList<>();
             final List<T> crawlers = new ArrayList<>();
+            final List<T> stageCrawlers = new ArrayList<>();
+            final Map<CrawlPipeline.Stage, List<Thread>> stageThreads = new EnumMap<>(CrawlPipeline.Stage.class);
+
+            frontier.setNumberOfCrawlers(numberOfCrawlers);
+            if (config().pipelinedCrawling()) {
+                pipeline = new CrawlPipeline(frontier, config().pipelineQueueSize());
+            } else {
+                pipeline = null;
+            }
 
             for (int i = 1; i <= numberOfCrawlers; i++) {
                 T crawler = _c.newInstance();
-                Thread thread = new Thread(crawler, "Crawler " + i);
+                Thread thread = newCrawlerThread(crawler, i);
                 crawler.setThread(thread);
                 crawler.init(i, this);
                 thread.start();
@@ -183,6 +295,26 @@ public class CrawlController<D, T extends WebCrawler<D>> extends Configurable {
                 logger.info("Crawler " + i + " started.");
             }
 
+            if (pipeline != null) {
+                int crawlerId = numberOfCrawlers;
+                int numberOfWorkers = 0;
+                for (CrawlPipeline.Stage stage : CrawlPipeline.Stage.values()) {
+                    List<Thread> workers = new ArrayList<>();
+                    for (int i = 1; i <= getNumberOfWorkers(stage); i++) {
+                        T crawler = _c.newInstance();
+                        Thread thread = newThread(pipeline.newWorker(crawler, stage), stage + " worker " + i);
+                        crawler.setThread(thread);
+                        crawler.init(++crawlerId, this);
+                        thread.start();
+                        stageCrawlers.add(crawler);
+                        workers.add(thread);
+                    }
+                    stageThreads.put(stage, workers);
+                    numberOfWorkers += workers.size();
+                }
+                logger.info(numberOfWorkers + " pipeline workers started.");
+            }
+
             final CrawlController controller = this;
 
             Thread monitorThread = new Thread(new Runnable() {
@@ -193,78 +325,63 @@ public class CrawlController<D, T extends WebCrawler<D>> extends Configurable {
                         synchronized (waitingLock) {
 
                             while (true) {
-                                sleep(10);
-                                boolean someoneIsWorking = false;
+                                // The frontier signals as soon as its queue is
+                                // empty and no URL is in flight. The timeout only
+                                // bounds how late dead threads are recreated.
+                                boolean idle = frontier.awaitIdle(1, TimeUnit.SECONDS);
                                 for (int i = 0; i < threads.size(); i++) {
                                     Thread thread = threads.get(i);
-                                    if (!thread.isAlive()) {
-                                        if (!shuttingDown) {
-                                            logger.info("Thread " + i + " was dead, I'll recreate it.");
-                                            T crawler = _c.newInstance();
-                                            thread = new Thread(crawler, "Crawler " + (i + 1));
-                                            threads.remove(i);
-                                            threads.add(i, thread);
-                                            crawler.setThread(thread);
-                                            crawler.init(i + 1, controller);
-                                            thread.start();
-                                            crawlers.remove(i);
-                                            crawlers.add(i, crawler);
-                                        }
-                                    } else if (crawlers.get(i).isNotWaitingForNewURLs()) {
-                                        someoneIsWorking = true;
+                                    if (!thread.isAlive() && !shuttingDown && !frontier.isFinished()) {
+                                        logger.info("Thread " + i + " was dead, I'll recreate it.");
+                                        T crawler = _c.newInstance();
+                                        thread = newCrawlerThread(crawler, i + 1);
+                                        threads.remove(i);
+                                        threads.add(i, thread);
+                                        crawler.setThread(thread);
+                                        crawler.init(i + 1, controller);
+                                        thread.start();
+                                        crawlers.remove(i);
+                                        crawlers.add(i, crawler);
                                     }
                                 }
-                                if (!someoneIsWorking) {
-                                    // Make sure again that none of the threads
-                                    // are
-                                    // alive.
-                                    logger.info("It looks like no thread is working, waiting for " + isActive1stSleep + " seconds to make sure...");
-                                    sleep(isActive1stSleep);
-
-                                    someoneIsWorking = false;
-                                    for (int i = 0; i < threads.size(); i++) {
-                                        Thread thread = threads.get(i);
-                                        if (thread.isAlive() && crawlers.get(i).isNotWaitingForNewURLs()) {
-                                            someoneIsWorking = true;
-                                        }
-                                    }
-                                    if (!someoneIsWorking) {
-                                        if (!shuttingDown) {
-                                            long queueLength = frontier.getQueueLength();
-                                            if (queueLength > 0) {
-                                                continue;
-                                            }
-                                            logger.info("No thread is working and no more URLs are in queue waiting for another " + isActive2ndSleep + " seconds to make sure...");
-                                            sleep(isActive2ndSleep);
-                                            queueLength = frontier.getQueueLength();
-                                            if (queueLength > 0) {
-                                                continue;
-                                            }
-                                        }
+                                if (!idle && !shuttingDown) {
+                                    continue;
+                                }
 
-                                        logger.info("All of the crawlers are stopped. Finishing the process...");
-                                        // At this step, frontier notifies the
-                                        // threads that were
-                                        // waiting for new URLs and they should
-                                        // stop
-                                        frontier.finish();
-                                        for (T crawler : crawlers) {
-                                            crawler.onBeforeExit();
-                                            crawlersLocalData.add(crawler.getMyLocalData());
+                                logger.info("All of the crawlers are stopped. Finishing the process...");
+                                logger.info(metrics);
+                                // At this step, frontier notifies the threads
+                                // that were waiting for new URLs and they should
+                                // stop
+                                frontier.finish();
+                                for (Thread thread : threads) {
+                                    thread.join();
+                                }
+                                if (pipeline != null) {
+                                    // Nothing is submitted anymore, so each stage
+                                    // can be drained once the one which feeds it
+                                    // is done
+                                    for (CrawlPipeline.Stage stage : CrawlPipeline.Stage.values()) {
+                                        pipeline.stop(stage);
+                                        for (Thread thread : stageThreads.get(stage)) {
+                                            thread.join();
                                         }
-
-                                        logger.info("Waiting for " + cleanUpSleep + " seconds before final clean up...");
-                                        sleep(cleanUpSleep);
-
-                                        frontier.close();
-                                        docIdServer.close();
-                                        pageFetcher.shutDown();
-
-                                        finished = true;
-                                        waitingLock.notifyAll();
-                                        return;
                                     }
+                                    crawlers.addAll(stageCrawlers);
+                                }
+                                for (T crawler : crawlers) {
+                                    crawler.onBeforeExit();
+                                    crawlersLocalData.add(crawler.getMyLocalData());
                                 }
+
+                                pageFetcher.shutDown();
+                                robotstxtServer.shutDown();
+                                // Closes the docid server as well
+                                frontier.close();
+
+                                finished = true;
+                                waitingLock.notifyAll();
+                                return;
                             }
                         }
                     } catch (Exception e) {
@@ -307,6 +424,12 @@ public class CrawlController<D, T extends WebCrawler<D>> extends Configurable {
      * Once the crawling session finishes the controller collects the local data
      * of the crawler threads and stores them in a List. This function returns
      * the reference to this list.
+     * <p>
+     * In a pipelined crawl, the crawler threads only fetch pages, and each
+     * pipeline worker has its own crawler instance. The list then holds the
+     * local data of the crawler threads followed by that of the parse, links
+     * and visit workers, in this order. Data gathered in visit() is in the
+     * entries of the visit workers.
      */
     public List<D> getCrawlersLocalData() {
         return crawlersLocalData;
@@ -436,6 +559,26 @@ public class CrawlController<D, T extends WebCrawler<D>> extends Configurable {
         this.docIdServer = docIdServer;
     }
 
+    public ThreadFactory getThreadFactory() {
+        return threadFactory;
+    }
+
+    /**
+     * Sets the factory of the crawler threads. This has to be called before
+     * the crawling session is started.
+     */
+    public void setThreadFactory(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
+    public CrawlMetrics getMetrics() {
+        return metrics;
+    }
+
+    public CrawlPipeline getPipeline() {
+        return pipeline;
+    }
+
     public Object getCustomData() {
         return customData;
     }
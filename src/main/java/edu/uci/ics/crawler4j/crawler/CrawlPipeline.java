@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.crawler;
+
+import com.sapienapps.scrawler.crawler.Page;
+import edu.uci.ics.crawler4j.frontier.Frontier;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Connects the stages of a pipelined crawl with bounded queues. Crawler
+ * threads only fetch pages and submit them here. The pages are then parsed,
+ * their links are processed and they are visited by separate pools of
+ * workers. A full queue blocks the stage which feeds it, so that no stage can
+ * run too far ahead of the next one.
+ * <p>
+ * To shut down without dropping pages, the stages are stopped one after the
+ * other, in order, once nothing feeds them anymore: first the crawler threads
+ * are joined, then each stage is stopped and its workers are joined before
+ * the next stage is stopped. Workers block on their queue until then, and a
+ * stopped stage gets one end marker per worker behind its last page.
+ */
+public class CrawlPipeline {
+
+	protected static final Logger logger = Logger.getLogger(CrawlPipeline.class.getName());
+
+	public enum Stage {
+		PARSE, LINKS, VISIT
+	}
+
+	private final Frontier frontier;
+
+	private final BlockingQueue<Page> parseQueue;
+	private final BlockingQueue<Page> linksQueue;
+	private final BlockingQueue<Page> visitQueue;
+
+	/**
+	 * Queued after the last page of a stopped stage, once for each worker.
+	 */
+	private static final Page END_OF_STAGE = new Page();
+
+	private final AtomicIntegerArray numberOfWorkers = new AtomicIntegerArray(Stage.values().length);
+
+	public CrawlPipeline(Frontier frontier, int queueSize) {
+		this.frontier = frontier;
+		this.parseQueue = new ArrayBlockingQueue<>(queueSize);
+		this.linksQueue = new ArrayBlockingQueue<>(queueSize);
+		this.visitQueue = new ArrayBlockingQueue<>(queueSize);
+	}
+
+	/**
+	 * Hands a fetched page to the parse stage. Blocks while the parse queue is
+	 * full.
+	 */
+	public void submit(Page page) throws InterruptedException {
+		parseQueue.put(page);
+	}
+
+	/**
+	 * Returns a worker of the given stage, which runs the stage on the given
+	 * crawler instance. Each worker must have its own crawler instance.
+	 */
+	public Runnable newWorker(final WebCrawler<?> crawler, final Stage stage) {
+		numberOfWorkers.incrementAndGet(stage.ordinal());
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				crawler.onStart();
+				try {
+					work(crawler, stage);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+	}
+
+	private void work(WebCrawler<?> crawler, Stage stage) throws InterruptedException {
+		BlockingQueue<Page> queue = getQueue(stage);
+		while (true) {
+			Page page = queue.take();
+			if (page == END_OF_STAGE) {
+				return;
+			}
+			boolean forward = false;
+			try {
+				forward = process(crawler, stage, page);
+			} catch (Exception e) {
+				logger.error(e.getMessage() + ", while processing: " + page.url().getURL());
+			}
+			if (forward) {
+				// The next stage is only stopped once the workers of this one
+				// have exited, so it always takes the page
+				getQueue(Stage.values()[stage.ordinal() + 1]).put(page);
+			} else {
+				frontier.setProcessed(page.url());
+			}
+		}
+	}
+
+	/**
+	 * Runs the given stage on the given page.
+	 *
+	 * @return true if the page should be handed to the next stage.
+	 */
+	protected boolean process(WebCrawler<?> crawler, Stage stage, Page page) {
+		switch (stage) {
+		case PARSE:
+			return crawler.parsePage(page);
+		case LINKS:
+			crawler.processLinks(page);
+			return true;
+		default:
+			crawler.visitPage(page);
+			return false;
+		}
+	}
+
+	private BlockingQueue<Page> getQueue(Stage stage) {
+		switch (stage) {
+		case PARSE:
+			return parseQueue;
+		case LINKS:
+			return linksQueue;
+		default:
+			return visitQueue;
+		}
+	}
+
+	/**
+	 * Makes the workers of the given stage exit once its queue is empty. The
+	 * stages which feed it, and the crawler threads, must have been stopped
+	 * and joined before, or the pages they hand over afterwards would be
+	 * left in the queue. Blocks while the queue is full.
+	 */
+	public void stop(Stage stage) throws InterruptedException {
+		BlockingQueue<Page> queue = getQueue(stage);
+		for (int i = numberOfWorkers.get(stage.ordinal()); i > 0; i--) {
+			queue.put(END_OF_STAGE);
+		}
+	}
+}
@@ -23,17 +23,23 @@ import com.sapienapps.scrawler.fetcher.PageFetchResult;
 import edu.uci.ics.crawler4j.fetcher.PageFetcher;
 import edu.uci.ics.crawler4j.frontier.DocIDServer;
 import edu.uci.ics.crawler4j.frontier.Frontier;
+import edu.uci.ics.crawler4j.metrics.CrawlMetrics;
 import edu.uci.ics.crawler4j.parser.HtmlParseData;
 import edu.uci.ics.crawler4j.parser.ParseData;
 import edu.uci.ics.crawler4j.parser.Parser;
 import edu.uci.ics.crawler4j.robotstxt.RobotsTxtServer;
 import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.CountingInputStream;
 
 import org.apache.http.HttpStatus;
 import org.apache.log4j.Logger;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * WebCrawler class in the Runnable class that is executed by each crawler
@@ -92,6 +98,18 @@ public class WebCrawler<T> implements Runnable {
 	 */
 	private Frontier frontier;
 
+	/**
+	 * The pipeline which the fetched pages are handed to in pipelined
+	 * crawling mode, or null.
+	 */
+	private CrawlPipeline pipeline;
+
+	/**
+	 * The metrics of the crawling session, and of this crawler's thread.
+	 */
+	private CrawlMetrics metrics;
+	private CrawlMetrics.ThreadMetrics threadMetrics;
+
 	/**
 	 * Is the current crawler instance waiting for new URLs? This field is
 	 * mainly used by the controller to detect whether all of the crawler
@@ -114,6 +132,9 @@ public class WebCrawler<T> implements Runnable {
 		this.robotstxtServer = crawlController.getRobotstxtServer();
 		this.docIdServer = crawlController.getDocIdServer();
 		this.frontier = crawlController.getFrontier();
+		this.pipeline = crawlController.getPipeline();
+		this.metrics = crawlController.getMetrics();
+		this.threadMetrics = metrics.registerThread(myThread != null ? myThread.getName() : "Crawler " + id);
 		this.parser = new Parser(crawlController.config());
 		this.myController = crawlController;
 		this.isWaitingForNewURLs = false;
@@ -213,31 +234,55 @@ public class WebCrawler<T> implements Runnable {
 
 	public void run() {
 		onStart();
+		// Moving average of the time it takes to process a page
+		long nanosPerPage = 0;
 		while (true) {
-			List<WebURL> assignedURLs = new ArrayList<>(50);
+			int assignmentSize = frontier.getAssignmentSize(nanosPerPage);
+			List<WebURL> assignedURLs = new ArrayList<>(assignmentSize);
 			isWaitingForNewURLs = true;
-			frontier.getNextURLs(50, assignedURLs);
+			frontier.getNextURLs(assignmentSize, assignedURLs);
 			isWaitingForNewURLs = false;
+			long start = System.nanoTime();
 			if (assignedURLs.size() == 0) {
+				// The frontier only returns no URLs once the crawl is
+				// finished.
 				if (frontier.isFinished()) {
 					return;
 				}
-				try {
-					Thread.sleep(3000);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
 			} else {
-				for (WebURL curURL : assignedURLs) {
-					if (curURL != null) {
-						processPage(curURL);
-						frontier.setProcessed(curURL);
+				int next = 0;
+				try {
+					while (next < assignedURLs.size()) {
+						WebURL curURL = assignedURLs.get(next++);
+						if (curURL != null) {
+							if (pipeline == null) {
+								try {
+									processPage(curURL);
+								} finally {
+									frontier.setProcessed(curURL);
+								}
+							} else {
+								submitPage(curURL);
+							}
+						}
+						if (myController.isShuttingDown()) {
+							logger.info("Exiting because of controller shutdown.");
+							return;
+						}
 					}
-					if (myController.isShuttingDown()) {
-						logger.info("Exiting because of controller shutdown.");
-						return;
+				} finally {
+					// If this thread dies or exits early, the rest of its URLs
+					// would otherwise keep the crawl from ever becoming idle
+					List<WebURL> rest = new ArrayList<>();
+					for (WebURL url : assignedURLs.subList(next, assignedURLs.size())) {
+						if (url != null) {
+							rest.add(url);
+						}
 					}
+					frontier.returnURLs(rest);
 				}
+				long pageNanos = (System.nanoTime() - start) / assignedURLs.size();
+				nanosPerPage = nanosPerPage == 0 ? pageNanos : (3 * nanosPerPage + pageNanos) / 4;
 			}
 		}
 	}
@@ -273,10 +318,61 @@ public class WebCrawler<T> implements Runnable {
 		if (curURL == null) {
 			return;
 		}
+		try {
+			Page page = fetchPage(curURL);
+			if (page != null && parsePage(page)) {
+				processLinks(page);
+				visitPage(page);
+			}
+		} catch (Exception e) {
+			logger.error(e.getMessage() + ", while processing: " + curURL.getURL());
+		}
+	}
+
+	/**
+	 * Fetches the given URL and hands the page to the pipeline, which marks it
+	 * as processed once it is done with it.
+	 */
+	private void submitPage(WebURL curURL) {
+		boolean submitted = false;
+		try {
+			Page page = null;
+			try {
+				page = fetchPage(curURL);
+			} catch (Exception e) {
+				logger.error(e.getMessage() + ", while processing: " + curURL.getURL());
+			}
+			if (page != null) {
+				pipeline.submit(page);
+				submitted = true;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			if (!submitted) {
+				frontier.setProcessed(curURL);
+			}
+		}
+	}
+
+	/**
+	 * Fetches the given URL and loads its content into a new page. Redirects
+	 * are scheduled here.
+	 *
+	 * @return the fetched page, or null if there is nothing more to do for
+	 *         this URL.
+	 */
+	Page fetchPage(WebURL curURL) {
+		long start = System.nanoTime();
 		PageFetchResult fetchResult = null;
 		try {
+			if (robotstxtServer.getConfig().isCheckAtFetchTime() && !robotstxtServer.allows(curURL)) {
+				logger.debug("Robots.txt does not allow: " + curURL.getURL());
+				return null;
+			}
 			fetchResult = pageFetcher.fetchHeader(curURL);
 			int statusCode = fetchResult.statusCode();
+			metrics.recordStatusCode(statusCode);
 			handlePageStatusCode(curURL, statusCode, CustomFetchStatus.getStatusDescription(statusCode));
 			if (statusCode != HttpStatus.SC_OK) {
                 // Let's capture all Redirects:
@@ -285,12 +381,13 @@ public class WebCrawler<T> implements Runnable {
 					if (myController.config().followRedirects()) {
 						String movedToUrl = fetchResult.movedToUrl();
 						if (movedToUrl == null) {
-							return;
+							return null;
 						}
 						int newDocId = docIdServer.getDocId(movedToUrl);
+						metrics.recordDocIdLookups(1, newDocId > 0 ? 1 : 0);
 						if (newDocId > 0) {
 							// Redirect page is already seen
-							return;
+							return null;
 						}
 
 						WebURL webURL = new WebURL();
@@ -300,7 +397,7 @@ public class WebCrawler<T> implements Runnable {
 						webURL.setDepth(curURL.getDepth());
 						webURL.setDocid(-1);
 						webURL.setAnchor(curURL.getAnchor());
-						if (shouldVisit(webURL) && robotstxtServer.allows(webURL)) {
+						if (shouldVisit(webURL) && isAllowedByRobots(webURL)) {
 							webURL.setDocid(docIdServer.getNewDocID(movedToUrl));
 							WebURL updatedURL = beforeUrlAdd(webURL);
 							frontier.schedule(updatedURL);
@@ -309,73 +406,205 @@ public class WebCrawler<T> implements Runnable {
 				} else if (fetchResult.statusCode() == CustomFetchStatus.PageTooBig()) {
 					logger.info("Skipping a page which was bigger than max allowed size: " + curURL.getURL());
 				}
-				return;
+				return null;
 			}
 
 			if (!curURL.getURL().equals(fetchResult.fetchedUrl())) {
 				if (docIdServer.isSeenBefore(fetchResult.fetchedUrl())) {
 					// Redirect page is already seen
-					return;
+					return null;
 				}
 				curURL.setURL(fetchResult.fetchedUrl());
 				curURL.setDocid(docIdServer.getNewDocID(fetchResult.fetchedUrl()));
 			}
 
 			Page page = new Page(curURL);
-			int docid = curURL.getDocid();
-
+			if (myController.config().streamingParse() && fetchResult.fetchMetadata(page) && parser.isHtml(page)) {
+				// The page is parsed here, while its content is still in the
+				// response.
+				long parseStart = System.nanoTime();
+				boolean parsed = parseContentStream(page, fetchResult);
+				metrics.recordLatency(CrawlMetrics.Stage.PARSE, System.nanoTime() - parseStart);
+				return parsed ? page : null;
+			}
+			long downloadStart = System.nanoTime();
 			if (!fetchResult.fetchContent(page)) {
 				onContentFetchError(curURL);
-				return;
+				return null;
+			}
+			metrics.recordLatency(CrawlMetrics.Stage.DOWNLOAD, System.nanoTime() - downloadStart);
+			if (page.contentData() != null) {
+				metrics.addBytesFetched(page.contentData().length);
+			}
+			return page;
+		} finally {
+			if (fetchResult != null) {
+				fetchResult.discardContentIfNotConsumed();
+			}
+			threadMetrics.addBusyTime(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Checks whether robots.txt allows the given newly found URL. If robots.txt
+	 * is checked at fetch time, this only starts fetching it and allows the
+	 * URL.
+	 */
+	private boolean isAllowedByRobots(WebURL webURL) {
+		if (robotstxtServer.getConfig().isCheckAtFetchTime()) {
+			robotstxtServer.prefetch(webURL);
+			return true;
+		}
+		return robotstxtServer.allows(webURL);
+	}
+
+	/**
+	 * Records the time since the given start in the latencies of the given
+	 * stage and in the busy time of this crawler's thread.
+	 */
+	private void recordStage(CrawlMetrics.Stage stage, long start) {
+		long nanos = System.nanoTime() - start;
+		metrics.recordLatency(stage, nanos);
+		threadMetrics.addBusyTime(nanos);
+	}
+
+	private boolean parseContentStream(Page page, PageFetchResult fetchResult) {
+		InputStream content;
+		try {
+			content = fetchResult.entity().getContent();
+		} catch (IOException e) {
+			logger.info("Exception while fetching content for: " + page.url().getURL() + " [" + e.getMessage() + "]");
+			onContentFetchError(page.url());
+			return false;
+		}
+		CountingInputStream countingContent = new CountingInputStream(content);
+		try {
+			if (!parser.parseHtml(page, page.url().getURL(), countingContent)) {
+				onParseError(page.url());
+				return false;
+			}
+			return true;
+		} finally {
+			metrics.addBytesFetched(countingContent.getCount());
+			try {
+				content.close();
+			} catch (IOException e) {
+				// The rest of the content is discarded anyway
 			}
+		}
+	}
 
-			if (!parser.parse(page, curURL.getURL())) {
-				onParseError(curURL);
-				return;
+	/**
+	 * Parses the content of the given fetched page.
+	 *
+	 * @return false if the page could not be parsed.
+	 */
+	boolean parsePage(Page page) {
+		if (page.parseData() != null) {
+			// Already parsed while fetching
+			return true;
+		}
+		long start = System.nanoTime();
+		try {
+			if (!parser.parse(page, page.url().getURL())) {
+				onParseError(page.url());
+				return false;
 			}
+			return true;
+		} finally {
+			recordStage(CrawlMetrics.Stage.PARSE, start);
+		}
+	}
 
-			ParseData parseData = page.parseData();
-			if (parseData instanceof HtmlParseData) {
-				HtmlParseData htmlParseData = (HtmlParseData) parseData;
-
-				List<WebURL> toSchedule = new ArrayList<>();
-				int maxCrawlDepth = myController.config().maxDepthOfCrawling();
-				for (WebURL webURL : htmlParseData.getOutgoingUrls()) {
-					webURL.setParentDocid(docid);
-					webURL.setParentUrl(curURL.getURL());
-					int newDocId = docIdServer.getDocId(webURL.getURL());
-					if (newDocId > 0) {
-						// This is not the first time that this Url is
-						// visited. So, we set the depth to a negative
-						// number.
-						webURL.setDepth((short) -1);
-						webURL.setDocid(newDocId);
-					} else {
-						webURL.setDocid(-1);
-						webURL.setDepth((short) (curURL.getDepth() + 1));
-						if (maxCrawlDepth == -1 || curURL.getDepth() < maxCrawlDepth) {
-							if (shouldVisit(webURL) && robotstxtServer.allows(webURL)) {
-								webURL.setDocid(docIdServer.getNewDocID(webURL.getURL()));
-								WebURL updatedURL = beforeUrlAdd(webURL);
-								toSchedule.add(updatedURL);
-							}
+	/**
+	 * Assigns docids to the outgoing links of the given parsed page and
+	 * schedules the ones that should be visited.
+	 */
+	void processLinks(Page page) {
+		long start = System.nanoTime();
+		try {
+			scheduleLinks(page);
+		} finally {
+			recordStage(CrawlMetrics.Stage.LINKS, start);
+		}
+	}
+
+	private void scheduleLinks(Page page) {
+		WebURL curURL = page.url();
+		int docid = curURL.getDocid();
+		ParseData parseData = page.parseData();
+		if (parseData instanceof HtmlParseData) {
+			HtmlParseData htmlParseData = (HtmlParseData) parseData;
+
+			List<WebURL> outgoingUrls = htmlParseData.getOutgoingUrls();
+			List<String> urls = new ArrayList<>(outgoingUrls.size());
+			for (WebURL webURL : outgoingUrls) {
+				urls.add(webURL.getURL());
+			}
+			int[] docIds = docIdServer.getDocIds(urls);
+			int hits = 0;
+			for (int docId : docIds) {
+				if (docId > 0) {
+					hits++;
+				}
+			}
+			metrics.recordDocIdLookups(docIds.length, hits);
+
+			// The new Urls of this page, by Url, and the repeated
+			// occurrences of them on the same page.
+			Map<String, WebURL> newUrls = new LinkedHashMap<>();
+			List<WebURL> repeatedUrls = new ArrayList<>();
+			int maxCrawlDepth = myController.config().maxDepthOfCrawling();
+			for (int i = 0; i < outgoingUrls.size(); i++) {
+				WebURL webURL = outgoingUrls.get(i);
+				webURL.setParentDocid(docid);
+				webURL.setParentUrl(curURL.getURL());
+				if (docIds[i] > 0 || newUrls.containsKey(webURL.getURL())) {
+					// This is not the first time that this Url is
+					// visited. So, we set the depth to a negative
+					// number.
+					webURL.setDepth((short) -1);
+					webURL.setDocid(docIds[i]);
+					if (docIds[i] <= 0) {
+						repeatedUrls.add(webURL);
+					}
+				} else {
+					webURL.setDocid(-1);
+					webURL.setDepth((short) (curURL.getDepth() + 1));
+					if (maxCrawlDepth == -1 || curURL.getDepth() < maxCrawlDepth) {
+						if (shouldVisit(webURL) && isAllowedByRobots(webURL)) {
+							newUrls.put(webURL.getURL(), webURL);
 						}
 					}
 				}
-				frontier.scheduleAll(toSchedule);
 			}
-			try {
-				visit(page);
-			} catch (Exception e) {
-				logger.error("Exception while running the visit method. Message: '" + e.getMessage() + "' at " + e.getStackTrace()[0]);
+
+			int[] newDocIds = docIdServer.getNewDocIDs(new ArrayList<>(newUrls.keySet()));
+			List<WebURL> toSchedule = new ArrayList<>(newUrls.size());
+			int i = 0;
+			for (WebURL webURL : newUrls.values()) {
+				webURL.setDocid(newDocIds[i++]);
+				WebURL updatedURL = beforeUrlAdd(webURL);
+				toSchedule.add(updatedURL);
+			}
+			for (WebURL webURL : repeatedUrls) {
+				webURL.setDocid(newUrls.get(webURL.getURL()).getDocid());
 			}
+			frontier.scheduleAll(toSchedule);
+		}
+	}
 
+	/**
+	 * Hands the given page to {@link #visit(Page)}.
+	 */
+	void visitPage(Page page) {
+		long start = System.nanoTime();
+		try {
+			visit(page);
 		} catch (Exception e) {
-			logger.error(e.getMessage() + ", while processing: " + curURL.getURL());
+			logger.error("Exception while running the visit method. Message: '" + e.getMessage() + "' at " + e.getStackTrace()[0]);
 		} finally {
-			if (fetchResult != null) {
-				fetchResult.discardContentIfNotConsumed();
-			}
+			recordStage(CrawlMetrics.Stage.VISIT, start);
 		}
 	}
 
@@ -0,0 +1,299 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import com.sapienapps.scrawler.crawler.CrawlConfig;
+import com.sapienapps.scrawler.fetcher.CustomFetchStatus;
+import com.sapienapps.scrawler.fetcher.PageFetchResult;
+import edu.uci.ics.crawler4j.url.WebURL;
+import org.apache.http.ContentTooLongException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.BasicAsyncResponseConsumer;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A page fetcher built on the non-blocking HttpAsyncClient. A few I/O threads
+ * keep all the connections in flight, and requests which have to wait for the
+ * politeness delay of their host are scheduled instead of blocking a thread.
+ * Results have the same status codes as the ones of {@link PageFetcher}.
+ * <p>
+ * The crawl itself does not use the futures yet: WebCrawler, CrawlPipeline and
+ * RobotsTxtServer call the blocking {@link #fetchHeader(WebURL, Header[])},
+ * which waits for the result, so plugging this fetcher in still keeps one
+ * crawler thread waiting per request. Callers which want to overlap requests
+ * have to use {@link #fetchHeaderAsync} themselves. The blocking connection
+ * pool of PageFetcher is not created.
+ */
+public class AsyncPageFetcher extends PageFetcher {
+
+    protected CloseableHttpAsyncClient asyncClient;
+
+    protected ScheduledExecutorService politenessExecutor;
+
+    /**
+     * The fetches which have not completed yet. They are failed on shutdown,
+     * so that nobody waits for them forever.
+     */
+    protected final Set<BasicFuture<PageFetchResult>> pendingFetches =
+            Collections.newSetFromMap(new ConcurrentHashMap<BasicFuture<PageFetchResult>, Boolean>());
+
+    private volatile boolean shutDown;
+
+    public AsyncPageFetcher(CrawlConfig config) {
+        super(config, false);
+
+        HttpAsyncClientBuilder asyncClientBuilder = HttpAsyncClients.custom()
+                .setDefaultRequestConfig(requestConfig)
+                .setMaxConnTotal(config.maxTotalConnections())
+                .setMaxConnPerRoute(config.maxConnectionsPerHost())
+                .setUserAgent(config.userAgentString())
+                .setHostnameVerifier(SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER)
+                .addInterceptorLast(responseInterceptor);
+
+        if (config.proxyHost() != null) {
+            if (config.proxyUsername() != null) {
+                CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+                credentialsProvider.setCredentials(
+                        new AuthScope(config.proxyHost(), config.proxyPort()),
+                        new UsernamePasswordCredentials(config.proxyUsername(), config.proxyPassword()));
+                asyncClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
+            }
+            asyncClientBuilder.setProxy(new HttpHost(config.proxyHost(), config.proxyPort()));
+        }
+
+        asyncClient = asyncClientBuilder.build();
+        asyncClient.start();
+
+        politenessExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Politeness scheduler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Fetches the given URL without blocking. The request is sent once the
+     * politeness delay of its host allows it.
+     *
+     * @param callback notified when the fetch completes. Can be null.
+     * @return the future result of the fetch. It is never completed
+     * exceptionally; failures, and fetches which were pending when the
+     * fetcher was shut down, are reported through the status code.
+     */
+    public Future<PageFetchResult> fetchHeaderAsync(WebURL webUrl, FutureCallback<PageFetchResult> callback) {
+        return fetchHeaderAsync(webUrl, null, callback);
+    }
+
+    /**
+     * Fetches the given URL without blocking, adding the given headers to the
+     * request, as {@link PageFetcher#fetchHeader(WebURL, Header[])} does.
+     */
+    public Future<PageFetchResult> fetchHeaderAsync(final WebURL webUrl, final Header[] requestHeaders,
+                                                    FutureCallback<PageFetchResult> callback) {
+        final BasicFuture<PageFetchResult> future = new BasicFuture<>(callback);
+        pendingFetches.add(future);
+        if (shutDown) {
+            // Not failed by shutDown() if it ran before the add
+            complete(future, getShutDownResult());
+            return future;
+        }
+        long delay = politenessScheduler.reserve(PolitenessScheduler.getHostKey(webUrl)) - System.currentTimeMillis();
+        if (delay > 0) {
+            try {
+                politenessExecutor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        execute(webUrl, requestHeaders, future);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                complete(future, getShutDownResult());
+            }
+        } else {
+            execute(webUrl, requestHeaders, future);
+        }
+        return future;
+    }
+
+    private void execute(final WebURL webUrl, Header[] requestHeaders, final BasicFuture<PageFetchResult> future) {
+        final HttpGet get;
+        try {
+            get = new HttpGet(webUrl.getURL());
+        } catch (IllegalArgumentException e) {
+            complete(future, getFailedResult(webUrl, e));
+            return;
+        }
+        get.addHeader("Accept-Encoding", "gzip");
+        if (requestHeaders != null) {
+            for (Header header : requestHeaders) {
+                get.addHeader(header);
+            }
+        }
+        try {
+            asyncClient.execute(HttpAsyncMethods.create(get),
+                    new SizeLimitedResponseConsumer(config().maxDownloadSize()), new FutureCallback<HttpResponse>() {
+
+                        @Override
+                        public void completed(HttpResponse response) {
+                            PageFetchResult fetchResult = new PageFetchResult();
+                            try {
+                                processResponse(webUrl, get, response, fetchResult);
+                            } catch (Exception e) {
+                                fetchResult = getFailedResult(webUrl, e);
+                            }
+                            complete(future, fetchResult);
+                        }
+
+                        @Override
+                        public void failed(Exception e) {
+                            complete(future, getFailedResult(webUrl, e));
+                        }
+
+                        @Override
+                        public void cancelled() {
+                            complete(future, getShutDownResult());
+                        }
+                    });
+        } catch (RuntimeException e) {
+            // The client was closed by shutDown()
+            complete(future, getFailedResult(webUrl, e));
+        }
+    }
+
+    private void complete(BasicFuture<PageFetchResult> future, PageFetchResult fetchResult) {
+        pendingFetches.remove(future);
+        future.completed(fetchResult);
+    }
+
+    /**
+     * Returns the result of a fetch which was given up because the fetcher
+     * was shut down.
+     */
+    private static PageFetchResult getShutDownResult() {
+        PageFetchResult fetchResult = new PageFetchResult();
+        fetchResult.statusCode_$eq(CustomFetchStatus.UnknownError());
+        return fetchResult;
+    }
+
+    private PageFetchResult getFailedResult(WebURL webUrl, Exception e) {
+        PageFetchResult fetchResult = new PageFetchResult();
+        if (e instanceof ContentTooLongException) {
+            fetchResult.statusCode_$eq(CustomFetchStatus.PageTooBig());
+        } else if (e instanceof IOException) {
+            logger.error("Fatal transport error: " + e.getMessage() + " while fetching " + webUrl.getURL()
+                    + " (link found in doc #" + webUrl.getParentDocid() + ")");
+            fetchResult.statusCode_$eq(CustomFetchStatus.FatalTransportError());
+        } else {
+            if (e.getMessage() == null) {
+                logger.error("Error while fetching " + webUrl.getURL());
+            } else {
+                logger.error(e.getMessage() + " while fetching " + webUrl.getURL());
+            }
+            fetchResult.statusCode_$eq(CustomFetchStatus.UnknownError());
+        }
+        return fetchResult;
+    }
+
+    @Override
+    public PageFetchResult fetchHeader(WebURL webUrl, Header[] requestHeaders) {
+        Future<PageFetchResult> future = fetchHeaderAsync(webUrl, requestHeaders, null);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error(e.getMessage() + " while fetching " + webUrl.getURL());
+        }
+        PageFetchResult fetchResult = new PageFetchResult();
+        fetchResult.statusCode_$eq(CustomFetchStatus.UnknownError());
+        return fetchResult;
+    }
+
+    @Override
+    public synchronized void shutDown() {
+        shutDown = true;
+        politenessExecutor.shutdownNow();
+        try {
+            asyncClient.close();
+        } catch (IOException e) {
+            logger.error("Error while closing the async client: " + e.getMessage());
+        }
+        // The fetches which were waiting for their politeness slot, or whose
+        // request was dropped by the client, would never complete otherwise
+        for (BasicFuture<PageFetchResult> future : pendingFetches) {
+            complete(future, getShutDownResult());
+        }
+        super.shutDown();
+    }
+
+    public CloseableHttpAsyncClient getAsyncClient() {
+        return asyncClient;
+    }
+
+    /**
+     * Buffers the response in memory, unless its declared length is larger
+     * than the maximum download size.
+     */
+    private static class SizeLimitedResponseConsumer extends BasicAsyncResponseConsumer {
+
+        private final int maxDownloadSize;
+
+        public SizeLimitedResponseConsumer(int maxDownloadSize) {
+            this.maxDownloadSize = maxDownloadSize;
+        }
+
+        @Override
+        protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) throws IOException {
+            if (entity.getContentLength() > maxDownloadSize) {
+                throw new ContentTooLongException("Entity content is too long: " + entity.getContentLength());
+            }
+            super.onEntityEnclosed(entity, contentType);
+        }
+    }
+}
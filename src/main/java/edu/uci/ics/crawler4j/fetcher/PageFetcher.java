@@ -21,6 +21,7 @@ import com.sapienapps.scrawler.crawler.Configurable;
 import com.sapienapps.scrawler.crawler.CrawlConfig;
 import com.sapienapps.scrawler.fetcher.CustomFetchStatus;
 import com.sapienapps.scrawler.fetcher.PageFetchResult;
+import edu.uci.ics.crawler4j.metrics.CrawlMetrics;
 import edu.uci.ics.crawler4j.url.URLCanonicalizer;
 import edu.uci.ics.crawler4j.url.WebURL;
 import org.apache.http.*;
@@ -33,12 +34,15 @@ import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.DnsResolver;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.entity.HttpEntityWrapper;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.protocol.HttpContext;
 import org.apache.log4j.Logger;
@@ -46,7 +50,10 @@ import org.apache.log4j.Logger;
 import javax.net.ssl.SSLSocketFactory;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Date;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
 import java.util.zip.GZIPInputStream;
 
 /**
@@ -60,33 +67,72 @@ public class PageFetcher extends Configurable {
 
     protected HttpClient httpClient;
 
-    protected final Object mutex = new Object();
+    protected PolitenessScheduler politenessScheduler;
 
-    protected long lastFetchTime = 0;
+    protected RequestConfig requestConfig;
+
+    protected HttpResponseInterceptor responseInterceptor;
 
     protected IdleConnectionMonitorThread connectionMonitorThread = null;
 
+    /**
+     * The metrics which the DNS, connect and first byte latencies are
+     * recorded in. The crawl controller replaces these with its own.
+     */
+    protected volatile CrawlMetrics metrics = new CrawlMetrics();
+
     public PageFetcher(CrawlConfig config) {
+        this(config, true);
+    }
+
+    /**
+     * @param blockingClient whether to build the blocking HTTP client and its
+     *                       connection pool. Subclasses which send their
+     *                       requests some other way can skip them.
+     */
+    protected PageFetcher(CrawlConfig config, boolean blockingClient) {
         super(config);
+        politenessScheduler = new PolitenessScheduler(config.politenessDelay());
         // This should be disabled to prevent false SSL Errors:
         // http://bugs.java.com/bugdatabase/view_bug.do?bug_id=7127374
         //System.setProperty ("jsse.enableSNIExtension", "false");
 
-        RequestConfig requestConfig = RequestConfig.copy(RequestConfig.DEFAULT)
+        requestConfig = RequestConfig.copy(RequestConfig.DEFAULT)
                 .setSocketTimeout(config.socketTimeout())
                 .setConnectTimeout(config.connectionTimeout())
                 .setRedirectsEnabled(false)
                 .setRelativeRedirectsAllowed(config.followRedirects())
                 .setCookieSpec(CookieSpecs.BROWSER_COMPATIBILITY).build();
 
+        responseInterceptor = new HttpResponseInterceptor() {
+            @Override
+            public void process(final HttpResponse response, final HttpContext context) throws HttpException, IOException {
+                HttpEntity entity = response.getEntity();
+                Header contentEncoding = entity.getContentEncoding();
+                if (contentEncoding != null) {
+                    HeaderElement[] codecs = contentEncoding.getElements();
+                    for (HeaderElement codec : codecs) {
+                        if (codec.getName().equalsIgnoreCase("gzip")) {
+                            response.setEntity(new GzipDecompressingEntity(response.getEntity()));
+                            return;
+                        }
+                    }
+                }
+            }
+        };
+
+        if (!blockingClient) {
+            return;
+        }
+
         SSLConnectionSocketFactory https = new SSLConnectionSocketFactory((SSLSocketFactory) SSLSocketFactory.getDefault(),
                 SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
 
         Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
-                .register("http", PlainConnectionSocketFactory.INSTANCE)
-                .register("https", https).build();
+                .register("http", new TimedConnectionSocketFactory(PlainConnectionSocketFactory.INSTANCE))
+                .register("https", new TimedConnectionSocketFactory(https)).build();
 
-        connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+        connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry, new TimedDnsResolver());
         connectionManager.setMaxTotal(config.maxTotalConnections());
         connectionManager.setDefaultMaxPerRoute(config.maxConnectionsPerHost());
 
@@ -104,23 +150,6 @@ public class PageFetcher extends Configurable {
             httpClientBuilder.setProxy(proxy);
         }
 
-        HttpResponseInterceptor responseInterceptor = new HttpResponseInterceptor() {
-            @Override
-            public void process(final HttpResponse response, final HttpContext context) throws HttpException, IOException {
-                HttpEntity entity = response.getEntity();
-                Header contentEncoding = entity.getContentEncoding();
-                if (contentEncoding != null) {
-                    HeaderElement[] codecs = contentEncoding.getElements();
-                    for (HeaderElement codec : codecs) {
-                        if (codec.getName().equalsIgnoreCase("gzip")) {
-                            response.setEntity(new GzipDecompressingEntity(response.getEntity()));
-                            return;
-                        }
-                    }
-                }
-            }
-        };
-
         httpClient = HttpClientBuilder.create()
                 .setDefaultRequestConfig(requestConfig)
                 .setConnectionManager(connectionManager)
@@ -134,77 +163,31 @@ public class PageFetcher extends Configurable {
     }
 
     public PageFetchResult fetchHeader(WebURL webUrl) {
+        return fetchHeader(webUrl, null);
+    }
+
+    /**
+     * Fetches the given URL, adding the given headers to the request. This is
+     * used for conditional requests, whose 304 responses are returned with
+     * their status code and headers.
+     */
+    public PageFetchResult fetchHeader(WebURL webUrl, Header[] requestHeaders) {
         PageFetchResult fetchResult = new PageFetchResult();
         String toFetchURL = webUrl.getURL();
         HttpGet get = null;
         try {
             get = new HttpGet(toFetchURL);
-            synchronized (mutex) {
-                long now = (new Date()).getTime();
-                if (now - lastFetchTime < config().politenessDelay()) {
-                    Thread.sleep(config().politenessDelay() - (now - lastFetchTime));
-                }
-                lastFetchTime = (new Date()).getTime();
-            }
+            politenessScheduler.await(webUrl);
             get.addHeader("Accept-Encoding", "gzip");
-            HttpResponse response = httpClient.execute(get);
-            fetchResult.entity_$eq(response.getEntity());
-            fetchResult.responseHeaders_$eq(response.getAllHeaders());
-
-            int statusCode = response.getStatusLine().getStatusCode();
-            if (statusCode != HttpStatus.SC_OK) {
-                if (statusCode != HttpStatus.SC_NOT_FOUND) {
-                    // Let's capture all Redirects:
-                    //if (statusCode == HttpStatus.SC_MOVED_PERMANENTLY || statusCode == HttpStatus.SC_MOVED_TEMPORARILY) {
-                    if (statusCode >= 300 && statusCode < 400) {
-                        Header header = response.getFirstHeader("Location");
-                        if (header != null) {
-                            String movedToUrl = header.getValue();
-                            movedToUrl = URLCanonicalizer.getCanonicalURL(movedToUrl, toFetchURL);
-                            fetchResult.movedToUrl_$eq(movedToUrl);
-                        }
-                        fetchResult.statusCode_$eq(statusCode);
-                        return fetchResult;
-                    }
-                    logger.info("Failed: " + response.getStatusLine().toString() + ", while fetching " + toFetchURL);
-                }
-                fetchResult.statusCode_$eq(response.getStatusLine().getStatusCode());
-                return fetchResult;
-            }
-
-            fetchResult.fetchedUrl_$eq(toFetchURL);
-            String uri = get.getURI().toString();
-            if (!uri.equals(toFetchURL)) {
-                if (!URLCanonicalizer.getCanonicalURL(uri).equals(toFetchURL)) {
-                    fetchResult.fetchedUrl_$eq(uri);
+            if (requestHeaders != null) {
+                for (Header header : requestHeaders) {
+                    get.addHeader(header);
                 }
             }
-
-            if (fetchResult.entity() != null) {
-                long size = fetchResult.entity().getContentLength();
-                if (size == -1) {
-                    Header length = response.getLastHeader("Content-Length");
-                    if (length == null) {
-                        length = response.getLastHeader("Content-length");
-                    }
-                    if (length != null) {
-                        size = Integer.parseInt(length.getValue());
-                    } else {
-                        size = -1;
-                    }
-                }
-                if (size > config().maxDownloadSize()) {
-                    fetchResult.statusCode_$eq(CustomFetchStatus.PageTooBig());
-                    get.abort();
-                    return fetchResult;
-                }
-
-                fetchResult.statusCode_$eq(HttpStatus.SC_OK);
-                return fetchResult;
-
-            }
-
-            get.abort();
+            long start = System.nanoTime();
+            HttpResponse response = httpClient.execute(get);
+            metrics.recordLatency(CrawlMetrics.Stage.FIRST_BYTE, System.nanoTime() - start);
+            return processResponse(webUrl, get, response, fetchResult);
 
         } catch (IOException e) {
             logger.error("Fatal transport error: " + e.getMessage() + " while fetching " + toFetchURL
@@ -233,6 +216,74 @@ public class PageFetcher extends Configurable {
         return fetchResult;
     }
 
+    /**
+     * Fills the given fetch result from the response to the given request.
+     * This is shared by the synchronous and asynchronous fetchers.
+     */
+    protected PageFetchResult processResponse(WebURL webUrl, HttpGet get, HttpResponse response,
+                                              PageFetchResult fetchResult) {
+        String toFetchURL = webUrl.getURL();
+        fetchResult.entity_$eq(response.getEntity());
+        fetchResult.responseHeaders_$eq(response.getAllHeaders());
+
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode != HttpStatus.SC_OK) {
+            if (statusCode != HttpStatus.SC_NOT_FOUND) {
+                // Let's capture all Redirects:
+                //if (statusCode == HttpStatus.SC_MOVED_PERMANENTLY || statusCode == HttpStatus.SC_MOVED_TEMPORARILY) {
+                if (statusCode >= 300 && statusCode < 400) {
+                    Header header = response.getFirstHeader("Location");
+                    if (header != null) {
+                        String movedToUrl = header.getValue();
+                        movedToUrl = URLCanonicalizer.getCanonicalURL(movedToUrl, toFetchURL);
+                        fetchResult.movedToUrl_$eq(movedToUrl);
+                    }
+                    fetchResult.statusCode_$eq(statusCode);
+                    return fetchResult;
+                }
+                logger.info("Failed: " + response.getStatusLine().toString() + ", while fetching " + toFetchURL);
+            }
+            fetchResult.statusCode_$eq(response.getStatusLine().getStatusCode());
+            return fetchResult;
+        }
+
+        fetchResult.fetchedUrl_$eq(toFetchURL);
+        String uri = get.getURI().toString();
+        if (!uri.equals(toFetchURL)) {
+            if (!URLCanonicalizer.getCanonicalURL(uri).equals(toFetchURL)) {
+                fetchResult.fetchedUrl_$eq(uri);
+            }
+        }
+
+        if (fetchResult.entity() != null) {
+            long size = fetchResult.entity().getContentLength();
+            if (size == -1) {
+                Header length = response.getLastHeader("Content-Length");
+                if (length == null) {
+                    length = response.getLastHeader("Content-length");
+                }
+                if (length != null) {
+                    size = Integer.parseInt(length.getValue());
+                } else {
+                    size = -1;
+                }
+            }
+            if (size > config().maxDownloadSize()) {
+                fetchResult.statusCode_$eq(CustomFetchStatus.PageTooBig());
+                get.abort();
+                return fetchResult;
+            }
+
+            fetchResult.statusCode_$eq(HttpStatus.SC_OK);
+            return fetchResult;
+
+        }
+
+        get.abort();
+        fetchResult.statusCode_$eq(CustomFetchStatus.UnknownError());
+        return fetchResult;
+    }
+
     public synchronized void shutDown() {
         if (connectionMonitorThread != null) {
             connectionManager.shutdown();
@@ -244,6 +295,65 @@ public class PageFetcher extends Configurable {
         return httpClient;
     }
 
+    public PolitenessScheduler getPolitenessScheduler() {
+        return politenessScheduler;
+    }
+
+    public CrawlMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(CrawlMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    private class TimedDnsResolver implements DnsResolver {
+
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            long start = System.nanoTime();
+            try {
+                return SystemDefaultDnsResolver.INSTANCE.resolve(host);
+            } finally {
+                metrics.recordLatency(CrawlMetrics.Stage.DNS, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private class TimedConnectionSocketFactory implements LayeredConnectionSocketFactory {
+
+        private final ConnectionSocketFactory socketFactory;
+
+        TimedConnectionSocketFactory(ConnectionSocketFactory socketFactory) {
+            this.socketFactory = socketFactory;
+        }
+
+        @Override
+        public Socket createSocket(HttpContext context) throws IOException {
+            return socketFactory.createSocket(context);
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket sock, HttpHost host, InetSocketAddress remoteAddress,
+                                    InetSocketAddress localAddress, HttpContext context) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return socketFactory.connectSocket(connectTimeout, sock, host, remoteAddress, localAddress, context);
+            } finally {
+                metrics.recordLatency(CrawlMetrics.Stage.CONNECT, System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context)
+                throws IOException {
+            if (!(socketFactory instanceof LayeredConnectionSocketFactory)) {
+                throw new IllegalStateException("Socket factory does not support layering: " + socketFactory);
+            }
+            return ((LayeredConnectionSocketFactory) socketFactory).createLayeredSocket(socket, target, port, context);
+        }
+    }
+
     private static class GzipDecompressingEntity extends HttpEntityWrapper {
 
         public GzipDecompressingEntity(final HttpEntity entity) {
@@ -0,0 +1,191 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import edu.uci.ics.crawler4j.url.WebURL;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the time at which the next request to each host may be sent.
+ * The politeness delay is only applied between requests to the same host, so
+ * requests to different hosts never wait for each other.
+ */
+public class PolitenessScheduler {
+
+    /**
+     * Expired hosts are not purged before the map holds at least this many
+     * entries.
+     */
+    private static final int MIN_PURGE_SIZE = 10000;
+
+    /**
+     * Marks an entry that is being removed from the map, so that no slot can
+     * be reserved on it anymore.
+     */
+    private static final long PURGED = -1;
+
+    protected final ConcurrentMap<String, AtomicLong> nextFetchTimes = new ConcurrentHashMap<>();
+
+    protected final long politenessDelay;
+
+    /**
+     * Delays of hosts which asked for more than the politeness delay, e.g.
+     * with a Crawl-delay in their robots.txt. They are removed by whoever sets
+     * them, e.g. when the robots.txt of the host leaves the cache.
+     */
+    protected final ConcurrentMap<String, Long> hostDelays = new ConcurrentHashMap<>();
+
+    private volatile int purgeSize = MIN_PURGE_SIZE;
+
+    public PolitenessScheduler(long politenessDelay) {
+        this.politenessDelay = politenessDelay;
+    }
+
+    /**
+     * Returns the key under which the politeness delay of the given URL is
+     * tracked, e.g. 'www.example.com' for 'http://www.example.com/a.html'.
+     */
+    public static String getHostKey(WebURL webUrl) {
+        String subDomain = webUrl.getSubDomain();
+        if (subDomain == null || subDomain.isEmpty()) {
+            return webUrl.getDomain();
+        }
+        return subDomain + "." + webUrl.getDomain();
+    }
+
+    /**
+     * Reserves the next free slot for the given host.
+     *
+     * @param host the host key as returned by {@link #getHostKey(WebURL)}
+     * @return the time (in milliseconds) at which the request may be sent.
+     */
+    public long reserve(String host) {
+        long delay = getDelay(host);
+        if (delay <= 0) {
+            return System.currentTimeMillis();
+        }
+        while (true) {
+            AtomicLong nextFetchTime = nextFetchTimes.get(host);
+            if (nextFetchTime == null) {
+                AtomicLong created = new AtomicLong(0);
+                nextFetchTime = nextFetchTimes.putIfAbsent(host, created);
+                if (nextFetchTime == null) {
+                    nextFetchTime = created;
+                    purgeIfNeeded();
+                }
+            }
+            long earliest = nextFetchTime.get();
+            if (earliest == PURGED) {
+                // The entry is being purged; retry on a fresh one.
+                nextFetchTimes.remove(host, nextFetchTime);
+                continue;
+            }
+            long fetchTime = Math.max(System.currentTimeMillis(), earliest);
+            if (nextFetchTime.compareAndSet(earliest, fetchTime + delay)) {
+                return fetchTime;
+            }
+        }
+    }
+
+    /**
+     * Returns the delay between two requests to the given host.
+     */
+    public long getDelay(String host) {
+        if (hostDelays.isEmpty()) {
+            return politenessDelay;
+        }
+        Long hostDelay = hostDelays.get(host);
+        return hostDelay == null ? politenessDelay : Math.max(politenessDelay, hostDelay);
+    }
+
+    /**
+     * Sets the delay between two requests to the given host. Delays shorter
+     * than the politeness delay have no effect.
+     */
+    public void setHostDelay(String host, long delay) {
+        if (delay > politenessDelay) {
+            hostDelays.put(host, delay);
+        } else {
+            hostDelays.remove(host);
+        }
+    }
+
+    /**
+     * Removes the delay set for the given host, which then gets the politeness
+     * delay again.
+     */
+    public void removeHostDelay(String host) {
+        hostDelays.remove(host);
+    }
+
+    /**
+     * Reserves the next free slot for the host of the given URL and sleeps
+     * until it is reached.
+     */
+    public void await(WebURL webUrl) throws InterruptedException {
+        long delay = reserve(getHostKey(webUrl)) - System.currentTimeMillis();
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+    }
+
+    /**
+     * Returns the earliest time (in milliseconds) at which a new request to
+     * the given host can be sent without waiting.
+     */
+    public long getNextFetchTime(String host) {
+        AtomicLong nextFetchTime = nextFetchTimes.get(host);
+        return nextFetchTime == null ? 0 : Math.max(0, nextFetchTime.get());
+    }
+
+    /**
+     * Removes the hosts whose politeness window has already passed. These
+     * entries behave exactly like hosts that have never been seen.
+     */
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, AtomicLong>> iterator = nextFetchTimes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, AtomicLong> entry = iterator.next();
+            AtomicLong nextFetchTime = entry.getValue();
+            long value = nextFetchTime.get();
+            if (value >= 0 && value < now && nextFetchTime.compareAndSet(value, PURGED)) {
+                nextFetchTimes.remove(entry.getKey(), nextFetchTime);
+            }
+        }
+    }
+
+    private void purgeIfNeeded() {
+        if (nextFetchTimes.size() < purgeSize) {
+            return;
+        }
+        synchronized (this) {
+            if (nextFetchTimes.size() < purgeSize) {
+                return;
+            }
+            purgeExpired();
+            // Keep the purge cost amortized constant per new host
+            purgeSize = Math.max(MIN_PURGE_SIZE, 2 * nextFetchTimes.size());
+        }
+    }
+}
@@ -20,16 +20,36 @@ package edu.uci.ics.crawler4j.frontier;
 import com.sleepycat.je.*;
 import com.sapienapps.scrawler.crawler.Configurable;
 import com.sapienapps.scrawler.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.metrics.StripedCounter;
 import edu.uci.ics.crawler4j.util.Util;
+import org.apache.log4j.Logger;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * Named counters of the crawl. Counters are kept in memory as striped
+ * counters, so that threads can update them without contention. In resumable
+ * crawls, the values are written to a transactional database by a
+ * background checkpoint every countersCheckpointInterval milliseconds and on
+ * close, and are restored from the last checkpoint on start.
+ *
  * @author Yasser Ganjisaffar <lastname at gmail dot com>
  */
 
 public class Counters extends Configurable {
+
+	protected static final Logger logger = Logger.getLogger(Counters.class.getName());
+
+	/**
+	 * How long close() waits for a running checkpoint to finish, in seconds.
+	 */
+	private static final int CHECKPOINT_TERMINATION_TIMEOUT = 60;
 	
 	public class ReservedCounterNames {
 		public final static String SCHEDULED_PAGES = "Scheduled-Pages";
@@ -39,15 +59,20 @@ public class Counters extends Configurable {
     protected Database statisticsDB = null;
 	protected Environment env;
 
+	/**
+	 * Serializes the checkpoints. Updates of the counters do not take it.
+	 */
 	protected final Object mutex = new Object();
 
-	protected Map<String, Long> counterValues;
+	protected ConcurrentMap<String, StripedCounter> counterValues;
+
+	protected ScheduledExecutorService checkpointExecutor;
 
 	public Counters(Environment env, CrawlConfig config) throws DatabaseException {
 		super(config);
 
 		this.env = env;
-		this.counterValues = new HashMap<>();
+		this.counterValues = new ConcurrentHashMap<>();
 
 		/*
 		 * When crawling is set to be resumable, we have to keep the statistics
@@ -72,39 +97,60 @@ public class Counters extends Configurable {
 				if (value.getData().length > 0) {
 					String name = new String(key.getData());
 					long counterValue = Util.byteArray2Long(value.getData());
-					counterValues.put(name, new Long(counterValue));
+					getCounter(name).add(counterValue);
 				}
 				result = cursor.getNext(key, value, null);
 			}
 			cursor.close();
 			tnx.commit();
+
+			checkpointExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Counters checkpoint");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			long interval = config.countersCheckpointInterval();
+			checkpointExecutor.scheduleWithFixedDelay(new Runnable() {
+
+				@Override
+				public void run() {
+					checkpoint();
+				}
+			}, interval, interval, TimeUnit.MILLISECONDS);
 		}
 	}
 
-	public long getValue(String name) {
-		synchronized (mutex) {
-			Long value = counterValues.get(name);
-			if (value == null) {
-				return 0;
+	protected StripedCounter getCounter(String name) {
+		StripedCounter counter = counterValues.get(name);
+		if (counter == null) {
+			StripedCounter newCounter = new StripedCounter();
+			counter = counterValues.putIfAbsent(name, newCounter);
+			if (counter == null) {
+				counter = newCounter;
 			}
-			return value.longValue();
 		}
+		return counter;
 	}
 
-	public void setValue(String name, long value) {
-		synchronized (mutex) {
-			try {
-				counterValues.put(name, new Long(value));
-				if (statisticsDB != null) {
-					Transaction txn = env.beginTransaction(null, null);					
-					statisticsDB.put(txn, new DatabaseEntry(name.getBytes()),
-							new DatabaseEntry(Util.long2ByteArray(value)));
-					txn.commit();
-				}
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
+	public long getValue(String name) {
+		StripedCounter counter = counterValues.get(name);
+		if (counter == null) {
+			return 0;
 		}
+		return counter.sum();
+	}
+
+	/**
+	 * Sets the value of the given counter. Increments which are concurrent
+	 * with this call may be lost.
+	 */
+	public void setValue(String name, long value) {
+		StripedCounter counter = getCounter(name);
+		counter.add(value - counter.sum());
 	}
 
 	public void increment(String name) {
@@ -112,9 +158,34 @@ public class Counters extends Configurable {
 	}
 
 	public void increment(String name, long addition) {
+		getCounter(name).add(addition);
+	}
+
+	/**
+	 * Writes the current values of all counters to the statistics database
+	 * in a single transaction. Does nothing if crawling is not resumable.
+	 */
+	public void checkpoint() {
+		if (statisticsDB == null) {
+			return;
+		}
 		synchronized (mutex) {
-			long prevValue = getValue(name);
-			setValue(name, prevValue + addition);
+			Transaction txn = null;
+			try {
+				txn = env.beginTransaction(null, null);
+				for (Map.Entry<String, StripedCounter> entry : counterValues.entrySet()) {
+					statisticsDB.put(txn, new DatabaseEntry(entry.getKey().getBytes()),
+							new DatabaseEntry(Util.long2ByteArray(entry.getValue().sum())));
+				}
+				txn.commit();
+				txn = null;
+			} catch (Exception e) {
+				logger.error("Error while checkpointing the counters: " + e.getMessage(), e);
+			} finally {
+				if (txn != null) {
+					txn.abort();
+				}
+			}
 		}
 	}
 
@@ -133,6 +204,20 @@ public class Counters extends Configurable {
 	}
 
 	public void close() {
+		if (checkpointExecutor != null) {
+			// Interrupting a checkpoint would interrupt JE in the middle of its
+			// transaction, so a running one is left to finish
+			checkpointExecutor.shutdown();
+			try {
+				if (!checkpointExecutor.awaitTermination(CHECKPOINT_TERMINATION_TIMEOUT, TimeUnit.SECONDS)) {
+					logger.warn("The counters checkpoint did not finish in " + CHECKPOINT_TERMINATION_TIMEOUT
+							+ " seconds.");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		checkpoint();
 		try {
 			if (statisticsDB != null) {
 				statisticsDB.close();
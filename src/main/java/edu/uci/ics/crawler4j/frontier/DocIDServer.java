@@ -23,8 +23,19 @@ import com.sleepycat.je.*;
 
 import com.sapienapps.scrawler.crawler.Configurable;
 import com.sapienapps.scrawler.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.util.ScalableBloomFilter;
 import edu.uci.ics.crawler4j.util.Util;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * @author Yasser Ganjisaffar <lastname at gmail dot com>
  */
@@ -39,6 +50,20 @@ public class DocIDServer extends Configurable {
 
 	protected int lastDocID;
 
+	/**
+	 * Bloom filter of the URLs in docIDsDB. URLs it does not contain are known
+	 * to be new without a database lookup. Null if it is not enabled.
+	 */
+	protected ScalableBloomFilter seenUrls = null;
+
+	/**
+	 * Constructor for implementations which do not keep the docids in Berkeley
+	 * DB. These have to override all the methods which access the database.
+	 */
+	protected DocIDServer(CrawlConfig config) {
+		super(config);
+	}
+
 	public DocIDServer(Environment env, CrawlConfig config) throws DatabaseException {
 		super(config);
 		DatabaseConfig dbConfig = new DatabaseConfig();
@@ -55,6 +80,61 @@ public class DocIDServer extends Configurable {
 		} else {
 			lastDocID = 0;
 		}
+		if (config.seenUrlBloomFilter()) {
+			seenUrls = loadSeenUrls();
+		}
+	}
+
+	protected File getSeenUrlsFile() {
+		return new File(config().crawlStorageFolder(), "docids.bloom");
+	}
+
+	/*
+	 * A resumable crawl reloads the filter that was saved when the previous
+	 * crawl was closed. The file is deleted once it is read, so that after a
+	 * crash the filter is rebuilt from the database instead of missing the
+	 * URLs that were added after it was saved.
+	 */
+	private ScalableBloomFilter loadSeenUrls() {
+		File file = getSeenUrlsFile();
+		if (file.exists()) {
+			try {
+				if (config().resumableCrawling()) {
+					ScalableBloomFilter filter = ScalableBloomFilter.load(file);
+					logger.info("Loaded Bloom filter of " + filter.getCount() + " seen URLs.");
+					return filter;
+				}
+			} catch (IOException e) {
+				logger.warn("Could not load Bloom filter from " + file.getAbsolutePath() + ": " + e.getMessage());
+			} finally {
+				if (!file.delete()) {
+					logger.warn("Could not delete " + file.getAbsolutePath());
+				}
+			}
+		}
+
+		ScalableBloomFilter filter = new ScalableBloomFilter(config().seenUrlBloomFilterCapacity(),
+				config().seenUrlBloomFilterFalsePositiveRate());
+		if (lastDocID > 0) {
+			logger.info("Rebuilding Bloom filter of seen URLs...");
+			Cursor cursor = null;
+			try {
+				DatabaseEntry key = new DatabaseEntry();
+				DatabaseEntry value = new DatabaseEntry();
+				value.setPartial(0, 0, true);
+				cursor = docIDsDB.openCursor(null, null);
+				OperationStatus result = cursor.getFirst(key, value, null);
+				while (result == OperationStatus.SUCCESS) {
+					filter.put(new String(key.getData()));
+					result = cursor.getNext(key, value, null);
+				}
+			} finally {
+				if (cursor != null) {
+					cursor.close();
+				}
+			}
+		}
+		return filter;
 	}
 
 	/**
@@ -68,6 +148,9 @@ public class DocIDServer extends Configurable {
 			if (docIDsDB == null) {
 				return -1;
 			}
+			if (seenUrls != null && !seenUrls.mightContain(url)) {
+				return -1;
+			}
 			OperationStatus result;
 			DatabaseEntry value = new DatabaseEntry();
 			try {
@@ -95,6 +178,9 @@ public class DocIDServer extends Configurable {
 
 				lastDocID++;
 				docIDsDB.put(null, new DatabaseEntry(url.getBytes()), new DatabaseEntry(Util.int2ByteArray(lastDocID)));
+				if (seenUrls != null) {
+					seenUrls.put(url);
+				}
 				return lastDocID;
 			} catch (Exception e) {
 				e.printStackTrace();
@@ -103,6 +189,108 @@ public class DocIDServer extends Configurable {
 		}
 	}
 	
+	/**
+	 * Returns the docids of the given urls. All lookups are done under one lock
+	 * and in key order, so that consecutive lookups hit the same parts of the
+	 * B-tree.
+	 *
+	 * @param urls the URLs for which the docids are returned.
+	 * @return the docid of each url if it is seen before, -1 otherwise.
+	 */
+	public int[] getDocIds(List<String> urls) {
+		int[] docIds = new int[urls.size()];
+		Arrays.fill(docIds, -1);
+		synchronized (mutex) {
+			if (docIDsDB == null) {
+				return docIds;
+			}
+			DatabaseEntry value = new DatabaseEntry();
+			for (int i : getSortedIndexes(urls)) {
+				if (seenUrls != null && !seenUrls.mightContain(urls.get(i))) {
+					continue;
+				}
+				try {
+					DatabaseEntry key = new DatabaseEntry(urls.get(i).getBytes());
+					OperationStatus result = docIDsDB.get(null, key, value, null);
+					if (result == OperationStatus.SUCCESS && value.getData().length > 0) {
+						docIds[i] = Util.byteArray2Int(value.getData());
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return docIds;
+	}
+
+	/**
+	 * Returns the docids of the given urls and assigns new docids to the urls
+	 * which have not been seen before. New docids are assigned in the order of
+	 * the list, while the database is updated in key order under one lock.
+	 *
+	 * @param urls the URLs for which the docids are returned.
+	 * @return the docid of each url, or -1 if a new docid could not be stored.
+	 */
+	public int[] getNewDocIDs(List<String> urls) {
+		int[] docIds;
+		synchronized (mutex) {
+			docIds = getDocIds(urls);
+			Map<String, Integer> newDocIds = new HashMap<>();
+			for (int i = 0; i < docIds.length; i++) {
+				if (docIds[i] > 0) {
+					continue;
+				}
+				String url = urls.get(i);
+				Integer docId = newDocIds.get(url);
+				if (docId == null) {
+					lastDocID++;
+					docId = lastDocID;
+					newDocIds.put(url, docId);
+				}
+				docIds[i] = docId;
+			}
+
+			List<String> newUrls = new ArrayList<>(newDocIds.keySet());
+			Collections.sort(newUrls);
+			for (String url : newUrls) {
+				try {
+					docIDsDB.put(null, new DatabaseEntry(url.getBytes()),
+							new DatabaseEntry(Util.int2ByteArray(newDocIds.get(url))));
+					if (seenUrls != null) {
+						seenUrls.put(url);
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+					newDocIds.put(url, -1);
+				}
+			}
+			for (int i = 0; i < docIds.length; i++) {
+				Integer docId = newDocIds.get(urls.get(i));
+				if (docId != null) {
+					docIds[i] = docId;
+				}
+			}
+		}
+		return docIds;
+	}
+
+	/*
+	 * Returns the positions of the given urls in the order of their keys.
+	 */
+	protected static Integer[] getSortedIndexes(final List<String> urls) {
+		Integer[] indexes = new Integer[urls.size()];
+		for (int i = 0; i < indexes.length; i++) {
+			indexes[i] = i;
+		}
+		Arrays.sort(indexes, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				return urls.get(i1).compareTo(urls.get(i2));
+			}
+		});
+		return indexes;
+	}
+
 	public void addUrlAndDocId(String url, int docId) throws Exception {
 		synchronized (mutex) {
 			if (docId <= lastDocID) {
@@ -119,6 +307,9 @@ public class DocIDServer extends Configurable {
 			}
 			
 			docIDsDB.put(null, new DatabaseEntry(url.getBytes()), new DatabaseEntry(Util.int2ByteArray(docId)));
+			if (seenUrls != null) {
+				seenUrls.put(url);
+			}
 			lastDocID = docId;
 		}
 	}
@@ -150,11 +341,28 @@ public class DocIDServer extends Configurable {
 		}
 	}
 
+	/**
+	 * Saves the Bloom filter of a resumable crawl and closes the database.
+	 * Calls after the first one do nothing.
+	 */
 	public void close() {
-		try {
-			docIDsDB.close();
-		} catch (DatabaseException e) {
-			e.printStackTrace();
+		synchronized (mutex) {
+			if (docIDsDB == null) {
+				return;
+			}
+			if (seenUrls != null && config().resumableCrawling()) {
+				try {
+					seenUrls.save(getSeenUrlsFile());
+				} catch (IOException e) {
+					logger.warn("Could not save Bloom filter of seen URLs: " + e.getMessage());
+				}
+			}
+			try {
+				docIDsDB.close();
+			} catch (DatabaseException e) {
+				e.printStackTrace();
+			}
+			docIDsDB = null;
 		}
 	}
 }
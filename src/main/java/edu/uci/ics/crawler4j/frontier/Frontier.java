@@ -26,6 +26,10 @@ import edu.uci.ics.crawler4j.url.WebURL;
 import org.apache.log4j.Logger;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * @author Yasser Ganjisaffar <lastname at gmail dot com>
@@ -41,13 +45,57 @@ public class Frontier extends Configurable {
 
 	protected InProcessPagesDB inProcessPages;
 
-	protected final Object mutex = new Object();
-	protected final Object waitingList = new Object();
+	protected final ReentrantLock lock = new ReentrantLock();
 
-	protected boolean isFinished = false;
+	/**
+	 * Signalled once for each new URL, as long as crawlers are waiting for
+	 * URLs, and when the crawl finishes.
+	 */
+	protected final Condition urlsAvailable = lock.newCondition();
+
+	/**
+	 * Signalled when the frontier becomes idle.
+	 */
+	protected final Condition idle = lock.newCondition();
+
+	/**
+	 * Number of crawlers which are waiting for URLs. Guarded by the lock.
+	 */
+	protected int waitingCrawlers = 0;
+
+	protected volatile boolean isFinished = false;
 
 	protected long scheduledPages;
 
+	/**
+	 * Number of URLs in the work queue. Guarded by the lock.
+	 */
+	protected long queuedPages;
+
+	/**
+	 * Number of crawler threads which share the queue.
+	 */
+	protected volatile int numberOfCrawlers = 1;
+
+	/**
+	 * The time a crawler should take to process one assignment of URLs.
+	 * Longer assignments hold URLs which idle crawlers could process, shorter
+	 * ones take URLs from the queue more often than needed.
+	 */
+	protected static final long TARGET_ASSIGNMENT_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+	/**
+	 * Number of URLs which were handed out by {@link #getNextURLs} and are
+	 * not processed yet.
+	 */
+	protected final AtomicLong assignedPages = new AtomicLong();
+
+	/**
+	 * Was the work queue found empty by the last take, with nothing
+	 * scheduled since? Guarded by the lock.
+	 */
+	protected boolean queueEmpty = false;
+
 	protected DocIDServer docIdServer;
 	
 	protected Counters counters;
@@ -58,7 +106,21 @@ public class Frontier extends Configurable {
 		this.counters = new Counters(env, config);
 		this.docIdServer = docIdServer;
 		try {
-			workQueues = new WorkQueues(env, "PendingURLsDB", config.resumableCrawling());
+			if (env == null) {
+				if (config.hostPartitionedFrontier()) {
+					workQueues = new InMemoryHostWorkQueues(config.politenessDelay());
+				} else {
+					workQueues = new InMemoryWorkQueues();
+				}
+			} else if (config.hostPartitionedFrontier()) {
+				workQueues = new HostWorkQueues(env, "HostPendingURLsDB", config.resumableCrawling(),
+						config.politenessDelay());
+			} else if (config.tieredFrontier()) {
+				workQueues = new TieredWorkQueues(env, "PendingURLsDB", config.tieredFrontierHeadSize());
+			} else {
+				workQueues = new WorkQueues(env, "PendingURLsDB", config.resumableCrawling());
+			}
+			queuedPages = Math.max(0, workQueues.getLength());
 			if (config.resumableCrawling()) {
 				scheduledPages = counters.getValue(ReservedCounterNames.SCHEDULED_PAGES);
 				inProcessPages = new InProcessPagesDB(env);
@@ -87,7 +149,8 @@ public class Frontier extends Configurable {
 
 	public void scheduleAll(List<WebURL> urls) {
 		int maxPagesToFetch = config().maxPagesToFetch();
-		synchronized (mutex) {
+		lock.lock();
+		try {
 			int newScheduledPage = 0;
 			for (WebURL url : urls) {
 				if (maxPagesToFetch > 0 && (scheduledPages + newScheduledPage) >= maxPagesToFetch) {
@@ -101,45 +164,91 @@ public class Frontier extends Configurable {
 				}
 			}
 			if (newScheduledPage > 0) {
+				queueEmpty = false;
+				queuedPages += newScheduledPage;
 				scheduledPages += newScheduledPage;
 				counters.increment(Counters.ReservedCounterNames.SCHEDULED_PAGES, newScheduledPage);	
-			}			
-			synchronized (waitingList) {
-				waitingList.notifyAll();
+				signalWaitingCrawlers(newScheduledPage);
 			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Wakes up as many waiting crawlers as there are new URLs. Must be called
+	 * holding the lock.
+	 */
+	protected void signalWaitingCrawlers(int newUrls) {
+		int count = Math.min(newUrls, waitingCrawlers);
+		for (int i = 0; i < count; i++) {
+			urlsAvailable.signal();
 		}
 	}
 
 	public void schedule(WebURL url) {
 		int maxPagesToFetch = config().maxPagesToFetch();
-		synchronized (mutex) {
-			try {
-				if (maxPagesToFetch < 0 || scheduledPages < maxPagesToFetch) {
-					workQueues.put(url);
-					scheduledPages++;
-					counters.increment(Counters.ReservedCounterNames.SCHEDULED_PAGES);
-				}
-			} catch (DatabaseException e) {
-				logger.error("Error while putting the url in the work queue.");
+		lock.lock();
+		try {
+			if (maxPagesToFetch < 0 || scheduledPages < maxPagesToFetch) {
+				workQueues.put(url);
+				queueEmpty = false;
+				queuedPages++;
+				scheduledPages++;
+				counters.increment(Counters.ReservedCounterNames.SCHEDULED_PAGES);
+				signalWaitingCrawlers(1);
 			}
+		} catch (DatabaseException e) {
+			logger.error("Error while putting the url in the work queue.");
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns how many URLs a crawler should ask for, given the average time
+	 * it took to process a page so far, or 0 if that is not known yet. This
+	 * is the crawler's share of the queue, but no more than it can process
+	 * in about {@link #TARGET_ASSIGNMENT_NANOS}, within the configured
+	 * bounds.
+	 */
+	public int getAssignmentSize(long nanosPerPage) {
+		long size;
+		lock.lock();
+		try {
+			size = (queuedPages + numberOfCrawlers - 1) / numberOfCrawlers;
+		} finally {
+			lock.unlock();
+		}
+		if (nanosPerPage > 0) {
+			size = Math.min(size, TARGET_ASSIGNMENT_NANOS / nanosPerPage);
 		}
+		size = Math.min(size, config().maxAssignmentSize());
+		return (int) Math.max(size, config().minAssignmentSize());
 	}
 
+	/**
+	 * Sets the number of crawler threads which share the queue, which the
+	 * assignment size depends on.
+	 */
+	public void setNumberOfCrawlers(int numberOfCrawlers) {
+		this.numberOfCrawlers = Math.max(1, numberOfCrawlers);
+	}
+
+	/**
+	 * Moves up to max URLs to the given list. If the queue is empty, this
+	 * waits until URLs are scheduled or the crawl finishes, so the list is
+	 * only left empty once the crawl is finished.
+	 */
 	public void getNextURLs(int max, List<WebURL> result) {
-		while (true) {
-			synchronized (mutex) {
-				if (isFinished) {
-					return;
-				}
+		lock.lock();
+		try {
+			while (!isFinished) {
 				try {
-					List<WebURL> curResults = workQueues.get(max);
-					workQueues.delete(curResults.size());
-					if (inProcessPages != null) {
-						for (WebURL curPage : curResults) {
-							inProcessPages.put(curPage);
-						}
-					}
-					result.addAll(curResults);
+					List<WebURL> urls = workQueues.take(max, inProcessPages);
+					assignedPages.addAndGet(urls.size());
+					queuedPages = Math.max(0, queuedPages - urls.size());
+					result.addAll(urls);
 				} catch (DatabaseException e) {
 					logger.error("Error while getting next urls: " + e.getMessage());
 					e.printStackTrace();
@@ -147,17 +256,21 @@ public class Frontier extends Configurable {
 				if (result.size() > 0) {
 					return;
 				}
-			}
-			try {
-				synchronized (waitingList) {
-					waitingList.wait();
+				queueEmpty = true;
+				if (isIdle()) {
+					idle.signalAll();
+				}
+				waitingCrawlers++;
+				try {
+					urlsAvailable.await();
+				} catch (InterruptedException ignored) {
+					// Do nothing
+				} finally {
+					waitingCrawlers--;
 				}
-			} catch (InterruptedException ignored) {
-				// Do nothing
-			}
-			if (isFinished) {
-				return;
 			}
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -168,6 +281,92 @@ public class Frontier extends Configurable {
 				logger.warn("Could not remove: " + webURL.getURL() + " from list of processed pages.");
 			}
 		}
+		if (assignedPages.decrementAndGet() == 0) {
+			lock.lock();
+			try {
+				if (isIdle()) {
+					idle.signalAll();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Puts back URLs which were handed out by {@link #getNextURLs} but will
+	 * not be processed, e.g. because their crawler died, so that another
+	 * crawler gets them and they are no longer counted as in flight.
+	 */
+	public void returnURLs(List<WebURL> urls) {
+		if (urls.isEmpty()) {
+			return;
+		}
+		lock.lock();
+		try {
+			int returned = 0;
+			for (WebURL url : urls) {
+				try {
+					workQueues.put(url);
+					returned++;
+				} catch (DatabaseException e) {
+					logger.error("Error while putting the url back in the work queue.");
+				}
+				if (inProcessPages != null) {
+					inProcessPages.removeURL(url);
+				}
+			}
+			if (returned > 0) {
+				queueEmpty = false;
+				queuedPages += returned;
+				signalWaitingCrawlers(returned);
+			}
+			assignedPages.addAndGet(-urls.size());
+			if (isIdle()) {
+				idle.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns true if the work queue is empty and every URL handed out by
+	 * {@link #getNextURLs} was processed. Must be called holding the lock.
+	 */
+	protected boolean isIdle() {
+		return queueEmpty && assignedPages.get() == 0;
+	}
+
+	/**
+	 * Waits until the work queue is empty and all handed out URLs are
+	 * processed, which is when the crawl is done unless new seeds are added.
+	 *
+	 * @return true if the frontier is idle, false if the timeout elapsed
+	 *         first.
+	 */
+	public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+		long remaining = unit.toNanos(timeout);
+		lock.lock();
+		try {
+			while (!isIdle()) {
+				if (remaining <= 0) {
+					return false;
+				}
+				remaining = idle.awaitNanos(remaining);
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of URLs which were handed out to crawlers and are
+	 * not processed yet.
+	 */
+	public long getNumberOfInFlightPages() {
+		return assignedPages.get();
 	}
 
 	public long getQueueLength() {
@@ -201,13 +400,18 @@ public class Frontier extends Configurable {
 		if (inProcessPages != null) {
 			inProcessPages.close();
 		}
-        env.close();
+		if (env != null) {
+			env.close();
+		}
 	}
 
 	public void finish() {
-		isFinished = true;
-		synchronized (waitingList) {
-			waitingList.notifyAll();
+		lock.lock();
+		try {
+			isFinished = true;
+			urlsAvailable.signalAll();
+		} finally {
+			lock.unlock();
 		}
 	}
 }
@@ -0,0 +1,362 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import com.sleepycat.je.*;
+import edu.uci.ics.crawler4j.fetcher.PolitenessScheduler;
+import edu.uci.ics.crawler4j.url.WebURL;
+import org.apache.log4j.Logger;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A work queue which partitions the pending URLs by host. URLs are handed out
+ * from whichever host's politeness window opens first, at most one URL per
+ * host in a single batch. Within a host, URLs keep the priority, depth and
+ * docid order of {@link WorkQueues}.
+ */
+public class HostWorkQueues extends WorkQueues {
+
+	private static final Logger logger = Logger.getLogger(HostWorkQueues.class.getName());
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * The pending URLs of a single host. Instances are ordered by the time at
+	 * which the host is ready to be fetched again.
+	 */
+	protected static class HostQueue implements Comparable<HostQueue> {
+
+		protected final String host;
+		protected final byte[] keyPrefix;
+		protected long readyTime;
+		protected long size;
+
+		protected HostQueue(String host) {
+			this.host = host;
+			this.keyPrefix = getKeyPrefix(host);
+		}
+
+		@Override
+		public int compareTo(HostQueue other) {
+			if (readyTime != other.readyTime) {
+				return readyTime < other.readyTime ? -1 : 1;
+			}
+			return host.compareTo(other.host);
+		}
+	}
+
+	protected final Map<String, HostQueue> hostQueues = new HashMap<>();
+
+	/*
+	 * Hosts ordered by the time their politeness window opens. A host must be
+	 * removed from this set before its ready time is changed.
+	 */
+	protected final TreeSet<HostQueue> readyHosts = new TreeSet<>();
+
+	protected final long politenessDelay;
+
+	public HostWorkQueues(Environment env, String dbName, boolean resumable, long politenessDelay)
+			throws DatabaseException {
+		super(env, dbName, resumable);
+		this.politenessDelay = politenessDelay;
+		if (resumable) {
+			loadHostQueues();
+		}
+	}
+
+	/*
+	 * Rebuilds the per-host counters from the keys of a previous crawl. Only
+	 * the keys are read.
+	 */
+	private void loadHostQueues() throws DatabaseException {
+		Cursor cursor = null;
+		DatabaseEntry key = new DatabaseEntry();
+		DatabaseEntry value = new DatabaseEntry();
+		value.setPartial(0, 0, true);
+		Transaction txn = env.beginTransaction(null, null);
+		try {
+			cursor = urlsDB.openCursor(txn, null);
+			OperationStatus result = cursor.getFirst(key, value, null);
+			while (result == OperationStatus.SUCCESS) {
+				byte[] keyData = key.getData();
+				int hostLength = keyData.length - KEY_LENGTH - 1;
+				if (hostLength >= 0) {
+					getHostQueue(new String(keyData, 0, hostLength, UTF8)).size++;
+				}
+				result = cursor.getNext(key, value, null);
+			}
+		} catch (DatabaseException e) {
+			if (txn != null) {
+				txn.abort();
+				txn = null;
+			}
+			throw e;
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+			if (txn != null) {
+				txn.commit();
+			}
+		}
+		if (!hostQueues.isEmpty()) {
+			logger.info("Loaded pending URLs of " + hostQueues.size() + " hosts from previous crawl.");
+		}
+	}
+
+	private HostQueue getHostQueue(String host) {
+		HostQueue hostQueue = hostQueues.get(host);
+		if (hostQueue == null) {
+			hostQueue = new HostQueue(host);
+			hostQueues.put(host, hostQueue);
+			readyHosts.add(hostQueue);
+		}
+		return hostQueue;
+	}
+
+	/**
+	 * Returns the next URL of each host in the order their politeness windows
+	 * open, without removing them.
+	 */
+	@Override
+	public List<WebURL> get(int max) throws DatabaseException {
+		synchronized (mutex) {
+			List<WebURL> results = new ArrayList<>(max);
+			Cursor cursor = null;
+			Transaction txn;
+			if (resumable) {
+				txn = env.beginTransaction(null, null);
+			} else {
+				txn = null;
+			}
+			try {
+				cursor = urlsDB.openCursor(txn, null);
+				for (HostQueue hostQueue : readyHosts) {
+					if (results.size() >= max) {
+						break;
+					}
+					DatabaseEntry value = new DatabaseEntry();
+					if (getHead(cursor, hostQueue, value)) {
+						results.add(webURLBinding.entryToObject(value));
+					}
+				}
+			} catch (DatabaseException e) {
+				if (txn != null) {
+					txn.abort();
+					txn = null;
+				}
+				throw e;
+			} finally {
+				if (cursor != null) {
+					cursor.close();
+				}
+				if (txn != null) {
+					txn.commit();
+				}
+			}
+			return results;
+		}
+	}
+
+	/**
+	 * Removes the next URL of count hosts in the order their politeness
+	 * windows open, keeping the per-host counters in sync.
+	 */
+	@Override
+	public void delete(int count) throws DatabaseException {
+		take(count, null, false);
+	}
+
+	/**
+	 * Removes and returns the next URL of each host in the order their
+	 * politeness windows open, and pushes back the windows of these hosts.
+	 * Hosts which are not ready yet are only considered if no host is ready at
+	 * all, in which case the URL of the host that becomes ready first is
+	 * returned.
+	 */
+	@Override
+	public List<WebURL> take(int max, InProcessPagesDB inProcessPages) throws DatabaseException {
+		return take(max, inProcessPages, true);
+	}
+
+	private List<WebURL> take(int max, InProcessPagesDB inProcessPages, boolean onlyReady) throws DatabaseException {
+		synchronized (mutex) {
+			List<WebURL> results = new ArrayList<>(max);
+			long now = System.currentTimeMillis();
+			// The hosts are only updated once the database is, so that they
+			// stay in step with it if the transaction is aborted
+			List<HostQueue> taken = new ArrayList<>(max);
+			List<HostQueue> emptied = new ArrayList<>();
+
+			Cursor cursor = null;
+			Transaction txn;
+			if (resumable) {
+				txn = env.beginTransaction(null, null);
+			} else {
+				txn = null;
+			}
+			try {
+				cursor = urlsDB.openCursor(txn, null);
+				for (HostQueue hostQueue : readyHosts) {
+					if (results.size() >= max || (onlyReady && !results.isEmpty() && hostQueue.readyTime > now)) {
+						break;
+					}
+					DatabaseEntry value = new DatabaseEntry();
+					if (getHead(cursor, hostQueue, value)) {
+						WebURL url = webURLBinding.entryToObject(value);
+						if (inProcessPages != null) {
+							inProcessPages.put(url, txn);
+						}
+						cursor.delete();
+						results.add(url);
+						taken.add(hostQueue);
+					} else {
+						emptied.add(hostQueue);
+					}
+				}
+			} catch (DatabaseException e) {
+				if (txn != null) {
+					txn.abort();
+					txn = null;
+					// Nothing was removed
+					taken.clear();
+					emptied.clear();
+				}
+				throw e;
+			} finally {
+				if (cursor != null) {
+					cursor.close();
+				}
+				if (txn != null) {
+					txn.commit();
+				}
+				updateHostQueues(taken, emptied, now);
+			}
+			return results;
+		}
+	}
+
+	/*
+	 * Pushes back the windows of the hosts whose next URL was taken, and drops
+	 * the hosts which have no URLs left.
+	 */
+	private void updateHostQueues(List<HostQueue> taken, List<HostQueue> emptied, long now) {
+		for (HostQueue hostQueue : emptied) {
+			removeHostQueue(hostQueue);
+		}
+		for (HostQueue hostQueue : taken) {
+			readyHosts.remove(hostQueue);
+			hostQueue.size--;
+			if (hostQueue.size > 0) {
+				hostQueue.readyTime = Math.max(now, hostQueue.readyTime) + politenessDelay;
+				readyHosts.add(hostQueue);
+			} else {
+				hostQueues.remove(hostQueue.host);
+			}
+		}
+	}
+
+	/*
+	 * Positions the cursor on the first URL of the given host.
+	 */
+	private boolean getHead(Cursor cursor, HostQueue hostQueue, DatabaseEntry value) throws DatabaseException {
+		byte[] prefix = hostQueue.keyPrefix;
+		DatabaseEntry key = new DatabaseEntry(prefix);
+		if (cursor.getSearchKeyRange(key, value, null) != OperationStatus.SUCCESS) {
+			return false;
+		}
+		byte[] keyData = key.getData();
+		if (keyData.length != prefix.length + KEY_LENGTH) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (keyData[i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void removeHostQueue(HostQueue hostQueue) {
+		readyHosts.remove(hostQueue);
+		hostQueues.remove(hostQueue.host);
+	}
+
+	/*
+	 * Keys are the host name followed by a zero byte and the key used by
+	 * WorkQueues. All URLs of a host are therefore stored next to each other in
+	 * priority, depth and docid order.
+	 */
+	@Override
+	protected DatabaseEntry getDatabaseEntryKey(WebURL url) {
+		return getDatabaseEntryKey(getKeyPrefix(PolitenessScheduler.getHostKey(url)), url);
+	}
+
+	private static DatabaseEntry getDatabaseEntryKey(byte[] prefix, WebURL url) {
+		byte[] keyData = new byte[prefix.length + KEY_LENGTH];
+		System.arraycopy(prefix, 0, keyData, 0, prefix.length);
+		putKeyInByteArray(url, keyData, prefix.length);
+		return new DatabaseEntry(keyData);
+	}
+
+	private static byte[] getKeyPrefix(String host) {
+		byte[] hostBytes = host.getBytes(UTF8);
+		byte[] prefix = new byte[hostBytes.length + 1];
+		System.arraycopy(hostBytes, 0, prefix, 0, hostBytes.length);
+		return prefix;
+	}
+
+	@Override
+	public void put(WebURL url) throws DatabaseException {
+		synchronized (mutex) {
+			HostQueue hostQueue = getHostQueue(PolitenessScheduler.getHostKey(url));
+			DatabaseEntry value = new DatabaseEntry();
+			webURLBinding.objectToEntry(url, value);
+			Transaction txn;
+			if (resumable) {
+				txn = env.beginTransaction(null, null);
+			} else {
+				txn = null;
+			}
+			OperationStatus result = urlsDB.putNoOverwrite(txn, getDatabaseEntryKey(hostQueue.keyPrefix, url), value);
+			if (txn != null) {
+				txn.commit();
+			}
+			if (result == OperationStatus.SUCCESS) {
+				hostQueue.size++;
+			} else if (hostQueue.size == 0) {
+				removeHostQueue(hostQueue);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of hosts which have pending URLs.
+	 */
+	public int getNumberOfHosts() {
+		synchronized (mutex) {
+			return hostQueues.size();
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import edu.uci.ics.crawler4j.fetcher.PolitenessScheduler;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The in-memory counterpart of {@link HostWorkQueues}, used for crawls which
+ * are not resumable.
+ */
+public class InMemoryHostWorkQueues extends WorkQueues {
+
+	protected static class HostQueue implements Comparable<HostQueue> {
+
+		protected final String host;
+		protected final TreeMap<Long, WebURL> urls = new TreeMap<>();
+		protected long readyTime;
+
+		protected HostQueue(String host) {
+			this.host = host;
+		}
+
+		@Override
+		public int compareTo(HostQueue other) {
+			if (readyTime != other.readyTime) {
+				return readyTime < other.readyTime ? -1 : 1;
+			}
+			return host.compareTo(other.host);
+		}
+	}
+
+	protected final Map<String, HostQueue> hostQueues = new HashMap<>();
+
+	/*
+	 * Hosts ordered by the time their politeness window opens. A host must be
+	 * removed from this set before its ready time is changed.
+	 */
+	protected final TreeSet<HostQueue> readyHosts = new TreeSet<>();
+
+	protected final long politenessDelay;
+
+	protected long length;
+
+	public InMemoryHostWorkQueues(long politenessDelay) {
+		super(false);
+		this.politenessDelay = politenessDelay;
+	}
+
+	/**
+	 * Returns the next URL of each host in the order their politeness windows
+	 * open, without removing them.
+	 */
+	@Override
+	public List<WebURL> get(int max) {
+		synchronized (mutex) {
+			List<WebURL> results = new ArrayList<>(max);
+			for (HostQueue hostQueue : readyHosts) {
+				if (results.size() >= max) {
+					break;
+				}
+				results.add(hostQueue.urls.firstEntry().getValue());
+			}
+			return results;
+		}
+	}
+
+	@Override
+	public void delete(int count) {
+		synchronized (mutex) {
+			for (int i = 0; i < count && !readyHosts.isEmpty(); i++) {
+				poll(readyHosts.pollFirst(), System.currentTimeMillis());
+			}
+		}
+	}
+
+	/**
+	 * Removes and returns the next URL of each host in the order their
+	 * politeness windows open, as {@link HostWorkQueues#take} does.
+	 */
+	@Override
+	public List<WebURL> take(int max, InProcessPagesDB inProcessPages) {
+		synchronized (mutex) {
+			List<WebURL> results = new ArrayList<>(max);
+			long now = System.currentTimeMillis();
+			while (results.size() < max && !readyHosts.isEmpty()) {
+				if (!results.isEmpty() && readyHosts.first().readyTime > now) {
+					break;
+				}
+				results.add(poll(readyHosts.pollFirst(), now));
+			}
+			return results;
+		}
+	}
+
+	private WebURL poll(HostQueue hostQueue, long now) {
+		WebURL url = hostQueue.urls.pollFirstEntry().getValue();
+		length--;
+		if (hostQueue.urls.isEmpty()) {
+			hostQueues.remove(hostQueue.host);
+		} else {
+			hostQueue.readyTime = Math.max(now, hostQueue.readyTime) + politenessDelay;
+			readyHosts.add(hostQueue);
+		}
+		return url;
+	}
+
+	@Override
+	public void put(WebURL url) {
+		synchronized (mutex) {
+			String host = PolitenessScheduler.getHostKey(url);
+			HostQueue hostQueue = hostQueues.get(host);
+			if (hostQueue == null) {
+				hostQueue = new HostQueue(host);
+				hostQueues.put(host, hostQueue);
+				readyHosts.add(hostQueue);
+			}
+			if (hostQueue.urls.put(InMemoryWorkQueues.getKey(url), url) == null) {
+				length++;
+			}
+		}
+	}
+
+	@Override
+	public long getLength() {
+		synchronized (mutex) {
+			return length;
+		}
+	}
+
+	public int getNumberOfHosts() {
+		synchronized (mutex) {
+			return hostQueues.size();
+		}
+	}
+
+	@Override
+	public void sync() {
+		// Nothing to sync
+	}
+
+	@Override
+	public void close() {
+		synchronized (mutex) {
+			hostQueues.clear();
+			readyHosts.clear();
+			length = 0;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import edu.uci.ics.crawler4j.url.WebURL;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A work queue which only keeps the URLs in memory. It is used for crawls
+ * which are not resumable and hands out URLs in the same order as
+ * {@link WorkQueues}.
+ */
+public class InMemoryWorkQueues extends WorkQueues {
+
+	protected final ConcurrentSkipListMap<Long, WebURL> urls = new ConcurrentSkipListMap<>();
+
+	public InMemoryWorkQueues() {
+		super(false);
+	}
+
+	/**
+	 * Returns the key of {@link WorkQueues#getDatabaseEntryKey(WebURL)} packed
+	 * into a long. Keys compare the same way as the unsigned bytes of the
+	 * database keys.
+	 */
+	protected static long getKey(WebURL url) {
+		long priority = url.getPriority() & 0xFF;
+		long depth = (url.getDepth() > Byte.MAX_VALUE ? Byte.MAX_VALUE : (byte) url.getDepth()) & 0xFF;
+		return (priority << 40) | (depth << 32) | (url.getDocid() & 0xFFFFFFFFL);
+	}
+
+	@Override
+	public List<WebURL> get(int max) {
+		List<WebURL> results = new ArrayList<>(max);
+		Iterator<WebURL> iterator = urls.values().iterator();
+		while (results.size() < max && iterator.hasNext()) {
+			results.add(iterator.next());
+		}
+		return results;
+	}
+
+	@Override
+	public void delete(int count) {
+		for (int i = 0; i < count && urls.pollFirstEntry() != null; i++) {
+			// Nothing else to do
+		}
+	}
+
+	@Override
+	public List<WebURL> take(int max, InProcessPagesDB inProcessPages) {
+		List<WebURL> results = new ArrayList<>(max);
+		while (results.size() < max) {
+			Map.Entry<Long, WebURL> entry = urls.pollFirstEntry();
+			if (entry == null) {
+				break;
+			}
+			results.add(entry.getValue());
+		}
+		return results;
+	}
+
+	@Override
+	public void put(WebURL url) {
+		urls.put(getKey(url), url);
+	}
+
+	@Override
+	public long getLength() {
+		return urls.size();
+	}
+
+	@Override
+	public void sync() {
+		// Nothing to sync
+	}
+
+	@Override
+	public void close() {
+		urls.clear();
+	}
+}
@@ -0,0 +1,390 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import com.sapienapps.scrawler.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.util.Util;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A DocIDServer which keeps an off-heap hash table from the 64-bit fingerprint
+ * of each URL to its docid instead of storing the URLs in Berkeley DB.
+ * <p/>
+ * The table is split into segments, each with its own read/write lock, so
+ * lookups of different URLs rarely contend. Segments use open addressing with
+ * linear probing and are memory-mapped from files in the given folder, which
+ * allows a resumable crawl to reload them. If no folder is given the segments
+ * are kept in direct buffers and nothing is persisted.
+ * <p/>
+ * Since only fingerprints are stored, two different URLs may in theory share
+ * a docid. For 100 million URLs the probability of any collision is in the
+ * order of 10^-4.
+ */
+public class OffHeapDocIDServer extends DocIDServer {
+
+	private static final Logger logger = Logger.getLogger(OffHeapDocIDServer.class.getName());
+
+	public static final int DEFAULT_INITIAL_CAPACITY = 1 << 19;
+
+	private static final int SEGMENT_BITS = 6;
+	private static final int NUM_SEGMENTS = 1 << SEGMENT_BITS;
+
+	private static final int MIN_SEGMENT_CAPACITY = 16;
+	// Keeps a segment below the 2GB limit of a single buffer
+	private static final int MAX_SEGMENT_CAPACITY = 1 << 27;
+	private static final float LOAD_FACTOR = 0.75f;
+
+	/*
+	 * Each segment starts with a header holding a magic number, its capacity,
+	 * the number of used slots and the largest docid stored in it. Each slot
+	 * holds a fingerprint (0 marks an empty slot) and a docid.
+	 */
+	private static final int MAGIC = 0x44494458;
+	private static final int HEADER_SIZE = 16;
+	private static final int SLOT_SIZE = 12;
+
+	protected final File folder;
+
+	protected final Segment[] segments = new Segment[NUM_SEGMENTS];
+
+	protected final AtomicInteger lastDocId = new AtomicInteger();
+
+	public OffHeapDocIDServer(CrawlConfig config, File folder) throws IOException {
+		this(config, folder, DEFAULT_INITIAL_CAPACITY);
+	}
+
+	/**
+	 * @param folder the folder the index is persisted in, or null for an index
+	 *               which is only kept in memory.
+	 * @param initialCapacity the number of URLs the index is initially sized
+	 *                        for. The index grows as needed.
+	 */
+	public OffHeapDocIDServer(CrawlConfig config, File folder, int initialCapacity) throws IOException {
+		super(config);
+		this.folder = folder;
+		if (folder != null && !folder.exists() && !folder.mkdirs()) {
+			throw new IOException("Couldn't create this folder: " + folder.getAbsolutePath());
+		}
+
+		int segmentCapacity = MIN_SEGMENT_CAPACITY;
+		while (segmentCapacity < MAX_SEGMENT_CAPACITY
+				&& segmentCapacity * LOAD_FACTOR < (double) initialCapacity / NUM_SEGMENTS) {
+			segmentCapacity <<= 1;
+		}
+
+		int maxDocId = 0;
+		for (int i = 0; i < NUM_SEGMENTS; i++) {
+			File file = (folder == null) ? null : new File(folder, "segment-" + i + ".idx");
+			if (file != null && file.exists() && !config.resumableCrawling()) {
+				if (!file.delete()) {
+					throw new IOException("Couldn't delete: " + file.getAbsolutePath());
+				}
+			}
+			segments[i] = new Segment(file, segmentCapacity);
+			maxDocId = Math.max(maxDocId, segments[i].maxDocId);
+		}
+		lastDocId.set(maxDocId);
+
+		int docCount = getDocCount();
+		if (docCount > 0) {
+			logger.info("Loaded " + docCount + " URLs that had been detected in previous crawl.");
+		}
+	}
+
+	private Segment getSegment(long fingerprint) {
+		return segments[(int) (fingerprint >>> (64 - SEGMENT_BITS))];
+	}
+
+	private static long getFingerprint(String url) {
+		long fingerprint = Util.fingerprint(url);
+		// 0 marks an empty slot
+		return fingerprint == 0 ? 1 : fingerprint;
+	}
+
+	@Override
+	public int getDocId(String url) {
+		long fingerprint = getFingerprint(url);
+		Segment segment = getSegment(fingerprint);
+		segment.lock.readLock().lock();
+		try {
+			return segment.get(fingerprint);
+		} finally {
+			segment.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int getNewDocID(String url) {
+		long fingerprint = getFingerprint(url);
+		Segment segment = getSegment(fingerprint);
+		segment.lock.readLock().lock();
+		try {
+			int docId = segment.get(fingerprint);
+			if (docId > 0) {
+				return docId;
+			}
+		} finally {
+			segment.lock.readLock().unlock();
+		}
+
+		segment.lock.writeLock().lock();
+		try {
+			// Make sure that we have not already assigned a docid for this URL
+			int docId = segment.get(fingerprint);
+			if (docId > 0) {
+				return docId;
+			}
+			docId = lastDocId.incrementAndGet();
+			segment.put(fingerprint, docId);
+			return docId;
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			segment.lock.writeLock().unlock();
+		}
+		return -1;
+	}
+
+	/**
+	 * Lookups only take the lock of the segment they fall in, so they are done
+	 * one by one.
+	 */
+	@Override
+	public int[] getDocIds(List<String> urls) {
+		int[] docIds = new int[urls.size()];
+		for (int i = 0; i < docIds.length; i++) {
+			docIds[i] = getDocId(urls.get(i));
+		}
+		return docIds;
+	}
+
+	@Override
+	public int[] getNewDocIDs(List<String> urls) {
+		int[] docIds = new int[urls.size()];
+		for (int i = 0; i < docIds.length; i++) {
+			docIds[i] = getNewDocID(urls.get(i));
+		}
+		return docIds;
+	}
+
+	@Override
+	public void addUrlAndDocId(String url, int docId) throws Exception {
+		long fingerprint = getFingerprint(url);
+		Segment segment = getSegment(fingerprint);
+		segment.lock.writeLock().lock();
+		try {
+			// Make sure that we have not already assigned a docid for this URL
+			int prevDocid = segment.get(fingerprint);
+			if (prevDocid > 0) {
+				if (prevDocid == docId) {
+					return;
+				}
+				throw new Exception("Doc id: " + prevDocid + " is already assigned to URL: " + url);
+			}
+
+			while (true) {
+				int last = lastDocId.get();
+				if (docId <= last) {
+					throw new Exception("Requested doc id: " + docId + " is not larger than: " + last);
+				}
+				if (lastDocId.compareAndSet(last, docId)) {
+					break;
+				}
+			}
+			segment.put(fingerprint, docId);
+		} finally {
+			segment.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public int getDocCount() {
+		int count = 0;
+		for (Segment segment : segments) {
+			segment.lock.readLock().lock();
+			try {
+				count += segment.size;
+			} finally {
+				segment.lock.readLock().unlock();
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public void sync() {
+		if (folder == null) {
+			return;
+		}
+		for (Segment segment : segments) {
+			segment.lock.readLock().lock();
+			try {
+				((MappedByteBuffer) segment.buffer).force();
+			} finally {
+				segment.lock.readLock().unlock();
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		sync();
+	}
+
+	/**
+	 * One open addressing hash table. All accesses have to hold the lock of
+	 * the segment.
+	 */
+	protected final class Segment {
+
+		protected final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+		private final File file;
+		private ByteBuffer buffer;
+		private int capacity;
+		private int size;
+		private int maxDocId;
+
+		Segment(File file, int capacity) throws IOException {
+			this.file = file;
+			if (file != null && file.exists()) {
+				buffer = map(file, 0);
+				if (buffer.getInt(0) != MAGIC) {
+					throw new IOException("Invalid docid index segment: " + file.getAbsolutePath());
+				}
+				this.capacity = buffer.getInt(4);
+				this.size = buffer.getInt(8);
+				this.maxDocId = buffer.getInt(12);
+			} else {
+				this.capacity = capacity;
+				buffer = allocate(file, capacity);
+				writeHeader();
+			}
+		}
+
+		int get(long fingerprint) {
+			int mask = capacity - 1;
+			int slot = (int) fingerprint & mask;
+			while (true) {
+				int offset = HEADER_SIZE + slot * SLOT_SIZE;
+				long current = buffer.getLong(offset);
+				if (current == 0) {
+					return -1;
+				}
+				if (current == fingerprint) {
+					return buffer.getInt(offset + 8);
+				}
+				slot = (slot + 1) & mask;
+			}
+		}
+
+		void put(long fingerprint, int docId) throws IOException {
+			if (size + 1 > capacity * LOAD_FACTOR) {
+				resize();
+			}
+			insert(buffer, capacity, fingerprint, docId);
+			size++;
+			maxDocId = Math.max(maxDocId, docId);
+			writeHeader();
+		}
+
+		private void resize() throws IOException {
+			if (capacity >= MAX_SEGMENT_CAPACITY) {
+				if (size + 1 < capacity) {
+					// Keep going with a higher load factor
+					return;
+				}
+				throw new IOException("Docid index segment is full");
+			}
+			int newCapacity = capacity << 1;
+			File tmpFile = (file == null) ? null : new File(file.getPath() + ".tmp");
+			ByteBuffer newBuffer = allocate(tmpFile, newCapacity);
+			for (int slot = 0; slot < capacity; slot++) {
+				int offset = HEADER_SIZE + slot * SLOT_SIZE;
+				long fingerprint = buffer.getLong(offset);
+				if (fingerprint != 0) {
+					insert(newBuffer, newCapacity, fingerprint, buffer.getInt(offset + 8));
+				}
+			}
+			if (file != null) {
+				((MappedByteBuffer) newBuffer).force();
+				if (!tmpFile.renameTo(file)) {
+					throw new IOException("Couldn't replace: " + file.getAbsolutePath());
+				}
+			}
+			buffer = newBuffer;
+			capacity = newCapacity;
+		}
+
+		private void writeHeader() {
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, capacity);
+			buffer.putInt(8, size);
+			buffer.putInt(12, maxDocId);
+		}
+	}
+
+	private static void insert(ByteBuffer buffer, int capacity, long fingerprint, int docId) {
+		int mask = capacity - 1;
+		int slot = (int) fingerprint & mask;
+		while (buffer.getLong(HEADER_SIZE + slot * SLOT_SIZE) != 0) {
+			slot = (slot + 1) & mask;
+		}
+		int offset = HEADER_SIZE + slot * SLOT_SIZE;
+		buffer.putLong(offset, fingerprint);
+		buffer.putInt(offset + 8, docId);
+	}
+
+	private static ByteBuffer allocate(File file, int capacity) throws IOException {
+		int length = HEADER_SIZE + capacity * SLOT_SIZE;
+		if (file == null) {
+			return ByteBuffer.allocateDirect(length);
+		}
+		if (file.exists() && !file.delete()) {
+			throw new IOException("Couldn't delete: " + file.getAbsolutePath());
+		}
+		return map(file, length);
+	}
+
+	/*
+	 * Maps the given file. A length of 0 maps the file with its current size.
+	 * The mapping stays valid after the channel is closed.
+	 */
+	private static MappedByteBuffer map(File file, long length) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			if (length > 0) {
+				raf.setLength(length);
+			}
+			FileChannel channel = raf.getChannel();
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+		} finally {
+			raf.close();
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import com.sleepycat.je.*;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A work queue which keeps the head of the queue in memory and spills the
+ * rest into the pending URLs database. All keys in memory are smaller than
+ * the keys in the database, so most calls never touch the disk while the
+ * queue can grow as large as the disk allows. It is only used for crawls
+ * which are not resumable, as the head of the queue is lost on exit.
+ */
+public class TieredWorkQueues extends WorkQueues {
+
+	protected final TreeMap<Long, WebURL> head = new TreeMap<>();
+
+	protected final int capacity;
+
+	/*
+	 * URLs with keys smaller than this are kept in memory, the rest in the
+	 * database.
+	 */
+	protected long boundary = Long.MAX_VALUE;
+
+	protected long spilledLength;
+
+	public TieredWorkQueues(Environment env, String dbName, int capacity) throws DatabaseException {
+		super(env, dbName, false);
+		this.capacity = capacity;
+	}
+
+	@Override
+	public List<WebURL> get(int max) throws DatabaseException {
+		synchronized (mutex) {
+			while (head.size() < max && spilledLength > 0) {
+				refill();
+			}
+			List<WebURL> results = new ArrayList<>(max);
+			Iterator<WebURL> iterator = head.values().iterator();
+			while (results.size() < max && iterator.hasNext()) {
+				results.add(iterator.next());
+			}
+			return results;
+		}
+	}
+
+	@Override
+	public void delete(int count) throws DatabaseException {
+		synchronized (mutex) {
+			for (int i = 0; i < count; i++) {
+				if (head.isEmpty()) {
+					refill();
+				}
+				if (head.pollFirstEntry() == null) {
+					return;
+				}
+			}
+		}
+	}
+
+	@Override
+	public List<WebURL> take(int max, InProcessPagesDB inProcessPages) throws DatabaseException {
+		synchronized (mutex) {
+			List<WebURL> results = new ArrayList<>(max);
+			while (results.size() < max) {
+				if (head.isEmpty()) {
+					refill();
+				}
+				Map.Entry<Long, WebURL> entry = head.pollFirstEntry();
+				if (entry == null) {
+					break;
+				}
+				results.add(entry.getValue());
+			}
+			return results;
+		}
+	}
+
+	@Override
+	public void put(WebURL url) throws DatabaseException {
+		synchronized (mutex) {
+			long key = InMemoryWorkQueues.getKey(url);
+			if (key >= boundary) {
+				putInDatabase(url);
+				return;
+			}
+			head.put(key, url);
+			if (head.size() > capacity) {
+				spill();
+			}
+		}
+	}
+
+	/**
+	 * Moves the larger half of the head into the database.
+	 */
+	private void spill() throws DatabaseException {
+		int count = head.size() - capacity / 2;
+		for (int i = 0; i < count; i++) {
+			Map.Entry<Long, WebURL> entry = head.pollLastEntry();
+			putInDatabase(entry.getValue());
+			boundary = entry.getKey();
+		}
+	}
+
+	private void putInDatabase(WebURL url) throws DatabaseException {
+		DatabaseEntry value = new DatabaseEntry();
+		webURLBinding.objectToEntry(url, value);
+		if (urlsDB.putNoOverwrite(null, getDatabaseEntryKey(url), value) == OperationStatus.SUCCESS) {
+			spilledLength++;
+		}
+	}
+
+	/**
+	 * Moves up to half of the capacity of URLs from the head of the database
+	 * into memory.
+	 */
+	private void refill() throws DatabaseException {
+		if (spilledLength == 0) {
+			return;
+		}
+		int max = Math.max(1, capacity / 2);
+		int count = 0;
+		Cursor cursor = urlsDB.openCursor(null, null);
+		try {
+			DatabaseEntry key = new DatabaseEntry();
+			DatabaseEntry value = new DatabaseEntry();
+			OperationStatus result = cursor.getFirst(key, value, null);
+			while (count < max && result == OperationStatus.SUCCESS) {
+				if (value.getData().length > 0) {
+					head.put(getKey(key.getData()), webURLBinding.entryToObject(value));
+					count++;
+				}
+				cursor.delete();
+				spilledLength--;
+				result = cursor.getNext(key, value, null);
+			}
+			if (result == OperationStatus.SUCCESS) {
+				boundary = getKey(key.getData());
+			} else {
+				boundary = Long.MAX_VALUE;
+				spilledLength = 0;
+			}
+		} finally {
+			cursor.close();
+		}
+	}
+
+	private static long getKey(byte[] keyData) {
+		long key = 0;
+		for (int i = 0; i < KEY_LENGTH; i++) {
+			key = (key << 8) | (keyData[i] & 0xFF);
+		}
+		return key;
+	}
+
+	@Override
+	public long getLength() {
+		synchronized (mutex) {
+			return head.size() + spilledLength;
+		}
+	}
+
+	@Override
+	public void close() {
+		synchronized (mutex) {
+			head.clear();
+		}
+		super.close();
+	}
+}
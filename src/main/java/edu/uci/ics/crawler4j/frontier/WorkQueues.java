@@ -29,6 +29,8 @@ import java.util.List;
  */
 public class WorkQueues {
 
+	protected static final int KEY_LENGTH = 6;
+
 	protected Database urlsDB = null;
 	protected Environment env;
 
@@ -38,6 +40,15 @@ public class WorkQueues {
 
 	protected final Object mutex = new Object();
 
+	/**
+	 * Constructor for implementations which do not keep the URLs in Berkeley
+	 * DB. These have to override all the methods which access the database.
+	 */
+	protected WorkQueues(boolean resumable) {
+		this.resumable = resumable;
+		webURLBinding = new WebURLTupleBinding();
+	}
+
 	public WorkQueues(Environment env, String dbName, boolean resumable) throws DatabaseException {
 		this.env = env;
 		this.resumable = resumable;
@@ -93,6 +104,58 @@ public class WorkQueues {
 		}
 	}
 
+	/**
+	 * Removes up to max URLs from the head of the queue and returns them. If
+	 * inProcessPages is given, the URLs are moved there within the same
+	 * transaction. This takes a single pass of one cursor.
+	 */
+	public List<WebURL> take(int max, InProcessPagesDB inProcessPages) throws DatabaseException {
+		synchronized (mutex) {
+			List<WebURL> results = new ArrayList<>(max);
+
+			Cursor cursor = null;
+			OperationStatus result;
+			DatabaseEntry key = new DatabaseEntry();
+			DatabaseEntry value = new DatabaseEntry();
+			Transaction txn;
+			if (resumable) {
+				txn = env.beginTransaction(null, null);
+			} else {
+				txn = null;
+			}
+			try {
+				cursor = urlsDB.openCursor(txn, null);
+				result = cursor.getFirst(key, value, null);
+
+				while (results.size() < max && result == OperationStatus.SUCCESS) {
+					if (value.getData().length > 0) {
+						WebURL url = webURLBinding.entryToObject(value);
+						if (inProcessPages != null) {
+							inProcessPages.put(url, txn);
+						}
+						results.add(url);
+					}
+					cursor.delete();
+					result = cursor.getNext(key, value, null);
+				}
+			} catch (DatabaseException e) {
+				if (txn != null) {
+					txn.abort();
+					txn = null;
+				}
+				throw e;
+			} finally {
+				if (cursor != null) {
+					cursor.close();
+				}
+				if (txn != null) {
+					txn.commit();
+				}
+			}
+			return results;
+		}
+	}
+
 	public void delete(int count) throws DatabaseException {
 		synchronized (mutex) {
 			int matches = 0;
@@ -145,23 +208,25 @@ public class WorkQueues {
 	 * be crawled earlier.
 	 */
 	protected DatabaseEntry getDatabaseEntryKey(WebURL url) {
-		byte[] keyData = new byte[6];
-		keyData[0] = url.getPriority();
-		keyData[1] = (url.getDepth() > Byte.MAX_VALUE ? Byte.MAX_VALUE : (byte) url.getDepth());
-		Util.putIntInByteArray(url.getDocid(), keyData, 2);
+		byte[] keyData = new byte[KEY_LENGTH];
+		putKeyInByteArray(url, keyData, 0);
 		return new DatabaseEntry(keyData);
 	}
 
+	protected static void putKeyInByteArray(WebURL url, byte[] keyData, int offset) {
+		keyData[offset] = url.getPriority();
+		keyData[offset + 1] = (url.getDepth() > Byte.MAX_VALUE ? Byte.MAX_VALUE : (byte) url.getDepth());
+		Util.putIntInByteArray(url.getDocid(), keyData, offset + 2);
+	}
+
 	public void put(WebURL url) throws DatabaseException {
-		DatabaseEntry value = new DatabaseEntry();
-		webURLBinding.objectToEntry(url, value);
 		Transaction txn;
 		if (resumable) {
 			txn = env.beginTransaction(null, null);
 		} else {
 			txn = null;
 		}
-		urlsDB.put(txn, getDatabaseEntryKey(url), value);
+		put(url, txn);
 		if (resumable) {
 			if (txn != null) {
 				txn.commit();
@@ -169,6 +234,16 @@ public class WorkQueues {
 		}
 	}
 
+	/**
+	 * Stores the given URL as part of the given transaction, which may be
+	 * null.
+	 */
+	protected void put(WebURL url, Transaction txn) throws DatabaseException {
+		DatabaseEntry value = new DatabaseEntry();
+		webURLBinding.objectToEntry(url, value);
+		urlsDB.put(txn, getDatabaseEntryKey(url), value);
+	}
+
 	public long getLength() {
 		try {
 			return urlsDB.count();
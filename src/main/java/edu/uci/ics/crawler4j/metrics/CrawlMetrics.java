@@ -0,0 +1,275 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.uci.ics.crawler4j.metrics;
+
+import edu.uci.ics.crawler4j.frontier.Frontier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The metrics of a crawling session: latency histograms of the stages of
+ * processing a page, counters of the fetch status codes, fetched bytes and
+ * docid lookups, and the utilization of each crawler thread. All updates
+ * are lock-free, so that they can be made on the hot path of every crawler
+ * thread. Values are read while the crawl is running, and reads which are
+ * concurrent with updates may miss some of them.
+ */
+public class CrawlMetrics {
+
+	public enum Stage {
+		/**
+		 * Resolving the host name of a URL.
+		 */
+		DNS,
+		/**
+		 * Opening a connection, after the host name is resolved.
+		 */
+		CONNECT,
+		/**
+		 * From sending the request until the response headers arrive,
+		 * including the time to connect.
+		 */
+		FIRST_BYTE,
+		/**
+		 * Reading the content of the response.
+		 */
+		DOWNLOAD,
+		PARSE,
+		/**
+		 * Assigning docids to the outgoing links of a page and scheduling
+		 * them.
+		 */
+		LINKS,
+		VISIT
+	}
+
+	/**
+	 * Status codes below this are counted individually. Others, such as the
+	 * custom fetch statuses, are counted together.
+	 */
+	private static final int MAX_STATUS_CODE = 2000;
+
+	private final LatencyHistogram[] latencies;
+
+	private final AtomicLongArray statusCodes = new AtomicLongArray(MAX_STATUS_CODE);
+	private final StripedCounter otherStatusCodes = new StripedCounter();
+
+	private final StripedCounter bytesFetched = new StripedCounter();
+
+	private final StripedCounter docIdLookups = new StripedCounter();
+	private final StripedCounter docIdHits = new StripedCounter();
+
+	private final ConcurrentMap<String, ThreadMetrics> threads = new ConcurrentHashMap<>();
+
+	private volatile Frontier frontier;
+
+	private final long startTime = System.nanoTime();
+
+	public CrawlMetrics() {
+		latencies = new LatencyHistogram[Stage.values().length];
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * The time which a single thread spent processing pages.
+	 */
+	public static class ThreadMetrics {
+
+		private final String name;
+		private final long startTime = System.nanoTime();
+		private final AtomicLong busyTime = new AtomicLong();
+
+		ThreadMetrics(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Adds the given number of nanoseconds to the time this thread was
+		 * busy.
+		 */
+		public void addBusyTime(long nanos) {
+			busyTime.addAndGet(nanos);
+		}
+
+		public long getBusyTime() {
+			return busyTime.get();
+		}
+
+		/**
+		 * Returns the fraction of the time since this thread was registered
+		 * which it spent processing pages.
+		 */
+		public double getUtilization() {
+			long elapsed = System.nanoTime() - startTime;
+			return elapsed <= 0 ? 0 : Math.min(1.0, (double) busyTime.get() / elapsed);
+		}
+	}
+
+	/**
+	 * Records how many nanoseconds one page spent in the given stage.
+	 */
+	public void recordLatency(Stage stage, long nanos) {
+		latencies[stage.ordinal()].record(nanos);
+	}
+
+	public LatencyHistogram getLatency(Stage stage) {
+		return latencies[stage.ordinal()];
+	}
+
+	public void recordStatusCode(int statusCode) {
+		if (statusCode >= 0 && statusCode < MAX_STATUS_CODE) {
+			statusCodes.incrementAndGet(statusCode);
+		} else {
+			otherStatusCodes.increment();
+		}
+	}
+
+	public long getStatusCodeCount(int statusCode) {
+		if (statusCode >= 0 && statusCode < MAX_STATUS_CODE) {
+			return statusCodes.get(statusCode);
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the number of fetches by status code, for the status codes
+	 * which were seen at least once.
+	 */
+	public Map<Integer, Long> getStatusCodeCounts() {
+		Map<Integer, Long> counts = new TreeMap<>();
+		for (int i = 0; i < MAX_STATUS_CODE; i++) {
+			long count = statusCodes.get(i);
+			if (count > 0) {
+				counts.put(i, count);
+			}
+		}
+		return counts;
+	}
+
+	public void addBytesFetched(long bytes) {
+		bytesFetched.add(bytes);
+	}
+
+	public long getBytesFetched() {
+		return bytesFetched.sum();
+	}
+
+	/**
+	 * Records a batch of docid lookups, of which the given number found an
+	 * existing docid.
+	 */
+	public void recordDocIdLookups(int lookups, int hits) {
+		docIdLookups.add(lookups);
+		docIdHits.add(hits);
+	}
+
+	public long getDocIdLookups() {
+		return docIdLookups.sum();
+	}
+
+	/**
+	 * Returns the fraction of docid lookups which found an existing docid,
+	 * that is, of the URLs which were seen before.
+	 */
+	public double getDocIdHitRate() {
+		long lookups = docIdLookups.sum();
+		return lookups == 0 ? 0 : (double) docIdHits.sum() / lookups;
+	}
+
+	/**
+	 * Creates the metrics of the thread with the given name. The metrics of a
+	 * thread which is replaced by another one with the same name start over.
+	 */
+	public ThreadMetrics registerThread(String name) {
+		ThreadMetrics metrics = new ThreadMetrics(name);
+		threads.put(name, metrics);
+		return metrics;
+	}
+
+	public List<ThreadMetrics> getThreadMetrics() {
+		List<ThreadMetrics> result = new ArrayList<>(threads.values());
+		Collections.sort(result, new Comparator<ThreadMetrics>() {
+
+			@Override
+			public int compare(ThreadMetrics a, ThreadMetrics b) {
+				return a.getName().compareTo(b.getName());
+			}
+		});
+		return result;
+	}
+
+	public void setFrontier(Frontier frontier) {
+		this.frontier = frontier;
+	}
+
+	/**
+	 * Returns the number of URLs which are waiting in the frontier, or -1 if
+	 * there is no frontier.
+	 */
+	public long getFrontierQueueLength() {
+		Frontier current = frontier;
+		return current == null ? -1 : current.getQueueLength();
+	}
+
+	/**
+	 * Returns the number of seconds since these metrics were created.
+	 */
+	public double getElapsedSeconds() {
+		return (System.nanoTime() - startTime) / 1e9;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.ROOT, "Crawl metrics after %.1f s%n", getElapsedSeconds()));
+		for (Stage stage : Stage.values()) {
+			LatencyHistogram histogram = getLatency(stage);
+			sb.append(String.format(Locale.ROOT, "  %-10s count %d, mean %.2f ms, p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+					stage, histogram.getCount(), histogram.getMean() / 1e6, histogram.getValueAtPercentile(50) / 1e6,
+					histogram.getValueAtPercentile(99) / 1e6, histogram.getMax() / 1e6));
+		}
+		sb.append("  Status codes: ").append(getStatusCodeCounts());
+		long other = otherStatusCodes.sum();
+		if (other > 0) {
+			sb.append(", other: ").append(other);
+		}
+		sb.append(String.format(Locale.ROOT, "%n  Bytes fetched: %d, docid lookups: %d, hit rate: %.3f, frontier queue: %d%n",
+				getBytesFetched(), getDocIdLookups(), getDocIdHitRate(), getFrontierQueueLength()));
+		for (ThreadMetrics thread : getThreadMetrics()) {
+			sb.append(String.format(Locale.ROOT, "  %s utilization: %.3f%n", thread.getName(), thread.getUtilization()));
+		}
+		return sb.toString();
+	}
+}
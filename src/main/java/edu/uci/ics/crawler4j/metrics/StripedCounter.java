@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.uci.ics.crawler4j.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter which many threads can update without contending on a single
+ * memory location. Each thread adds to one of several cells, chosen by its
+ * id, and the value of the counter is the sum of the cells. The cells are
+ * spaced a cache line apart, so that threads on different cells do not
+ * invalidate each other's caches.
+ */
+public class StripedCounter {
+
+	/**
+	 * Number of longs in a cache line.
+	 */
+	private static final int SPACING = 8;
+
+	private final AtomicLongArray cells;
+
+	private final int mask;
+
+	public StripedCounter() {
+		this(Runtime.getRuntime().availableProcessors() * 2);
+	}
+
+	public StripedCounter(int stripes) {
+		int n = 1;
+		while (n < stripes) {
+			n <<= 1;
+		}
+		this.cells = new AtomicLongArray(n * SPACING);
+		this.mask = n - 1;
+	}
+
+	public void increment() {
+		add(1);
+	}
+
+	public void add(long value) {
+		cells.getAndAdd(getCell(), value);
+	}
+
+	private int getCell() {
+		long id = Thread.currentThread().getId();
+		int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+		return ((hash >>> 16) & mask) * SPACING;
+	}
+
+	/**
+	 * Returns the sum of all additions. Additions which are concurrent with
+	 * this call may or may not be included.
+	 */
+	public long sum() {
+		long sum = 0;
+		for (int i = 0; i < cells.length(); i += SPACING) {
+			sum += cells.get(i);
+		}
+		return sum;
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(sum());
+	}
+}
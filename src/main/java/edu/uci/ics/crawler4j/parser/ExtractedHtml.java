@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.parser;
+
+import java.util.List;
+
+/**
+ * What an {@link HtmlExtractor} found in an HTML page.
+ */
+public class ExtractedHtml {
+
+	private String title;
+	private String text;
+	private String baseUrl;
+	private String charset;
+
+	private List<ExtractedUrlAnchorPair> outgoingUrls;
+
+	public String getTitle() {
+		return title;
+	}
+
+	public void setTitle(String title) {
+		this.title = title;
+	}
+
+	/**
+	 * Returns the text of the body, or null if it was not extracted.
+	 */
+	public String getText() {
+		return text;
+	}
+
+	public void setText(String text) {
+		this.text = text;
+	}
+
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	public void setBaseUrl(String baseUrl) {
+		this.baseUrl = baseUrl;
+	}
+
+	/**
+	 * Returns the charset the content was decoded with, or null if it is not
+	 * known.
+	 */
+	public String getCharset() {
+		return charset;
+	}
+
+	public void setCharset(String charset) {
+		this.charset = charset;
+	}
+
+	public List<ExtractedUrlAnchorPair> getOutgoingUrls() {
+		return outgoingUrls;
+	}
+
+	public void setOutgoingUrls(List<ExtractedUrlAnchorPair> outgoingUrls) {
+		this.outgoingUrls = outgoingUrls;
+	}
+}
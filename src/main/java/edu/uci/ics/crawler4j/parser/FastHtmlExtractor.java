@@ -0,0 +1,552 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A lightweight HTML extractor which tokenizes the raw bytes of a page
+ * instead of building a DOM or SAX events. It finds the same elements as
+ * {@link HtmlContentHandler}: links, images, frames, embeds, the base URL and
+ * meta refresh and location. Text is only decoded for the title, anchors and,
+ * if asked for, the body. The content buffer is reused between pages, so an
+ * instance must not be shared between threads.
+ */
+public class FastHtmlExtractor implements HtmlExtractor {
+
+	protected static final Logger logger = Logger.getLogger(FastHtmlExtractor.class.getName());
+
+	private static final int MAX_ANCHOR_LENGTH = 100;
+
+	private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+
+	private byte[] data = new byte[64 * 1024];
+	private int length;
+
+	/*
+	 * Start and end offsets of the name and value of each attribute of the
+	 * current tag. The value offsets are -1 if the attribute has no value.
+	 */
+	private int[] attributes = new int[32];
+	private int numAttributes;
+
+	private Charset charset;
+	private boolean charsetDeclared;
+	private boolean keepText;
+
+	private StringBuilder text;
+	private StringBuilder title;
+	private StringBuilder anchorText;
+	private boolean inHead;
+	private boolean inTitle;
+	private boolean inAnchor;
+	private ExtractedUrlAnchorPair curUrl;
+	private List<ExtractedUrlAnchorPair> outgoingUrls;
+	private String base;
+	private String metaCharset;
+
+	@Override
+	public ExtractedHtml extract(InputStream inputStream, String charset, boolean keepText) {
+		read(inputStream);
+		this.charset = DEFAULT_CHARSET;
+		this.charsetDeclared = false;
+		if (charset != null) {
+			try {
+				this.charset = Charset.forName(charset);
+				this.charsetDeclared = true;
+			} catch (Exception e) {
+				// Unknown charset, it may be declared in the page
+			}
+		}
+		this.keepText = keepText;
+		text = keepText ? new StringBuilder() : null;
+		title = null;
+		anchorText = new StringBuilder();
+		inHead = false;
+		inTitle = false;
+		inAnchor = false;
+		curUrl = null;
+		outgoingUrls = new ArrayList<>();
+		base = null;
+		metaCharset = null;
+
+		int pos = 0;
+		while (pos < length) {
+			int lt = indexOf((byte) '<', pos);
+			if (lt < 0) {
+				text(pos, length);
+				break;
+			}
+			if (lt > pos) {
+				text(pos, lt);
+			}
+			pos = tag(lt);
+		}
+
+		ExtractedHtml extractedHtml = new ExtractedHtml();
+		if (title != null) {
+			extractedHtml.setTitle(title.toString().trim());
+		}
+		if (keepText) {
+			extractedHtml.setText(text.toString());
+		}
+		extractedHtml.setBaseUrl(base);
+		extractedHtml.setCharset(metaCharset);
+		extractedHtml.setOutgoingUrls(outgoingUrls);
+		return extractedHtml;
+	}
+
+	private void read(InputStream inputStream) {
+		length = 0;
+		try {
+			while (true) {
+				if (length == data.length) {
+					byte[] newData = new byte[data.length * 2];
+					System.arraycopy(data, 0, newData, 0, length);
+					data = newData;
+				}
+				int n = inputStream.read(data, length, data.length - length);
+				if (n < 0) {
+					return;
+				}
+				length += n;
+			}
+		} catch (IOException e) {
+			logger.error(e.getMessage() + ", while reading HTML content");
+		}
+	}
+
+	/**
+	 * Handles the markup which starts at the given '<' and returns the
+	 * position after it.
+	 */
+	private int tag(int lt) {
+		int pos = lt + 1;
+		if (pos >= length) {
+			text(lt, length);
+			return length;
+		}
+		byte b = data[pos];
+		if (b == '!') {
+			if (startsWith(pos + 1, "--")) {
+				int end = indexOf("-->", pos + 3);
+				return end < 0 ? length : end + 3;
+			}
+			return skipTo((byte) '>', pos);
+		}
+		if (b == '?') {
+			return skipTo((byte) '>', pos);
+		}
+		if (b == '/') {
+			int nameStart = pos + 1;
+			int nameEnd = readName(nameStart);
+			if (nameEnd == nameStart) {
+				return skipTo((byte) '>', pos);
+			}
+			endElement(nameStart, nameEnd);
+			return skipTo((byte) '>', nameEnd);
+		}
+		if (!isLetter(b)) {
+			text(lt, pos);
+			return pos;
+		}
+		int nameEnd = readName(pos);
+		int end = readAttributes(nameEnd);
+		startElement(pos, nameEnd);
+		if (nameIs(pos, nameEnd, "script")) {
+			return skipRawText(end, "script");
+		}
+		if (nameIs(pos, nameEnd, "style")) {
+			return skipRawText(end, "style");
+		}
+		return end;
+	}
+
+	private void startElement(int nameStart, int nameEnd) {
+		if (nameIs(nameStart, nameEnd, "a") || nameIs(nameStart, nameEnd, "area")) {
+			String href = getAttribute("href");
+			if (href != null) {
+				inAnchor = true;
+				anchorText.setLength(0);
+				addUrl(href);
+			}
+		} else if (nameIs(nameStart, nameEnd, "link")) {
+			// A void element, so it has no anchor text
+			String href = getAttribute("href");
+			if (href != null) {
+				addUrl(href);
+				curUrl = null;
+			}
+		} else if (nameIs(nameStart, nameEnd, "img")) {
+			String src = getAttribute("src");
+			if (src != null) {
+				addUrl(src);
+			}
+		} else if (nameIs(nameStart, nameEnd, "iframe") || nameIs(nameStart, nameEnd, "frame")
+				|| nameIs(nameStart, nameEnd, "embed")) {
+			String src = getAttribute("src");
+			if (src != null) {
+				addUrl(src);
+			}
+		} else if (nameIs(nameStart, nameEnd, "base")) {
+			if (base == null) {
+				base = getAttribute("href");
+			}
+		} else if (nameIs(nameStart, nameEnd, "meta")) {
+			meta();
+		} else if (nameIs(nameStart, nameEnd, "title")) {
+			if (title == null) {
+				title = new StringBuilder();
+				inTitle = true;
+			}
+		} else if (nameIs(nameStart, nameEnd, "head")) {
+			inHead = true;
+		} else if (nameIs(nameStart, nameEnd, "body")) {
+			inHead = false;
+		}
+	}
+
+	private void endElement(int nameStart, int nameEnd) {
+		if (nameIs(nameStart, nameEnd, "a") || nameIs(nameStart, nameEnd, "area")) {
+			inAnchor = false;
+			if (curUrl != null) {
+				String anchor = anchorText.toString().replace('\n', ' ').replace('\t', ' ').trim();
+				if (!anchor.isEmpty()) {
+					if (anchor.length() > MAX_ANCHOR_LENGTH) {
+						anchor = anchor.substring(0, MAX_ANCHOR_LENGTH) + "...";
+					}
+					curUrl.setAnchor(anchor);
+				}
+				anchorText.setLength(0);
+			}
+			curUrl = null;
+		} else if (nameIs(nameStart, nameEnd, "title")) {
+			inTitle = false;
+		} else if (nameIs(nameStart, nameEnd, "head")) {
+			inHead = false;
+		}
+	}
+
+	private void meta() {
+		String charsetValue = getAttribute("charset");
+		String equiv = getAttribute("http-equiv");
+		if (equiv == null) {
+			equiv = getAttribute("name");
+		}
+		String content = getAttribute("content");
+		if (equiv != null && content != null) {
+			equiv = equiv.toLowerCase();
+			if (equiv.equals("refresh")) {
+				int pos = content.toLowerCase().indexOf("url=");
+				if (pos != -1) {
+					addUrl(content.substring(pos + 4));
+				}
+			} else if (equiv.equals("location")) {
+				addUrl(content);
+			} else if (equiv.equals("content-type")) {
+				int pos = content.toLowerCase().indexOf("charset=");
+				if (pos != -1) {
+					charsetValue = content.substring(pos + 8);
+				}
+			}
+		}
+		if (charsetValue != null && metaCharset == null) {
+			charsetValue = charsetValue.trim();
+			try {
+				Charset declared = Charset.forName(charsetValue);
+				metaCharset = declared.name();
+				if (!charsetDeclared) {
+					charset = declared;
+				}
+			} catch (Exception e) {
+				// Unknown charset, ignore it
+			}
+		}
+	}
+
+	private void addUrl(String href) {
+		curUrl = new ExtractedUrlAnchorPair();
+		curUrl.setHref(href);
+		outgoingUrls.add(curUrl);
+	}
+
+	private void text(int start, int end) {
+		boolean keepBodyText = keepText && !inHead && !inTitle;
+		if (!keepBodyText && !inTitle && !inAnchor) {
+			return;
+		}
+		String s = decode(start, end);
+		if (inTitle) {
+			title.append(s);
+		} else if (keepBodyText) {
+			text.append(s);
+		}
+		if (inAnchor) {
+			anchorText.append(s);
+		}
+	}
+
+	private int readName(int pos) {
+		while (pos < length && (isLetter(data[pos]) || (data[pos] >= '0' && data[pos] <= '9') || data[pos] == '-'
+				|| data[pos] == ':')) {
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * Reads the attributes of the tag whose name ends at the given position
+	 * and returns the position after the tag.
+	 */
+	private int readAttributes(int pos) {
+		numAttributes = 0;
+		while (pos < length) {
+			while (pos < length && isWhitespace(data[pos])) {
+				pos++;
+			}
+			if (pos >= length) {
+				break;
+			}
+			byte c = data[pos];
+			if (c == '>') {
+				return pos + 1;
+			}
+			int nameStart = pos;
+			while (pos < length && !isWhitespace(data[pos]) && data[pos] != '=' && data[pos] != '>' && data[pos] != '/') {
+				pos++;
+			}
+			int nameEnd = pos;
+			if (nameEnd == nameStart) {
+				pos++;
+				continue;
+			}
+			while (pos < length && isWhitespace(data[pos])) {
+				pos++;
+			}
+			int valueStart = -1;
+			int valueEnd = -1;
+			if (pos < length && data[pos] == '=') {
+				pos++;
+				while (pos < length && isWhitespace(data[pos])) {
+					pos++;
+				}
+				if (pos < length && (data[pos] == '"' || data[pos] == '\'')) {
+					byte quote = data[pos];
+					valueStart = pos + 1;
+					valueEnd = indexOf(quote, valueStart);
+					if (valueEnd < 0) {
+						valueEnd = length;
+					}
+					pos = valueEnd + 1;
+				} else {
+					valueStart = pos;
+					while (pos < length && !isWhitespace(data[pos]) && data[pos] != '>') {
+						pos++;
+					}
+					valueEnd = pos;
+				}
+			}
+			addAttribute(nameStart, nameEnd, valueStart, valueEnd);
+		}
+		return length;
+	}
+
+	private void addAttribute(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+		if (numAttributes * 4 == attributes.length) {
+			int[] newAttributes = new int[attributes.length * 2];
+			System.arraycopy(attributes, 0, newAttributes, 0, attributes.length);
+			attributes = newAttributes;
+		}
+		int i = numAttributes * 4;
+		attributes[i] = nameStart;
+		attributes[i + 1] = nameEnd;
+		attributes[i + 2] = valueStart;
+		attributes[i + 3] = valueEnd;
+		numAttributes++;
+	}
+
+	/**
+	 * Returns the value of the given attribute of the current tag, an empty
+	 * string if it has no value, or null if the tag does not have it.
+	 */
+	private String getAttribute(String name) {
+		for (int i = 0; i < numAttributes * 4; i += 4) {
+			if (nameIs(attributes[i], attributes[i + 1], name)) {
+				if (attributes[i + 2] < 0) {
+					return "";
+				}
+				return decode(attributes[i + 2], attributes[i + 3]).trim();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Skips the content of a script or style element, whose start tag ends at
+	 * the given position, up to its end tag.
+	 */
+	private int skipRawText(int pos, String name) {
+		while (true) {
+			int lt = indexOf((byte) '<', pos);
+			if (lt < 0 || lt + 1 >= length) {
+				return length;
+			}
+			if (data[lt + 1] == '/') {
+				int nameEnd = readName(lt + 2);
+				// The name must be followed by the end of the tag, so that
+				// e.g. </script_x does not end a script
+				if (nameIs(lt + 2, nameEnd, name)
+						&& (nameEnd == length || isWhitespace(data[nameEnd]) || data[nameEnd] == '/' || data[nameEnd] == '>')) {
+					return lt;
+				}
+			}
+			pos = lt + 1;
+		}
+	}
+
+	private String decode(int start, int end) {
+		String s = new String(data, start, end - start, charset);
+		if (s.indexOf('&') < 0) {
+			return s;
+		}
+		return decodeEntities(s);
+	}
+
+	/**
+	 * Decodes the numeric character references and the most common named
+	 * ones. Other references are left as they are.
+	 */
+	static String decodeEntities(String s) {
+		StringBuilder sb = new StringBuilder(s.length());
+		int pos = 0;
+		while (pos < s.length()) {
+			char c = s.charAt(pos);
+			int semicolon;
+			if (c != '&' || (semicolon = s.indexOf(';', pos)) < 0 || semicolon - pos > 10) {
+				sb.append(c);
+				pos++;
+				continue;
+			}
+			String entity = s.substring(pos + 1, semicolon);
+			int codePoint = -1;
+			if (entity.startsWith("#x") || entity.startsWith("#X")) {
+				codePoint = parseCodePoint(entity.substring(2), 16);
+			} else if (entity.startsWith("#")) {
+				codePoint = parseCodePoint(entity.substring(1), 10);
+			} else if (entity.equals("amp")) {
+				codePoint = '&';
+			} else if (entity.equals("lt")) {
+				codePoint = '<';
+			} else if (entity.equals("gt")) {
+				codePoint = '>';
+			} else if (entity.equals("quot")) {
+				codePoint = '"';
+			} else if (entity.equals("apos")) {
+				codePoint = '\'';
+			} else if (entity.equals("nbsp")) {
+				codePoint = 0xA0;
+			}
+			if (codePoint < 0) {
+				sb.append(c);
+				pos++;
+				continue;
+			}
+			sb.appendCodePoint(codePoint);
+			pos = semicolon + 1;
+		}
+		return sb.toString();
+	}
+
+	private static int parseCodePoint(String s, int radix) {
+		try {
+			int codePoint = Integer.parseInt(s, radix);
+			return Character.isValidCodePoint(codePoint) ? codePoint : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Compares the bytes in the given range with the given lower case ASCII
+	 * name, ignoring case.
+	 */
+	private boolean nameIs(int start, int end, String name) {
+		if (end - start != name.length()) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			int b = data[start + i];
+			if (b >= 'A' && b <= 'Z') {
+				b += 'a' - 'A';
+			}
+			if (b != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean startsWith(int pos, String s) {
+		if (pos + s.length() > length) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (data[pos + i] != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int indexOf(byte b, int from) {
+		for (int i = from; i < length; i++) {
+			if (data[i] == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int indexOf(String s, int from) {
+		for (int i = from; i <= length - s.length(); i++) {
+			if (startsWith(i, s)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int skipTo(byte b, int from) {
+		int pos = indexOf(b, from);
+		return pos < 0 ? length : pos + 1;
+	}
+
+	private static boolean isLetter(byte b) {
+		return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f';
+	}
+}
@@ -54,6 +54,7 @@ public class HtmlContentHandler extends DefaultHandler {
 	private String metaLocation;
 
 	private boolean isWithinBodyElement;
+	private final boolean keepBodyText;
 	private StringBuilder bodyText;
 
 	private List<ExtractedUrlAnchorPair> outgoingUrls;
@@ -63,6 +64,16 @@ public class HtmlContentHandler extends DefaultHandler {
 	private StringBuilder anchorText = new StringBuilder();
 
 	public HtmlContentHandler() {
+		this(true);
+	}
+
+	/**
+	 * @param keepBodyText
+	 *            if false, the text of the body is not collected, which saves
+	 *            building a copy of it when only the links are needed.
+	 */
+	public HtmlContentHandler(boolean keepBodyText) {
+		this.keepBodyText = keepBodyText;
 		isWithinBodyElement = false;
 		bodyText = new StringBuilder();
 		outgoingUrls = new ArrayList<>();
@@ -172,7 +183,9 @@ public class HtmlContentHandler extends DefaultHandler {
 	@Override
 	public void characters(char ch[], int start, int length) throws SAXException {
 		if (isWithinBodyElement) {
-			bodyText.append(ch, start, length);
+			if (keepBodyText) {
+				bodyText.append(ch, start, length);
+			}
 
 			if (anchorFlag) {
 				anchorText.append(new String(ch, start, length));
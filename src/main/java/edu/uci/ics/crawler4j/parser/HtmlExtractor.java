@@ -0,0 +1,39 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.parser;
+
+import java.io.InputStream;
+
+/**
+ * Extracts the outgoing links, title and text of HTML content for
+ * {@link Parser}. Each parser has its own extractor, so implementations do
+ * not need to be thread-safe.
+ */
+public interface HtmlExtractor {
+
+	/**
+	 * Extracts the given HTML content. Errors are logged and the parts which
+	 * could be extracted before them are returned.
+	 *
+	 * @param charset
+	 *            the charset of the content as declared by the server, or null.
+	 * @param keepText
+	 *            whether the text of the body should be extracted.
+	 */
+	ExtractedHtml extract(InputStream inputStream, String charset, boolean keepText);
+}
@@ -25,16 +25,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
-import org.apache.tika.metadata.DublinCore;
-import org.apache.tika.metadata.Metadata;
-import org.apache.tika.parser.ParseContext;
-import org.apache.tika.parser.html.HtmlParser;
 
 import com.sapienapps.scrawler.crawler.Configurable;
 import com.sapienapps.scrawler.crawler.CrawlConfig;
 import com.sapienapps.scrawler.crawler.Page;
 import edu.uci.ics.crawler4j.url.URLCanonicalizer;
 import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.CountingInputStream;
 import edu.uci.ics.crawler4j.util.Util;
 
 /**
@@ -44,13 +41,29 @@ public class Parser extends Configurable {
 
 	protected static final Logger logger = Logger.getLogger(Parser.class.getName());
 
-	private HtmlParser htmlParser;
-	private ParseContext parseContext;
+	private HtmlExtractor htmlExtractor;
 
 	public Parser(CrawlConfig config) {
 		super(config);
-		htmlParser = new HtmlParser();
-		parseContext = new ParseContext();
+		htmlExtractor = createHtmlExtractor(config.htmlExtractor());
+	}
+
+	/**
+	 * Creates the HTML extractor with the given name: "tika", "fast" or the
+	 * name of a class which implements {@link HtmlExtractor}.
+	 */
+	protected static HtmlExtractor createHtmlExtractor(String name) {
+		if (name.equals("tika")) {
+			return new TikaHtmlExtractor();
+		}
+		if (name.equals("fast")) {
+			return new FastHtmlExtractor();
+		}
+		try {
+			return (HtmlExtractor) Class.forName(name).newInstance();
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Invalid HTML extractor: " + name, e);
+		}
 	}
 
 	public boolean parse(Page page, String contextURL) {
@@ -79,41 +92,60 @@ public class Parser extends Configurable {
 			return false;
 		}
 
-		Metadata metadata = new Metadata();
-		HtmlContentHandler contentHandler = new HtmlContentHandler();
-		InputStream inputStream = null;
+		InputStream inputStream = new ByteArrayInputStream(page.contentData());
 		try {
-			inputStream = new ByteArrayInputStream(page.contentData());
-			htmlParser.parse(inputStream, contentHandler, metadata, parseContext);
-		} catch (Exception e) {
-			logger.error(e.getMessage() + ", while parsing: " + page.url().getURL());
+			return parseHtml(page, contextURL, inputStream);
 		} finally {
 			try {
-				if (inputStream != null) {
-					inputStream.close();
-				}
+				inputStream.close();
 			} catch (IOException e) {
 				logger.error(e.getMessage() + ", while parsing: " + page.url().getURL());
 			}
 		}
+	}
+
+	/**
+	 * Returns true if the given page, whose content type is loaded, is parsed
+	 * as HTML.
+	 */
+	public boolean isHtml(Page page) {
+		return !Util.hasBinaryContent(page.contentType()) && !Util.hasPlainTextContent(page.contentType());
+	}
+
+	/**
+	 * Parses the given HTML content of the given page. The content can be
+	 * streamed straight from the response, in which case the raw HTML is not
+	 * kept. If the content can not be read to its end, the page is not parsed
+	 * and false is returned, as its links would be incomplete.
+	 */
+	public boolean parseHtml(Page page, String contextURL, InputStream inputStream) {
+		CountingInputStream content = new CountingInputStream(inputStream);
+		ExtractedHtml extractedHtml = htmlExtractor.extract(content, page.contentCharset(), config().parseKeepText());
+		if (content.getReadError() != null) {
+			logger.warn("Could not read the content after " + content.getCount() + " bytes ["
+					+ content.getReadError().getMessage() + "], while parsing: " + page.url().getURL());
+			return false;
+		}
 
 		if (page.contentCharset() == null) {
-			page.contentCharset_$eq(metadata.get("Content-Encoding"));
+			page.contentCharset_$eq(extractedHtml.getCharset());
 		}
 
 		HtmlParseData parseData = new HtmlParseData();
-		parseData.setText(contentHandler.getBodyText().trim());
-		parseData.setTitle(metadata.get(DublinCore.TITLE));
+		if (extractedHtml.getText() != null) {
+			parseData.setText(extractedHtml.getText().trim());
+		}
+		parseData.setTitle(extractedHtml.getTitle());
 
 		List<WebURL> outgoingUrls = new ArrayList<>();
 
-		String baseURL = contentHandler.getBaseUrl();
+		String baseURL = extractedHtml.getBaseUrl();
 		if (baseURL != null) {
 			contextURL = baseURL;
 		}
 
 		int urlCount = 0;
-		for (ExtractedUrlAnchorPair urlAnchorPair : contentHandler.getOutgoingUrls()) {
+		for (ExtractedUrlAnchorPair urlAnchorPair : extractedHtml.getOutgoingUrls()) {
 			String href = urlAnchorPair.getHref();
 			href = href.trim();
 			if (href.length() == 0) {
@@ -141,15 +173,17 @@ public class Parser extends Configurable {
 
 		parseData.setOutgoingUrls(outgoingUrls);
 
-		try {
-			if (page.contentCharset() == null) {
-				parseData.setHtml(new String(page.contentData()));
-			} else {
-				parseData.setHtml(new String(page.contentData(), page.contentCharset()));
+		if (config().parseKeepHtml() && page.contentData() != null) {
+			try {
+				if (page.contentCharset() == null) {
+					parseData.setHtml(new String(page.contentData()));
+				} else {
+					parseData.setHtml(new String(page.contentData(), page.contentCharset()));
+				}
+			} catch (UnsupportedEncodingException e) {
+				e.printStackTrace();
+				return false;
 			}
-		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
-			return false;
 		}
 
 		page.parseData_$eq(parseData);
@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.parser;
+
+import java.io.InputStream;
+
+import org.apache.log4j.Logger;
+import org.apache.tika.metadata.DublinCore;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.html.HtmlParser;
+
+/**
+ * Extracts HTML content with the Tika HtmlParser and
+ * {@link HtmlContentHandler}.
+ */
+public class TikaHtmlExtractor implements HtmlExtractor {
+
+	protected static final Logger logger = Logger.getLogger(TikaHtmlExtractor.class.getName());
+
+	private HtmlParser htmlParser;
+	private ParseContext parseContext;
+
+	public TikaHtmlExtractor() {
+		htmlParser = new HtmlParser();
+		parseContext = new ParseContext();
+	}
+
+	@Override
+	public ExtractedHtml extract(InputStream inputStream, String charset, boolean keepText) {
+		Metadata metadata = new Metadata();
+		HtmlContentHandler contentHandler = new HtmlContentHandler(keepText);
+		try {
+			htmlParser.parse(inputStream, contentHandler, metadata, parseContext);
+		} catch (Exception e) {
+			logger.error(e.getMessage() + ", while parsing HTML content");
+		}
+
+		ExtractedHtml extractedHtml = new ExtractedHtml();
+		extractedHtml.setTitle(metadata.get(DublinCore.TITLE));
+		if (keepText) {
+			extractedHtml.setText(contentHandler.getBodyText());
+		}
+		extractedHtml.setBaseUrl(contentHandler.getBaseUrl());
+		extractedHtml.setCharset(metadata.get("Content-Encoding"));
+		extractedHtml.setOutgoingUrls(contentHandler.getOutgoingUrls());
+		return extractedHtml;
+	}
+}
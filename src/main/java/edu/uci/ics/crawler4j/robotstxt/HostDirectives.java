@@ -17,7 +17,13 @@
 
 package edu.uci.ics.crawler4j.robotstxt;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
+ * The directives of robots.txt for a host. The allow and disallow rules are
+ * compiled into a {@link RobotsTxtMatcher} when a path is first checked.
+ *
  * @author Yasser Ganjisaffar <lastname at gmail dot com>
  */
 public class HostDirectives {
@@ -26,34 +32,76 @@ public class HostDirectives {
 	// 24 hours, we have to re-fetch it.
 	private static final long EXPIRATION_DELAY = 24 * 60 * 1000L;
 
-	private RuleSet disallows = new RuleSet();
-	private RuleSet allows = new RuleSet();
+	private final List<String> allowRules = new ArrayList<>();
+	private final List<String> disallowRules = new ArrayList<>();
+
+	private volatile RobotsTxtMatcher matcher;
+
+	/**
+	 * The Crawl-delay in milliseconds, or -1 if there is none.
+	 */
+	private long crawlDelay = -1;
 
 	private long timeFetched;
-	private long timeLastAccessed;
 
 	public HostDirectives() {
 		timeFetched = System.currentTimeMillis();
 	}
 
 	public boolean needsRefetch() {
+		return isExpired(timeFetched);
+	}
+
+	/**
+	 * Returns whether directives fetched at the given time have to be
+	 * re-fetched.
+	 */
+	static boolean isExpired(long timeFetched) {
 		return (System.currentTimeMillis() - timeFetched > EXPIRATION_DELAY);
 	}
 
+	public long getTimeFetched() {
+		return timeFetched;
+	}
+
+	/**
+	 * Sets the time robots.txt was fetched, for directives which are parsed
+	 * from a stored copy.
+	 */
+	void setTimeFetched(long timeFetched) {
+		this.timeFetched = timeFetched;
+	}
+
 	public boolean allows(String path) {
-		timeLastAccessed = System.currentTimeMillis();
-        return !disallows.containsPrefixOf(path) || allows.containsPrefixOf(path);
-    }
+		RobotsTxtMatcher current = matcher;
+		if (current == null) {
+			current = compile();
+		}
+		return current.allows(path);
+	}
+
+	private synchronized RobotsTxtMatcher compile() {
+		if (matcher == null) {
+			matcher = new RobotsTxtMatcher(allowRules, disallowRules);
+		}
+		return matcher;
+	}
+
+	public synchronized void addDisallow(String path) {
+		disallowRules.add(path);
+		matcher = null;
+	}
 
-	public void addDisallow(String path) {
-		disallows.add(path);
+	public synchronized void addAllow(String path) {
+		allowRules.add(path);
+		matcher = null;
 	}
 
-	public void addAllow(String path) {
-		allows.add(path);
+	public long getCrawlDelay() {
+		return crawlDelay;
 	}
-	
-	public long getLastAccessTime() {
-		return timeLastAccessed;
+
+	public void setCrawlDelay(long crawlDelay) {
+		this.crawlDelay = crawlDelay;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,184 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.uci.ics.crawler4j.robotstxt;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded cache of the directives of hosts, which many threads can use at
+ * once. The directives of a host are loaded once, by the first thread which
+ * asks for them, and the other threads which ask meanwhile wait for that
+ * load instead of starting their own. When the cache is full, hosts are
+ * evicted in CLOCK order: hosts which were used since the hand last passed
+ * them get a second chance, so eviction takes constant amortized time.
+ */
+public class RobotsTxtCache {
+
+	private static class Entry {
+
+		final String host;
+		final FutureTask<HostDirectives> task;
+
+		/**
+		 * Was this entry used since the clock hand last passed it?
+		 */
+		volatile boolean referenced = true;
+
+		Entry(String host, Callable<HostDirectives> loader) {
+			this.host = host;
+			this.task = new FutureTask<>(loader);
+		}
+	}
+
+	private final int capacity;
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * The entries in the order the clock hand visits them, from the hand
+	 * onwards.
+	 */
+	private final Queue<Entry> clock = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * The number of entries in the clock, including the ones which were
+	 * removed from the cache but not reached by the hand yet.
+	 */
+	private final AtomicInteger clockLength = new AtomicInteger();
+
+	private final Object evictionLock = new Object();
+
+	public RobotsTxtCache(int capacity) {
+		this.capacity = Math.max(1, capacity);
+	}
+
+	/**
+	 * Returns the directives of the given host, which are loaded with the
+	 * given loader if they are not cached or have expired.
+	 *
+	 * @return the directives, or null if they could not be loaded or the
+	 *         thread was interrupted while waiting for them.
+	 */
+	public HostDirectives get(String host, Callable<HostDirectives> loader) {
+		while (true) {
+			Entry entry = entries.get(host);
+			if (entry == null) {
+				Entry newEntry = new Entry(host, loader);
+				entry = entries.putIfAbsent(host, newEntry);
+				if (entry == null) {
+					entry = newEntry;
+					clockLength.incrementAndGet();
+					clock.add(entry);
+					entry.task.run();
+					evict();
+				}
+			}
+			entry.referenced = true;
+			HostDirectives directives;
+			try {
+				directives = entry.task.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			} catch (ExecutionException e) {
+				// Let the next caller try again
+				remove(entry);
+				return null;
+			}
+			if (!directives.needsRefetch()) {
+				return directives;
+			}
+			remove(entry);
+		}
+	}
+
+	/**
+	 * Removes the given entry from the cache. It is left in the clock, where
+	 * the hand skips it.
+	 */
+	private void remove(Entry entry) {
+		entries.remove(entry.host, entry);
+	}
+
+	/**
+	 * Moves the clock hand until the cache is within its capacity, and the
+	 * clock holds at most twice as many entries, so that removed entries do
+	 * not pile up in it.
+	 */
+	private void evict() {
+		synchronized (evictionLock) {
+			while (entries.size() > capacity || clockLength.get() > 2 * capacity) {
+				Entry entry = clock.poll();
+				if (entry == null) {
+					return;
+				}
+				clockLength.decrementAndGet();
+				if (entries.get(entry.host) != entry) {
+					// Already removed or replaced
+					continue;
+				}
+				if (entries.size() <= capacity) {
+					// Only skipping removed entries
+					clockLength.incrementAndGet();
+					clock.add(entry);
+				} else if (entry.referenced) {
+					entry.referenced = false;
+					clockLength.incrementAndGet();
+					clock.add(entry);
+				} else if (entries.remove(entry.host, entry)) {
+					evicted(entry.host);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called when the directives of the given host are evicted to make room
+	 * for other hosts. Does nothing by default.
+	 */
+	protected void evicted(String host) {
+	}
+
+	/**
+	 * Returns true if the directives of the given host are cached or being
+	 * loaded.
+	 */
+	public boolean contains(String host) {
+		return entries.containsKey(host);
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public void clear() {
+		entries.clear();
+		synchronized (evictionLock) {
+			clock.clear();
+			clockLength.set(0);
+		}
+	}
+}
@@ -32,10 +32,36 @@ public class RobotsTxtConfig {
 	private String userAgentName = "crawler4j";
 
 	/**
-	 * The maximum number of hosts for which their robots.txt is cached.
+	 * The maximum number of hosts for which their robots.txt is cached. It
+	 * also bounds the number of hosts waiting to be prefetched, since
+	 * prefetching more hosts than the cache holds would only evict the ones
+	 * prefetched first.
 	 */
 	private int cacheSize = 500;
 
+	/**
+	 * Should robots.txt be checked when a URL is fetched, instead of when it
+	 * is discovered? Then discovering links never waits for robots.txt
+	 * files, which are fetched in the background as soon as a new host is
+	 * seen. Disallowed URLs are still scheduled and get a docid, but they are
+	 * not fetched.
+	 */
+	private boolean checkAtFetchTime = false;
+
+	/**
+	 * The number of threads which fetch robots.txt files in the background
+	 * when they are checked at fetch time. At most cacheSize hosts wait for
+	 * them; the robots.txt of the hosts beyond that is fetched with their
+	 * first URL.
+	 */
+	private int prefetchThreads = 4;
+
+	/**
+	 * The longest Crawl-delay, in milliseconds, which is honored. Longer
+	 * delays are cut to this. Set it to 0 to ignore Crawl-delay.
+	 */
+	private long maxCrawlDelay = 30000;
+
 	public boolean isEnabled() {
 		return enabled;
 	}
@@ -60,4 +86,28 @@ public class RobotsTxtConfig {
 		this.cacheSize = cacheSize;
 	}
 
+	public boolean isCheckAtFetchTime() {
+		return checkAtFetchTime;
+	}
+
+	public void setCheckAtFetchTime(boolean checkAtFetchTime) {
+		this.checkAtFetchTime = checkAtFetchTime;
+	}
+
+	public long getMaxCrawlDelay() {
+		return maxCrawlDelay;
+	}
+
+	public void setMaxCrawlDelay(long maxCrawlDelay) {
+		this.maxCrawlDelay = maxCrawlDelay;
+	}
+
+	public int getPrefetchThreads() {
+		return prefetchThreads;
+	}
+
+	public void setPrefetchThreads(int prefetchThreads) {
+		this.prefetchThreads = prefetchThreads;
+	}
+
 }
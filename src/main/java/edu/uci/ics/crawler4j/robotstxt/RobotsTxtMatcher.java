@@ -0,0 +1,225 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.uci.ics.crawler4j.robotstxt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The allow and disallow rules of a host, compiled for matching paths
+ * without allocating. Rules without wildcards are kept in a trie of the
+ * characters of their paths, which is walked once along the path. Rules with
+ * '*' wildcards are matched one by one, except trailing ones, which only
+ * make the rule a prefix, as it is anyway. A '$' at the end of a rule anchors
+ * it at the end of the path.
+ * <p/>
+ * As with the major search engines, the longest matching rule decides, and
+ * an allow rule wins over a disallow rule of the same length. The length of a
+ * rule is the length it is written with, wildcards and '$' included. A path
+ * which no rule matches is allowed.
+ */
+public class RobotsTxtMatcher {
+
+	private static final int ALLOW = 0;
+	private static final int DISALLOW = 1;
+	private static final int ANCHORED_ALLOW = 2;
+	private static final int ANCHORED_DISALLOW = 3;
+
+	/**
+	 * The trie. The edges of node n are edgeChars and edgeTargets from
+	 * edgeStart[n] to edgeStart[n + 1], sorted by character.
+	 * ruleLengths[4 * n + kind] is the length of the longest rule of the
+	 * given kind which ends at node n, or -1 if there is none.
+	 */
+	private final int[] edgeStart;
+	private final char[] edgeChars;
+	private final int[] edgeTargets;
+	private final int[] ruleLengths;
+
+	private final char[][] wildcardPatterns;
+	private final boolean[] wildcardAllows;
+	private final boolean[] wildcardAnchored;
+	private final int[] wildcardLengths;
+
+	public RobotsTxtMatcher(List<String> allows, List<String> disallows) {
+		List<Map<Character, Integer>> children = new ArrayList<>();
+		List<int[]> lengths = new ArrayList<>();
+		children.add(new TreeMap<Character, Integer>());
+		lengths.add(new int[] { -1, -1, -1, -1 });
+		List<String> wildcards = new ArrayList<>();
+		List<Boolean> wildcardAllowList = new ArrayList<>();
+
+		for (int i = 0; i < allows.size() + disallows.size(); i++) {
+			boolean allow = i < allows.size();
+			String rule = allow ? allows.get(i) : disallows.get(i - allows.size());
+			if (rule.isEmpty()) {
+				// Matches nothing
+				continue;
+			}
+			boolean anchored = rule.endsWith("$");
+			String path = anchored ? rule.substring(0, rule.length() - 1) : rule;
+			if (!anchored) {
+				// A trailing wildcard matches like a prefix
+				while (path.endsWith("*")) {
+					path = path.substring(0, path.length() - 1);
+				}
+			}
+			if (path.indexOf('*') >= 0) {
+				wildcards.add(rule);
+				wildcardAllowList.add(allow);
+				continue;
+			}
+			int node = 0;
+			for (int j = 0; j < path.length(); j++) {
+				Integer child = children.get(node).get(path.charAt(j));
+				if (child == null) {
+					child = children.size();
+					children.get(node).put(path.charAt(j), child);
+					children.add(new TreeMap<Character, Integer>());
+					lengths.add(new int[] { -1, -1, -1, -1 });
+				}
+				node = child;
+			}
+			int kind = anchored ? (allow ? ANCHORED_ALLOW : ANCHORED_DISALLOW) : (allow ? ALLOW : DISALLOW);
+			int[] nodeLengths = lengths.get(node);
+			nodeLengths[kind] = Math.max(nodeLengths[kind], rule.length());
+		}
+
+		int nodes = children.size();
+		edgeStart = new int[nodes + 1];
+		edgeChars = new char[nodes - 1];
+		edgeTargets = new int[nodes - 1];
+		ruleLengths = new int[4 * nodes];
+		int edge = 0;
+		for (int n = 0; n < nodes; n++) {
+			edgeStart[n] = edge;
+			System.arraycopy(lengths.get(n), 0, ruleLengths, 4 * n, 4);
+			for (Map.Entry<Character, Integer> entry : children.get(n).entrySet()) {
+				edgeChars[edge] = entry.getKey();
+				edgeTargets[edge] = entry.getValue();
+				edge++;
+			}
+		}
+		edgeStart[nodes] = edge;
+
+		int count = wildcards.size();
+		wildcardPatterns = new char[count][];
+		wildcardAllows = new boolean[count];
+		wildcardAnchored = new boolean[count];
+		wildcardLengths = new int[count];
+		for (int i = 0; i < count; i++) {
+			String rule = wildcards.get(i);
+			wildcardLengths[i] = rule.length();
+			wildcardAnchored[i] = rule.endsWith("$");
+			wildcardPatterns[i] = (wildcardAnchored[i] ? rule.substring(0, rule.length() - 1) : rule).toCharArray();
+			wildcardAllows[i] = wildcardAllowList.get(i);
+		}
+	}
+
+	public boolean allows(String path) {
+		int bestLength = -1;
+		boolean bestAllow = true;
+
+		int node = 0;
+		int length = path.length();
+		for (int i = 0; ; i++) {
+			int kinds = i == length ? 4 : 2;
+			for (int kind = 0; kind < kinds; kind++) {
+				int ruleLength = ruleLengths[4 * node + kind];
+				// Allow rules win ties
+				boolean allow = kind == ALLOW || kind == ANCHORED_ALLOW;
+				if (ruleLength > bestLength || (ruleLength == bestLength && ruleLength >= 0 && allow && !bestAllow)) {
+					bestLength = ruleLength;
+					bestAllow = allow;
+				}
+			}
+			if (i == length) {
+				break;
+			}
+			node = getChild(node, path.charAt(i));
+			if (node < 0) {
+				break;
+			}
+		}
+
+		for (int i = 0; i < wildcardPatterns.length; i++) {
+			int ruleLength = wildcardLengths[i];
+			boolean allow = wildcardAllows[i];
+			if (ruleLength > bestLength || (ruleLength == bestLength && allow && !bestAllow)) {
+				if (matches(wildcardPatterns[i], wildcardAnchored[i], path)) {
+					bestLength = ruleLength;
+					bestAllow = allow;
+				}
+			}
+		}
+		return bestAllow;
+	}
+
+	private int getChild(int node, char c) {
+		int low = edgeStart[node];
+		int high = edgeStart[node + 1] - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			char midChar = edgeChars[mid];
+			if (midChar < c) {
+				low = mid + 1;
+			} else if (midChar > c) {
+				high = mid - 1;
+			} else {
+				return edgeTargets[mid];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Matches the given pattern, in which '*' matches any sequence of
+	 * characters, against the start of the path, or the whole path if the
+	 * pattern is anchored.
+	 */
+	static boolean matches(char[] pattern, boolean anchored, String path) {
+		int p = 0;
+		int s = 0;
+		int starP = -1;
+		int starS = 0;
+		int length = path.length();
+		while (s < length) {
+			if (p < pattern.length && pattern[p] == '*') {
+				starP = p++;
+				starS = s;
+			} else if (p == pattern.length && !anchored) {
+				return true;
+			} else if (p < pattern.length && pattern[p] == path.charAt(s)) {
+				p++;
+				s++;
+			} else if (starP >= 0) {
+				p = starP + 1;
+				s = ++starS;
+			} else {
+				return false;
+			}
+		}
+		while (p < pattern.length && pattern[p] == '*') {
+			p++;
+		}
+		return p == pattern.length;
+	}
+}
@@ -17,84 +17,110 @@
 
 package edu.uci.ics.crawler4j.robotstxt;
 
-import java.util.StringTokenizer;
-
 /**
+ * Parses the directives of a robots.txt file which apply to a user agent.
+ * Consecutive User-agent lines form one group, which applies if any of them
+ * matches. Lines are split at the first colon, without regular expressions.
+ *
  * @author Yasser Ganjisaffar <lastname at gmail dot com>
  */
 
 
 public class RobotsTxtParser {
 
-	private static final String PATTERNS_USERAGENT = "(?i)^User-agent:.*";
-	private static final String PATTERNS_DISALLOW = "(?i)Disallow:.*";
-	private static final String PATTERNS_ALLOW = "(?i)Allow:.*";
-	
-	private static final int PATTERNS_USERAGENT_LENGTH = 11;
-	private static final int PATTERNS_DISALLOW_LENGTH = 9;
-	private static final int PATTERNS_ALLOW_LENGTH = 6;
-	
 	public static HostDirectives parse(String content, String myUserAgent) {
 		
 		HostDirectives directives = null;
-		boolean inMatchingUserAgent = false;		
-		
-		StringTokenizer st = new StringTokenizer(content, "\n");
-		while (st.hasMoreTokens()) {
-			String line = st.nextToken();
-			
-			int commentIndex = line.indexOf("#");
+		boolean inMatchingUserAgent = false;
+		boolean previousWasUserAgent = false;
+		String userAgent = myUserAgent.toLowerCase();
+
+		int start = 0;
+		while (start < content.length()) {
+			int end = content.indexOf('\n', start);
+			if (end < 0) {
+				end = content.length();
+			}
+			String line = content.substring(start, end);
+			start = end + 1;
+
+			int commentIndex = line.indexOf('#');
 			if (commentIndex > -1) {				
 				line = line.substring(0, commentIndex);
 			}
 
 			// remove any html markup
-			line = line.replaceAll("<[^>]+>", "");
-
-			line = line.trim();
+			if (line.indexOf('<') >= 0) {
+				line = removeMarkup(line);
+			}
 
-			if (line.length() == 0) {
+			int colon = line.indexOf(':');
+			if (colon < 0) {
 				continue;
 			}
+			String field = line.substring(0, colon).trim().toLowerCase();
+			String value = line.substring(colon + 1).trim();
 
-			if (line.matches(PATTERNS_USERAGENT)) {
-				String ua = line.substring(PATTERNS_USERAGENT_LENGTH).trim().toLowerCase();
-				if (ua.equals("*") || ua.contains(myUserAgent)) {
-					inMatchingUserAgent = true;					
-				} else {
+			if (field.equals("user-agent")) {
+				if (!previousWasUserAgent) {
 					inMatchingUserAgent = false;
 				}
-			} else if (line.matches(PATTERNS_DISALLOW)) {
-				if (!inMatchingUserAgent) {
-					continue;
-				}
-				String path = line.substring(PATTERNS_DISALLOW_LENGTH).trim();
-				if (path.endsWith("*")) {
-					path = path.substring(0, path.length() - 1);
+				String ua = value.toLowerCase();
+				if (ua.equals("*") || ua.contains(userAgent)) {
+					inMatchingUserAgent = true;
 				}
-				path = path.trim();
-				if (path.length() > 0) {
+				previousWasUserAgent = true;
+				continue;
+			}
+			previousWasUserAgent = false;
+			if (!inMatchingUserAgent) {
+				continue;
+			}
+			if (field.equals("disallow")) {
+				if (value.length() > 0) {
 					if (directives == null) {
 						directives = new HostDirectives();
 					}
-					directives.addDisallow(path);	
-				}								
-			} else if (line.matches(PATTERNS_ALLOW)) {
-				if (!inMatchingUserAgent) {
-					continue;
+					directives.addDisallow(value);
 				}
-				String path = line.substring(PATTERNS_ALLOW_LENGTH).trim();
-				if (path.endsWith("*")) {
-					path = path.substring(0, path.length() - 1);
+			} else if (field.equals("allow")) {
+				if (value.length() > 0) {
+					if (directives == null) {
+						directives = new HostDirectives();
+					}
+					directives.addAllow(value);
 				}
-				path = path.trim();
-				if (directives == null) {
-					directives = new HostDirectives();
+			} else if (field.equals("crawl-delay")) {
+				try {
+					long crawlDelay = (long) (Double.parseDouble(value) * 1000);
+					if (crawlDelay >= 0) {
+						if (directives == null) {
+							directives = new HostDirectives();
+						}
+						directives.setCrawlDelay(crawlDelay);
+					}
+				} catch (NumberFormatException e) {
+					// Ignore invalid delays
 				}
-				directives.addAllow(path);
-			}			
+			}
 		}
 		
 		return directives;
 	}
+
+	private static String removeMarkup(String line) {
+		StringBuilder sb = new StringBuilder(line.length());
+		int i = 0;
+		while (i < line.length()) {
+			char c = line.charAt(i);
+			int close = c == '<' ? line.indexOf('>', i + 1) : -1;
+			if (close > i + 1) {
+				i = close + 1;
+			} else {
+				sb.append(c);
+				i++;
+			}
+		}
+		return sb.toString();
+	}
 }
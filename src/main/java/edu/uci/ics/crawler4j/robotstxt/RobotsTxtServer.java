@@ -19,15 +19,27 @@ package edu.uci.ics.crawler4j.robotstxt;
 
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.http.Header;
 import org.apache.http.HttpStatus;
+import org.apache.http.message.BasicHeader;
+import org.apache.log4j.Logger;
 
 import com.sapienapps.scrawler.crawler.Page;
 import com.sapienapps.scrawler.fetcher.PageFetchResult;
 import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.fetcher.PolitenessScheduler;
 import edu.uci.ics.crawler4j.url.WebURL;
 import edu.uci.ics.crawler4j.util.Util;
 
@@ -36,15 +48,64 @@ import edu.uci.ics.crawler4j.util.Util;
  */
 public class RobotsTxtServer {
 
+	protected static final Logger logger = Logger.getLogger(RobotsTxtServer.class.getName());
+
+	/**
+	 * How long shutDown() waits for the running prefetches, in seconds.
+	 */
+	private static final int PREFETCH_TERMINATION_TIMEOUT = 10;
+
 	protected RobotsTxtConfig config;
 
-	protected final Map<String, HostDirectives> host2directivesCache = new HashMap<>();
+	protected final RobotsTxtCache host2directivesCache;
 
 	protected PageFetcher pageFetcher;
 
+	protected volatile RobotsTxtStore store;
+
+	/**
+	 * Fetches the robots.txt files of new hosts in the background. Its
+	 * threads are only started when there is something to prefetch. At most
+	 * as many hosts as the cache holds wait to be prefetched; hosts beyond
+	 * this are fetched when their first URL is.
+	 */
+	protected final ThreadPoolExecutor prefetchExecutor;
+
+	/**
+	 * The hosts whose robots.txt is waiting to be prefetched.
+	 */
+	protected final Set<String> prefetchingHosts = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
 	public RobotsTxtServer(RobotsTxtConfig config, PageFetcher pageFetcher) {
 		this.config = config;
 		this.pageFetcher = pageFetcher;
+		this.host2directivesCache = new RobotsTxtCache(config.getCacheSize()) {
+
+			@Override
+			protected void evicted(String host) {
+				// The delay is set again if robots.txt is fetched again
+				WebURL webURL = new WebURL();
+				webURL.setURL("http://" + host + "/");
+				RobotsTxtServer.this.pageFetcher.getPolitenessScheduler().removeHostDelay(
+						PolitenessScheduler.getHostKey(webURL));
+			}
+		};
+		int threads = Math.max(1, config.getPrefetchThreads());
+		this.prefetchExecutor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(Math.max(1, config.getCacheSize())), new ThreadFactory() {
+
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "Robots.txt prefetcher");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		this.prefetchExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	public RobotsTxtConfig getConfig() {
+		return config;
 	}
 
 	private static String getHost(URL url) {
@@ -57,78 +118,213 @@ public class RobotsTxtServer {
 		}
 		try {
 			URL url = new URL(webURL.getURL());
-			String host = getHost(url);
-			String path = url.getPath();
-
-			HostDirectives directives = host2directivesCache.get(host);
-
-			if (directives != null && directives.needsRefetch()) {
-				synchronized (host2directivesCache) {
-					host2directivesCache.remove(host);
-					directives = null;
-				}
-			}
-
+			HostDirectives directives = getDirectives(url);
 			if (directives == null) {
-				directives = fetchDirectives(url);
+				return true;
 			}
-			return directives.allows(path);
+			// Rules apply to the path and the query
+			String path = url.getFile();
+			return directives.allows(path.isEmpty() ? "/" : path);
 		} catch (MalformedURLException e) {
 			e.printStackTrace();
 		}
 		return true;
 	}
 
+	private HostDirectives getDirectives(final URL url) {
+		return host2directivesCache.get(getHost(url), new Callable<HostDirectives>() {
+
+			@Override
+			public HostDirectives call() {
+				return fetchDirectives(url);
+			}
+		});
+	}
+
+	/**
+	 * Starts fetching the robots.txt of the host of the given URL in the
+	 * background, unless it is cached or already being fetched. This never
+	 * blocks.
+	 */
+	public void prefetch(WebURL webURL) {
+		if (!config.isEnabled()) {
+			return;
+		}
+		final URL url;
+		try {
+			url = new URL(webURL.getURL());
+		} catch (MalformedURLException e) {
+			return;
+		}
+		final String host = getHost(url);
+		if (host2directivesCache.contains(host) || !prefetchingHosts.add(host)) {
+			return;
+		}
+		try {
+			prefetchExecutor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						getDirectives(url);
+					} finally {
+						prefetchingHosts.remove(host);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			prefetchingHosts.remove(host);
+		}
+	}
+
+	/**
+	 * Sets the store in which fetched robots.txt files are kept across
+	 * restarts. Hosts which are not cached are looked up there before
+	 * robots.txt is fetched.
+	 */
+	public void setStore(RobotsTxtStore store) {
+		this.store = store;
+	}
+
+	public RobotsTxtStore getStore() {
+		return store;
+	}
+
+	/**
+	 * Drops the hosts waiting to be prefetched and waits for the running
+	 * prefetches before closing the store. The prefetching threads are not
+	 * interrupted: the page fetcher should be shut down first, which aborts
+	 * the requests they are waiting for.
+	 */
+	public void shutDown() {
+		prefetchExecutor.shutdown();
+		prefetchExecutor.getQueue().clear();
+		try {
+			if (!prefetchExecutor.awaitTermination(PREFETCH_TERMINATION_TIMEOUT, TimeUnit.SECONDS)) {
+				logger.warn("Robots.txt prefetches did not finish in " + PREFETCH_TERMINATION_TIMEOUT + " seconds.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		prefetchingHosts.clear();
+		RobotsTxtStore currentStore = store;
+		if (currentStore != null) {
+			currentStore.close();
+		}
+	}
+
 	private HostDirectives fetchDirectives(URL url) {
 		WebURL robotsTxtUrl = new WebURL();
 		String host = getHost(url);
 		String port = (url.getPort() == url.getDefaultPort() || url.getPort() == -1) ? "" : ":" + url.getPort();
 		robotsTxtUrl.setURL("http://" + host + port + "/robots.txt");
+
+		RobotsTxtStore currentStore = store;
+		RobotsTxtStore.Entry stored = null;
+		if (currentStore != null) {
+			stored = currentStore.get(host + port);
+		}
+		HostDirectives directives;
+		if (stored != null && !HostDirectives.isExpired(stored.getTimeFetched())) {
+			directives = parse(stored.getContent());
+			directives.setTimeFetched(stored.getTimeFetched());
+		} else {
+			RobotsTxtStore.Entry entry = fetchRobotsTxt(robotsTxtUrl, stored);
+			directives = parse(entry == null ? null : entry.getContent());
+			if (entry != null && currentStore != null) {
+				currentStore.put(host + port, entry);
+			}
+		}
+		// Also clears the delay of a host which no longer asks for one
+		pageFetcher.getPolitenessScheduler().setHostDelay(PolitenessScheduler.getHostKey(robotsTxtUrl),
+				Math.min(directives.getCrawlDelay(), config.getMaxCrawlDelay()));
+		return directives;
+	}
+
+	private HostDirectives parse(String content) {
 		HostDirectives directives = null;
+		if (content != null) {
+			try {
+				directives = RobotsTxtParser.parse(content, config.getUserAgentName());
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+		if (directives == null) {
+			// Nothing applies to us, but we still need to have this object to
+			// keep track of the time we fetched it
+			directives = new HostDirectives();
+		}
+		return directives;
+	}
+
+	/**
+	 * Fetches robots.txt, revalidating the given stored copy if there is one.
+	 * Returns null if the server could not be reached, so that nothing is
+	 * stored for it.
+	 */
+	private RobotsTxtStore.Entry fetchRobotsTxt(WebURL robotsTxtUrl, RobotsTxtStore.Entry stored) {
+		List<Header> validators = new ArrayList<>(2);
+		if (stored != null) {
+			if (stored.getEtag() != null) {
+				validators.add(new BasicHeader("If-None-Match", stored.getEtag()));
+			}
+			if (stored.getLastModified() != null) {
+				validators.add(new BasicHeader("If-Modified-Since", stored.getLastModified()));
+			}
+		}
 		PageFetchResult fetchResult = null;
 		try {
-			fetchResult = pageFetcher.fetchHeader(robotsTxtUrl);
-			if (fetchResult.statusCode() == HttpStatus.SC_OK) {
+			if (validators.isEmpty()) {
+				fetchResult = pageFetcher.fetchHeader(robotsTxtUrl);
+			} else {
+				fetchResult = pageFetcher.fetchHeader(robotsTxtUrl, validators.toArray(new Header[validators.size()]));
+			}
+			int statusCode = fetchResult.statusCode();
+			long now = System.currentTimeMillis();
+			String etag = getHeader(fetchResult.responseHeaders(), "ETag");
+			String lastModified = getHeader(fetchResult.responseHeaders(), "Last-Modified");
+			if (statusCode == HttpStatus.SC_NOT_MODIFIED && stored != null) {
+				return new RobotsTxtStore.Entry(now, stored.getStatusCode(), stored.getContent(),
+						etag == null ? stored.getEtag() : etag,
+						lastModified == null ? stored.getLastModified() : lastModified);
+			}
+			if (statusCode == HttpStatus.SC_OK) {
 				Page page = new Page(robotsTxtUrl);
 				fetchResult.fetchContent(page);
+				String content = null;
 				if (Util.hasPlainTextContent(page.contentType())) {
 					try {
-						String content;
 						if (page.contentCharset() == null) {
 							content = new String(page.contentData());
 						} else {
 							content = new String(page.contentData(), page.contentCharset());
 						}
-						directives = RobotsTxtParser.parse(content, config.getUserAgentName());
 					} catch (Exception e) {
 						e.printStackTrace();
 					}
 				}
+				return new RobotsTxtStore.Entry(now, statusCode, content, etag, lastModified);
+			}
+			if (statusCode >= 100 && statusCode < 600) {
+				return new RobotsTxtStore.Entry(now, statusCode, null, null, null);
 			}
+			return null;
 		} finally {
 			if (fetchResult != null) {
 				fetchResult.discardContentIfNotConsumed();
 			}
 		}
-		if (directives == null) {
-			// We still need to have this object to keep track of the time we
-			// fetched it
-			directives = new HostDirectives();
-		}
-		synchronized (host2directivesCache) {
-			if (host2directivesCache.size() == config.getCacheSize()) {
-				String minHost = null;
-				long minAccessTime = Long.MAX_VALUE;
-				for (Entry<String, HostDirectives> entry : host2directivesCache.entrySet()) {
-					if (entry.getValue().getLastAccessTime() < minAccessTime) {
-						minAccessTime = entry.getValue().getLastAccessTime();
-						minHost = entry.getKey();
-					}
+	}
+
+	private static String getHeader(Header[] headers, String name) {
+		if (headers != null) {
+			for (Header header : headers) {
+				if (header.getName().equalsIgnoreCase(name)) {
+					return header.getValue();
 				}
-				host2directivesCache.remove(minHost);
 			}
-			host2directivesCache.put(host, directives);
 		}
-		return directives;
+		return null;
 	}
 }
@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.uci.ics.crawler4j.robotstxt;
+
+import com.sleepycat.bind.tuple.TupleBinding;
+import com.sleepycat.bind.tuple.TupleInput;
+import com.sleepycat.bind.tuple.TupleOutput;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseConfig;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.OperationStatus;
+import org.apache.log4j.Logger;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Stores the fetched robots.txt files of hosts in the crawl environment, so
+ * that a resumed crawl does not have to fetch them all again. Each entry
+ * keeps the content, the status code and the validators of the response, so
+ * that expired entries can be refreshed with conditional requests.
+ */
+public class RobotsTxtStore {
+
+	private static final Logger logger = Logger.getLogger(RobotsTxtStore.class.getName());
+
+	/**
+	 * A stored robots.txt response.
+	 */
+	public static class Entry {
+
+		private final long timeFetched;
+		private final int statusCode;
+		private final String content;
+		private final String etag;
+		private final String lastModified;
+
+		public Entry(long timeFetched, int statusCode, String content, String etag, String lastModified) {
+			this.timeFetched = timeFetched;
+			this.statusCode = statusCode;
+			this.content = content;
+			this.etag = etag;
+			this.lastModified = lastModified;
+		}
+
+		public long getTimeFetched() {
+			return timeFetched;
+		}
+
+		public int getStatusCode() {
+			return statusCode;
+		}
+
+		/**
+		 * Returns the content of robots.txt, or null if it was not fetched
+		 * successfully.
+		 */
+		public String getContent() {
+			return content;
+		}
+
+		public String getEtag() {
+			return etag;
+		}
+
+		public String getLastModified() {
+			return lastModified;
+		}
+	}
+
+	private static class EntryBinding extends TupleBinding<Entry> {
+
+		@Override
+		public Entry entryToObject(TupleInput input) {
+			return new Entry(input.readLong(), input.readInt(), input.readString(), input.readString(),
+					input.readString());
+		}
+
+		@Override
+		public void objectToEntry(Entry entry, TupleOutput output) {
+			output.writeLong(entry.getTimeFetched());
+			output.writeInt(entry.getStatusCode());
+			output.writeString(entry.getContent());
+			output.writeString(entry.getEtag());
+			output.writeString(entry.getLastModified());
+		}
+	}
+
+	protected Database robotsDB = null;
+
+	private final EntryBinding binding = new EntryBinding();
+
+	private boolean closed = false;
+
+	/**
+	 * Constructor for implementations which do not keep the entries in
+	 * Berkeley DB. These have to override all the methods which access the
+	 * database.
+	 */
+	protected RobotsTxtStore() {
+	}
+
+	public RobotsTxtStore(Environment env, boolean resumable) throws DatabaseException {
+		DatabaseConfig dbConfig = new DatabaseConfig();
+		dbConfig.setAllowCreate(true);
+		dbConfig.setTransactional(resumable);
+		dbConfig.setDeferredWrite(!resumable);
+		robotsDB = env.openDatabase(null, "RobotsTxt", dbConfig);
+	}
+
+	/**
+	 * Returns the stored entry of the given host, or null.
+	 */
+	public synchronized Entry get(String host) {
+		if (closed) {
+			return null;
+		}
+		try {
+			DatabaseEntry value = new DatabaseEntry();
+			if (robotsDB.get(null, getKey(host), value, null) == OperationStatus.SUCCESS) {
+				return binding.entryToObject(value);
+			}
+		} catch (DatabaseException e) {
+			logger.error("Error while reading robots.txt of " + host + ": " + e.getMessage());
+		}
+		return null;
+	}
+
+	public synchronized void put(String host, Entry entry) {
+		if (closed) {
+			return;
+		}
+		try {
+			DatabaseEntry value = new DatabaseEntry();
+			binding.objectToEntry(entry, value);
+			robotsDB.put(null, getKey(host), value);
+		} catch (DatabaseException e) {
+			logger.error("Error while storing robots.txt of " + host + ": " + e.getMessage());
+		}
+	}
+
+	private static DatabaseEntry getKey(String host) {
+		try {
+			return new DatabaseEntry(host.getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (robotsDB == null) {
+			return;
+		}
+		try {
+			robotsDB.close();
+		} catch (DatabaseException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,585 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package edu.uci.ics.crawler4j.url;
+
+import java.util.Arrays;
+
+/**
+ * Canonicalizes URLs in a single pass over their characters, producing the
+ * same output as {@link URLCanonicalizer#getLegacyCanonicalURL(String, String)}.
+ * It handles the common case of http and https URLs with a plain host, a
+ * normalized path and an ASCII query, and gives up on anything else, so that
+ * the legacy implementation decides. Each thread reuses its own instance, so
+ * the only allocation is the resulting string.
+ */
+public final class FastURLCanonicalizer {
+
+	/**
+	 * Queries with more parameters than this are left to the legacy
+	 * implementation, as the parameters are sorted by insertion.
+	 */
+	private static final int MAX_PARAMETERS = 64;
+
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	private static final ThreadLocal<FastURLCanonicalizer> instances = new ThreadLocal<FastURLCanonicalizer>() {
+
+		@Override
+		protected FastURLCanonicalizer initialValue() {
+			return new FastURLCanonicalizer();
+		}
+	};
+
+	/**
+	 * Holds relative URLs after they are resolved against their context.
+	 */
+	private final StringBuilder resolved = new StringBuilder(128);
+
+	private final StringBuilder result = new StringBuilder(128);
+
+	private int[] keyStarts = new int[8];
+	private int[] keyEnds = new int[8];
+	private int[] valueStarts = new int[8];
+	private int[] valueEnds = new int[8];
+	private int parameterCount;
+
+	private FastURLCanonicalizer() {
+	}
+
+	/**
+	 * Returns the canonical form of href, resolved against context if it is
+	 * relative, or null if the URL is not handled here. In that case, the
+	 * legacy implementation has to be used, which also decides whether the
+	 * URL is valid.
+	 */
+	public static String canonicalize(String href, String context) {
+		if (href == null) {
+			return null;
+		}
+		return instances.get().canonicalizeURL(href, context);
+	}
+
+	private String canonicalizeURL(String href, String context) {
+		int hrefStart = trimStart(href);
+		int hrefEnd = trimEnd(href, hrefStart);
+		if (!isPrintableAscii(href, hrefStart, hrefEnd)) {
+			return null;
+		}
+		if (getSchemeEnd(href, hrefStart, hrefEnd) >= 0) {
+			return canonicalizeAbsolute(href, hrefStart, hrefEnd);
+		}
+		if (context == null) {
+			return null;
+		}
+		int baseStart = trimStart(context);
+		int baseEnd = trimEnd(context, baseStart);
+		if (!isPrintableAscii(context, baseStart, baseEnd)) {
+			return null;
+		}
+		int baseFragment = indexOf(context, '#', baseStart, baseEnd);
+		if (baseFragment < 0) {
+			baseFragment = baseEnd;
+		}
+		if (hrefStart == hrefEnd) {
+			return canonicalizeAbsolute(context, baseStart, baseEnd);
+		}
+		char first = href.charAt(hrefStart);
+		if (first == '#') {
+			return canonicalizeAbsolute(context, baseStart, baseFragment);
+		}
+		if (first == ';') {
+			return null;
+		}
+
+		int baseSchemeEnd = getSchemeEnd(context, baseStart, baseEnd);
+		if (baseSchemeEnd < 0 || !context.startsWith("//", baseSchemeEnd + 1)) {
+			return null;
+		}
+		resolved.setLength(0);
+		if (first == '/' && hrefStart + 1 < hrefEnd && href.charAt(hrefStart + 1) == '/') {
+			// Network-path reference, which only inherits the scheme
+			resolved.append(context, baseStart, baseSchemeEnd + 1).append(href, hrefStart, hrefEnd);
+			return canonicalizeAbsolute(resolved, 0, resolved.length());
+		}
+
+		// Find the network location the way UrlResolver does: it ends at the
+		// first slash, or if there is none, at the query.
+		int locationStart = baseSchemeEnd + 3;
+		int locationEnd = indexOf(context, '/', locationStart, baseFragment);
+		int basePathStart = locationEnd;
+		if (locationEnd >= 0) {
+			if (indexOf(context, '?', locationStart, locationEnd) >= 0
+					|| indexOf(context, ';', locationStart, locationEnd) >= 0) {
+				return null;
+			}
+		} else {
+			locationEnd = indexOf(context, '?', locationStart, baseFragment);
+			if (locationEnd < 0) {
+				if (indexOf(context, ';', locationStart, baseFragment) >= 0) {
+					return null;
+				}
+				locationEnd = baseFragment;
+			}
+		}
+		int baseQuery = indexOf(context, '?', locationEnd, baseFragment);
+		if (baseQuery < 0) {
+			baseQuery = baseFragment;
+		}
+
+		if (first == '?') {
+			resolved.append(context, baseStart, baseQuery).append(href, hrefStart, hrefEnd);
+		} else if (first == '/') {
+			if (href.startsWith("/..", hrefStart)) {
+				return null;
+			}
+			resolved.append(context, baseStart, locationEnd).append(href, hrefStart, hrefEnd);
+		} else {
+			int hrefPathEnd = hrefEnd;
+			for (int i = hrefStart; i < hrefEnd; i++) {
+				char c = href.charAt(i);
+				if (c == ';') {
+					return null;
+				}
+				if (c == '?' || c == '#') {
+					hrefPathEnd = i;
+					break;
+				}
+			}
+			resolved.append(context, baseStart, locationEnd);
+			int mergedStart = resolved.length();
+			if (basePathStart < 0) {
+				resolved.append('/');
+			} else {
+				if (indexOf(context, ';', basePathStart, baseQuery) >= 0) {
+					return null;
+				}
+				int lastSlash = context.lastIndexOf('/', baseQuery - 1);
+				resolved.append(context, basePathStart, lastSlash + 1);
+			}
+			resolved.append(href, hrefStart, hrefPathEnd);
+			if (resolved.length() - mergedStart >= 3 && resolved.charAt(mergedStart + 1) == '.'
+					&& resolved.charAt(mergedStart + 2) == '.') {
+				// UrlResolver drops a leading "/..", even from "/..a"
+				return null;
+			}
+			resolved.append(href, hrefPathEnd, hrefEnd);
+		}
+		return canonicalizeAbsolute(resolved, 0, resolved.length());
+	}
+
+	/**
+	 * Canonicalizes an absolute URL the way java.net.URL parses it.
+	 */
+	private String canonicalizeAbsolute(CharSequence s, int start, int end) {
+		int fragment = indexOf(s, '#', start, end);
+		if (fragment >= 0) {
+			end = fragment;
+		}
+		result.setLength(0);
+		int defaultPort;
+		int p;
+		if (regionMatchesIgnoreCase(s, start, end, "http://")) {
+			result.append("http://");
+			defaultPort = 80;
+			p = start + 7;
+		} else if (regionMatchesIgnoreCase(s, start, end, "https://")) {
+			result.append("https://");
+			defaultPort = 443;
+			p = start + 8;
+		} else {
+			return null;
+		}
+
+		// Host and port
+		int hostStart = p;
+		int port = -1;
+		for (; p < end; p++) {
+			char c = s.charAt(p);
+			if (c == '/' || c == '?') {
+				break;
+			}
+			if (c == ':') {
+				if (p == hostStart) {
+					return null;
+				}
+				int portStart = ++p;
+				port = 0;
+				for (; p < end && isDigit(s.charAt(p)); p++) {
+					port = port * 10 + (s.charAt(p) - '0');
+				}
+				if (p == portStart || p - portStart > 5 || port > 65535
+						|| (p < end && s.charAt(p) != '/' && s.charAt(p) != '?')) {
+					return null;
+				}
+				break;
+			}
+			if (c >= 'a' && c <= 'z' || isDigit(c) || c == '.' || c == '-' || c == '_') {
+				result.append(c);
+			} else if (c >= 'A' && c <= 'Z' && c != 'I') {
+				// Lowercasing 'I' depends on the default locale
+				result.append((char) (c + ('a' - 'A')));
+			} else {
+				return null;
+			}
+		}
+		if (p == hostStart) {
+			return null;
+		}
+		if (port != -1 && port != defaultPort) {
+			result.append(':').append(port);
+		}
+
+		// Path, which has to be normalized already: no empty segments and no
+		// "." or ".." segments
+		int pathEnd = indexOf(s, '?', p, end);
+		if (pathEnd < 0) {
+			pathEnd = end;
+		}
+		if (p == pathEnd) {
+			result.append('/');
+		} else {
+			int segmentStart = p;
+			for (; p < pathEnd; p++) {
+				char c = s.charAt(p);
+				if (c == '/') {
+					if (p > segmentStart && (p == segmentStart + 1 || isDotSegment(s, segmentStart + 1, p))) {
+						return null;
+					}
+					segmentStart = p;
+					result.append(c);
+				} else if (c == '%') {
+					if (p + 2 >= pathEnd || !isHexDigit(s.charAt(p + 1)) || !isHexDigit(s.charAt(p + 2))) {
+						return null;
+					}
+					if (s.charAt(p + 1) == '7' && s.charAt(p + 2) == 'E') {
+						result.append('~');
+					} else {
+						result.append(c).append(s.charAt(p + 1)).append(s.charAt(p + 2));
+					}
+					p += 2;
+				} else if (isPathChar(c)) {
+					result.append(c);
+				} else {
+					return null;
+				}
+			}
+			if (isDotSegment(s, segmentStart + 1, pathEnd)) {
+				return null;
+			}
+		}
+
+		if (pathEnd < end && !appendQuery(s, pathEnd + 1, end)) {
+			return null;
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Appends the query with its parameters sorted by name, the last value of
+	 * each name kept, session ids dropped and names and values re-encoded.
+	 * Returns false if the query is not handled here.
+	 */
+	private boolean appendQuery(CharSequence s, int start, int end) {
+		parameterCount = 0;
+		for (int i = start; i < end;) {
+			int pairEnd = indexOf(s, '&', i, end);
+			if (pairEnd < 0) {
+				pairEnd = end;
+			}
+			if (pairEnd > i) {
+				if (parameterCount == MAX_PARAMETERS) {
+					return false;
+				}
+				int equals = indexOf(s, '=', i, pairEnd);
+				addParameter(i, equals < 0 ? pairEnd : equals, equals < 0 ? pairEnd : equals + 1, pairEnd);
+			}
+			i = pairEnd + 1;
+		}
+		sortParameters(s);
+
+		int queryStart = result.length();
+		result.append('?');
+		for (int i = 0; i < parameterCount; i++) {
+			if (i + 1 < parameterCount
+					&& compare(s, keyStarts[i], keyEnds[i], keyStarts[i + 1], keyEnds[i + 1]) == 0) {
+				// A later value for the same name replaces this one
+				continue;
+			}
+			if (isSessionId(s, keyStarts[i], keyEnds[i])) {
+				continue;
+			}
+			if (result.length() > queryStart + 1) {
+				result.append('&');
+			}
+			if (!appendEncoded(s, keyStarts[i], keyEnds[i])) {
+				return false;
+			}
+			if (valueEnds[i] > valueStarts[i]) {
+				result.append('=');
+				if (!appendEncoded(s, valueStarts[i], valueEnds[i])) {
+					return false;
+				}
+			}
+		}
+		if (result.length() == queryStart + 1) {
+			result.setLength(queryStart);
+		}
+		return true;
+	}
+
+	private void addParameter(int keyStart, int keyEnd, int valueStart, int valueEnd) {
+		if (parameterCount == keyStarts.length) {
+			int length = keyStarts.length * 2;
+			keyStarts = Arrays.copyOf(keyStarts, length);
+			keyEnds = Arrays.copyOf(keyEnds, length);
+			valueStarts = Arrays.copyOf(valueStarts, length);
+			valueEnds = Arrays.copyOf(valueEnds, length);
+		}
+		keyStarts[parameterCount] = keyStart;
+		keyEnds[parameterCount] = keyEnd;
+		valueStarts[parameterCount] = valueStart;
+		valueEnds[parameterCount] = valueEnd;
+		parameterCount++;
+	}
+
+	/**
+	 * Sorts the parameters by name. The sort is stable, so parameters with
+	 * the same name stay in the order they appear in.
+	 */
+	private void sortParameters(CharSequence s) {
+		for (int i = 1; i < parameterCount; i++) {
+			int keyStart = keyStarts[i];
+			int keyEnd = keyEnds[i];
+			int valueStart = valueStarts[i];
+			int valueEnd = valueEnds[i];
+			int j = i - 1;
+			for (; j >= 0 && compare(s, keyStarts[j], keyEnds[j], keyStart, keyEnd) > 0; j--) {
+				keyStarts[j + 1] = keyStarts[j];
+				keyEnds[j + 1] = keyEnds[j];
+				valueStarts[j + 1] = valueStarts[j];
+				valueEnds[j + 1] = valueEnds[j];
+			}
+			keyStarts[j + 1] = keyStart;
+			keyEnds[j + 1] = keyEnd;
+			valueStarts[j + 1] = valueStart;
+			valueEnds[j + 1] = valueEnd;
+		}
+	}
+
+	/**
+	 * Appends a query name or value, decoded and then encoded as RFC 3986
+	 * says. A '+' stands for itself. If the value has an invalid escape, it
+	 * is appended as it is, with only '+' encoded. Returns false if the
+	 * decoded value is not ASCII.
+	 */
+	private boolean appendEncoded(CharSequence s, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (s.charAt(i) == '%'
+					&& (i + 2 >= end || !isHexDigit(s.charAt(i + 1)) || !isHexDigit(s.charAt(i + 2)))) {
+				for (int j = start; j < end; j++) {
+					char c = s.charAt(j);
+					if (c == '+') {
+						result.append("%2B");
+					} else {
+						result.append(c);
+					}
+				}
+				return true;
+			}
+		}
+		for (int i = start; i < end; i++) {
+			char c = s.charAt(i);
+			if (c == '%') {
+				c = (char) (Character.digit(s.charAt(i + 1), 16) * 16 + Character.digit(s.charAt(i + 2), 16));
+				if (c >= 0x80) {
+					return false;
+				}
+				i += 2;
+			}
+			if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || isDigit(c) || c == '.' || c == '-' || c == '_'
+					|| c == '~') {
+				result.append(c);
+			} else if (c == ' ') {
+				result.append("%20");
+			} else {
+				result.append('%').append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+			}
+		}
+		return true;
+	}
+
+	private static boolean isSessionId(CharSequence s, int start, int end) {
+		String name;
+		if (regionEqualsIgnoreCase(s, start, end, "jsessionid")) {
+			name = "jsessionid";
+		} else if (regionEqualsIgnoreCase(s, start, end, "phpsessid")) {
+			name = "phpsessid";
+		} else if (regionEqualsIgnoreCase(s, start, end, "aspsessionid")) {
+			name = "aspsessionid";
+		} else {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			if (s.charAt(i) == 'I') {
+				// Lowercasing 'I' depends on the default locale
+				return s.subSequence(start, end).toString().toLowerCase().equals(name);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the index of the colon that ends the scheme of the URL, as
+	 * UrlResolver parses it, or -1 if it has no scheme.
+	 */
+	private static int getSchemeEnd(String s, int start, int end) {
+		int fragment = indexOf(s, '#', start, end);
+		int colon = indexOf(s, ':', start, fragment < 0 ? end : fragment);
+		if (colon <= start || !Character.isLetter(s.charAt(start))) {
+			return -1;
+		}
+		for (int i = start + 1; i < colon; i++) {
+			char c = s.charAt(i);
+			if (!Character.isLetterOrDigit(c) && c != '.' && c != '+' && c != '-') {
+				return -1;
+			}
+		}
+		return colon;
+	}
+
+	private static boolean isDotSegment(CharSequence s, int start, int end) {
+		int length = end - start;
+		return (length == 1 && s.charAt(start) == '.')
+				|| (length == 2 && s.charAt(start) == '.' && s.charAt(start + 1) == '.');
+	}
+
+	/**
+	 * Returns whether java.net.URI accepts the character in a path as it is.
+	 */
+	private static boolean isPathChar(char c) {
+		if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || isDigit(c)) {
+			return true;
+		}
+		switch (c) {
+		case '-':
+		case '.':
+		case '_':
+		case '~':
+		case '!':
+		case '$':
+		case '&':
+		case '\'':
+		case '(':
+		case ')':
+		case '*':
+		case '+':
+		case ',':
+		case ';':
+		case '=':
+		case ':':
+		case '@':
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isHexDigit(char c) {
+		return isDigit(c) || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+	}
+
+	private static boolean isPrintableAscii(String s, int start, int end) {
+		for (int i = start; i < end; i++) {
+			char c = s.charAt(i);
+			if (c < ' ' || c > '~') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the start of the string as String.trim() would leave it.
+	 */
+	private static int trimStart(String s) {
+		int start = 0;
+		while (start < s.length() && s.charAt(start) <= ' ') {
+			start++;
+		}
+		return start;
+	}
+
+	private static int trimEnd(String s, int start) {
+		int end = s.length();
+		while (end > start && s.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		return end;
+	}
+
+	private static int indexOf(CharSequence s, char c, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (s.charAt(i) == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Compares two regions the way String.compareTo compares strings.
+	 */
+	private static int compare(CharSequence s, int start1, int end1, int start2, int end2) {
+		int length1 = end1 - start1;
+		int length2 = end2 - start2;
+		int length = Math.min(length1, length2);
+		for (int i = 0; i < length; i++) {
+			char c1 = s.charAt(start1 + i);
+			char c2 = s.charAt(start2 + i);
+			if (c1 != c2) {
+				return c1 - c2;
+			}
+		}
+		return length1 - length2;
+	}
+
+	private static boolean regionMatchesIgnoreCase(CharSequence s, int start, int end, String prefix) {
+		if (end - start < prefix.length()) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			char c = s.charAt(start + i);
+			if (c >= 'A' && c <= 'Z') {
+				c = (char) (c + ('a' - 'A'));
+			}
+			if (c != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean regionEqualsIgnoreCase(CharSequence s, int start, int end, String lowerCase) {
+		return end - start == lowerCase.length() && regionMatchesIgnoreCase(s, start, end, lowerCase);
+	}
+}
@@ -41,6 +41,19 @@ public class URLCanonicalizer {
 	}
 
 	public static String getCanonicalURL(String href, String context) {
+		String canonicalURL = FastURLCanonicalizer.canonicalize(href, context);
+		if (canonicalURL != null) {
+			return canonicalURL;
+		}
+		return getLegacyCanonicalURL(href, context);
+	}
+
+	/**
+	 * The reference implementation, which resolves the URL and builds
+	 * java.net.URL and java.net.URI objects to normalize it. It is used for
+	 * the URLs which {@link FastURLCanonicalizer} does not handle.
+	 */
+	public static String getLegacyCanonicalURL(String href, String context) {
 
 		try {
 			URL canonicalURL = new URL(UrlResolver.resolveUrl(context == null ? "" : context, href));
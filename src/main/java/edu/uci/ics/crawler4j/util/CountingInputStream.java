@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from a stream and remembers the first error reading
+ * it, so that both are known after the stream is handed to code which
+ * swallows errors.
+ */
+public class CountingInputStream extends FilterInputStream {
+
+	private long count;
+	private IOException readError;
+
+	public CountingInputStream(InputStream in) {
+		super(in);
+	}
+
+	/**
+	 * Returns the number of bytes read or skipped so far.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the first error thrown while reading, or null if there was
+	 * none.
+	 */
+	public IOException getReadError() {
+		return readError;
+	}
+
+	@Override
+	public int read() throws IOException {
+		try {
+			int b = super.read();
+			if (b >= 0) {
+				count++;
+			}
+			return b;
+		} catch (IOException e) {
+			throw failed(e);
+		}
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		try {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				count += n;
+			}
+			return n;
+		} catch (IOException e) {
+			throw failed(e);
+		}
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		try {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		} catch (IOException e) {
+			throw failed(e);
+		}
+	}
+
+	@Override
+	public boolean markSupported() {
+		// A reset would count bytes twice
+		return false;
+	}
+
+	private IOException failed(IOException e) {
+		if (readError == null) {
+			readError = e;
+		}
+		return e;
+	}
+}
@@ -0,0 +1,196 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Bloom filter of strings which grows with the number of elements. Once a
+ * stage is full, a new stage with twice the capacity and half the false
+ * positive rate is added, so that the overall false positive rate stays below
+ * the requested one.
+ * <p/>
+ * This class is not thread-safe.
+ */
+public class ScalableBloomFilter {
+
+	private static final int MAGIC = 0x424c4f4d;
+
+	private static final double LN2 = Math.log(2);
+
+	private final List<Stage> stages = new ArrayList<>();
+
+	/**
+	 * @param capacity the number of elements the first stage is sized for.
+	 * @param falsePositiveRate the maximum rate of false positives.
+	 */
+	public ScalableBloomFilter(int capacity, double falsePositiveRate) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+			throw new IllegalArgumentException("Invalid false positive rate: " + falsePositiveRate);
+		}
+		stages.add(new Stage(capacity, falsePositiveRate / 2));
+	}
+
+	private ScalableBloomFilter() {
+	}
+
+	/**
+	 * Returns false if the given string has definitely not been added to this
+	 * filter.
+	 */
+	public boolean mightContain(String s) {
+		long fingerprint = Util.fingerprint(s);
+		for (int i = stages.size() - 1; i >= 0; i--) {
+			if (stages.get(i).mightContain(fingerprint)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void put(String s) {
+		Stage stage = stages.get(stages.size() - 1);
+		if (stage.count >= stage.capacity) {
+			stage = new Stage(stage.capacity * 2, stage.falsePositiveRate / 2);
+			stages.add(stage);
+		}
+		stage.put(Util.fingerprint(s));
+	}
+
+	/**
+	 * Returns the number of elements added to this filter.
+	 */
+	public long getCount() {
+		long count = 0;
+		for (Stage stage : stages) {
+			count += stage.count;
+		}
+		return count;
+	}
+
+	public void save(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(stages.size());
+			for (Stage stage : stages) {
+				out.writeLong(stage.capacity);
+				out.writeLong(stage.count);
+				out.writeDouble(stage.falsePositiveRate);
+				out.writeInt(stage.numHashes);
+				out.writeInt(stage.bits.length);
+				for (long word : stage.bits) {
+					out.writeLong(word);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public static ScalableBloomFilter load(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Invalid Bloom filter file: " + file.getAbsolutePath());
+			}
+			ScalableBloomFilter filter = new ScalableBloomFilter();
+			int numStages = in.readInt();
+			for (int i = 0; i < numStages; i++) {
+				long capacity = in.readLong();
+				long count = in.readLong();
+				double falsePositiveRate = in.readDouble();
+				int numHashes = in.readInt();
+				long[] bits = new long[in.readInt()];
+				for (int j = 0; j < bits.length; j++) {
+					bits[j] = in.readLong();
+				}
+				filter.stages.add(new Stage(capacity, count, falsePositiveRate, numHashes, bits));
+			}
+			return filter;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * A plain Bloom filter. The bit positions of an element are derived from
+	 * the two halves of its 64-bit fingerprint (double hashing).
+	 */
+	private static class Stage {
+
+		private final long capacity;
+		private final double falsePositiveRate;
+		private final int numHashes;
+		private final long numBits;
+		private final long[] bits;
+		private long count;
+
+		Stage(long capacity, double falsePositiveRate) {
+			this.capacity = capacity;
+			this.falsePositiveRate = falsePositiveRate;
+			long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (LN2 * LN2));
+			this.bits = new long[(int) Math.max(1, (optimalBits + 63) / 64)];
+			this.numBits = 64L * bits.length;
+			this.numHashes = Math.max(1, (int) Math.round((double) numBits / capacity * LN2));
+		}
+
+		Stage(long capacity, long count, double falsePositiveRate, int numHashes, long[] bits) {
+			this.capacity = capacity;
+			this.count = count;
+			this.falsePositiveRate = falsePositiveRate;
+			this.numHashes = numHashes;
+			this.bits = bits;
+			this.numBits = 64L * bits.length;
+		}
+
+		boolean mightContain(long fingerprint) {
+			long hash1 = fingerprint & 0xFFFFFFFFL;
+			long hash2 = fingerprint >>> 32;
+			for (int i = 0; i < numHashes; i++) {
+				long index = ((hash1 + i * hash2) & Long.MAX_VALUE) % numBits;
+				if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		void put(long fingerprint) {
+			long hash1 = fingerprint & 0xFFFFFFFFL;
+			long hash2 = fingerprint >>> 32;
+			for (int i = 0; i < numHashes; i++) {
+				long index = ((hash1 + i * hash2) & Long.MAX_VALUE) % numBits;
+				bits[(int) (index >>> 6)] |= 1L << index;
+			}
+			count++;
+		}
+	}
+}
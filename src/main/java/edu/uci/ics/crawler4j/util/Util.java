@@ -66,6 +66,25 @@ public class Util {
         return value;
     }
 
+    /**
+     * Returns a 64-bit fingerprint of the given string. The string is hashed
+     * with FNV-1a and the result is mixed with the MurmurHash3 finalizer, so
+     * that all bits of the fingerprint are well distributed.
+     */
+    public static long fingerprint(String s) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb53a85ec8ccbL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
     public static boolean hasBinaryContent(String contentType) {
 		if (contentType != null) {
 			String typeStr = contentType.toLowerCase();
@@ -0,0 +1,148 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.sapienapps.scrawler.crawler.CrawlConfig;
+import com.sapienapps.scrawler.fetcher.CustomFetchStatus;
+import com.sapienapps.scrawler.fetcher.PageFetchResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import edu.uci.ics.crawler4j.fetcher.AsyncPageFetcher;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.url.WebURL;
+import junit.framework.TestCase;
+import org.apache.http.concurrent.FutureCallback;
+
+/**
+ * Fetches pages of a local server with both fetchers.
+ */
+public class AsyncPageFetcherTest extends TestCase {
+
+	private static final int MAX_DOWNLOAD_SIZE = 1024;
+
+	private HttpServer server;
+	private CrawlConfig config;
+	private AsyncPageFetcher asyncPageFetcher;
+
+	@Override
+	protected void setUp() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 16);
+		server.createContext("/", new Handler());
+		server.start();
+
+		config = new CrawlConfig();
+		config.politenessDelay_$eq(0);
+		config.maxDownloadSize_$eq(MAX_DOWNLOAD_SIZE);
+		asyncPageFetcher = new AsyncPageFetcher(config);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		asyncPageFetcher.shutDown();
+		server.stop(0);
+	}
+
+	private WebURL webUrl(String path) {
+		WebURL webUrl = new WebURL();
+		webUrl.setURL("http://127.0.0.1:" + server.getAddress().getPort() + path);
+		return webUrl;
+	}
+
+	public void testFetchHeaderAsync() throws Exception {
+		final CountDownLatch completed = new CountDownLatch(1);
+		Future<PageFetchResult> future = asyncPageFetcher.fetchHeaderAsync(webUrl("/ok.html"),
+				new FutureCallback<PageFetchResult>() {
+
+					@Override
+					public void completed(PageFetchResult result) {
+						completed.countDown();
+					}
+
+					@Override
+					public void failed(Exception e) {
+					}
+
+					@Override
+					public void cancelled() {
+					}
+				});
+		PageFetchResult fetchResult = future.get(10, TimeUnit.SECONDS);
+		assertTrue(completed.await(10, TimeUnit.SECONDS));
+		assertEquals(200, fetchResult.statusCode());
+		assertNotNull(fetchResult.entity());
+		assertEquals(webUrl("/ok.html").getURL(), fetchResult.fetchedUrl());
+	}
+
+	public void testTooBigPageIsRejected() throws Exception {
+		PageFetchResult fetchResult = asyncPageFetcher.fetchHeaderAsync(webUrl("/big.html"), null)
+				.get(10, TimeUnit.SECONDS);
+		assertEquals(CustomFetchStatus.PageTooBig(), fetchResult.statusCode());
+	}
+
+	public void testShutDownFailsPendingFetches() throws Exception {
+		CrawlConfig politeConfig = new CrawlConfig();
+		politeConfig.politenessDelay_$eq(60000);
+		AsyncPageFetcher politeFetcher = new AsyncPageFetcher(politeConfig);
+		PageFetchResult first = politeFetcher.fetchHeaderAsync(webUrl("/ok.html"), null).get(10, TimeUnit.SECONDS);
+		assertEquals(200, first.statusCode());
+		first.discardContentIfNotConsumed();
+
+		// Waits a minute for its politeness slot
+		Future<PageFetchResult> second = politeFetcher.fetchHeaderAsync(webUrl("/ok.html"), null);
+		politeFetcher.shutDown();
+		assertEquals(CustomFetchStatus.UnknownError(), second.get(10, TimeUnit.SECONDS).statusCode());
+
+		// Fetches after the shutdown fail at once
+		assertEquals(CustomFetchStatus.UnknownError(), politeFetcher.fetchHeader(webUrl("/ok.html")).statusCode());
+	}
+
+	public void testSameStatusCodesAsPageFetcher() throws Exception {
+		PageFetcher pageFetcher = new PageFetcher(config);
+		try {
+			String[] paths = { "/ok.html", "/big.html", "/missing.html", "/moved.html", "/error.html" };
+			for (String path : paths) {
+				PageFetchResult expected = pageFetcher.fetchHeader(webUrl(path));
+				PageFetchResult actual = asyncPageFetcher.fetchHeader(webUrl(path));
+				assertEquals(path, expected.statusCode(), actual.statusCode());
+				assertEquals(path, expected.movedToUrl(), actual.movedToUrl());
+				expected.discardContentIfNotConsumed();
+				actual.discardContentIfNotConsumed();
+			}
+		} finally {
+			pageFetcher.shutDown();
+		}
+	}
+
+	private static class Handler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			String path = exchange.getRequestURI().getPath();
+			int status = 200;
+			byte[] body = "<html><body><a href=\"/moved.html\">moved</a></body></html>".getBytes("UTF-8");
+			if (path.equals("/big.html")) {
+				body = new byte[MAX_DOWNLOAD_SIZE * 2];
+			} else if (path.equals("/missing.html")) {
+				status = 404;
+			} else if (path.equals("/moved.html")) {
+				status = 301;
+				exchange.getResponseHeaders().add("Location", "/ok.html");
+			} else if (path.equals("/error.html")) {
+				status = 500;
+			} else if (!path.equals("/ok.html")) {
+				status = 404;
+			}
+			exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+			exchange.sendResponseHeaders(status, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sapienapps.scrawler.crawler.CrawlConfig;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseConfig;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import com.sleepycat.je.OperationStatus;
+import edu.uci.ics.crawler4j.frontier.Counters;
+import edu.uci.ics.crawler4j.util.IO;
+import edu.uci.ics.crawler4j.util.Util;
+import junit.framework.TestCase;
+
+public class CountersTest extends TestCase {
+
+	private File folder;
+	private Environment env;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = File.createTempFile("counters", "");
+		assertTrue(folder.delete());
+		assertTrue(folder.mkdir());
+		EnvironmentConfig envConfig = new EnvironmentConfig();
+		envConfig.setAllowCreate(true);
+		envConfig.setTransactional(true);
+		envConfig.setLocking(true);
+		env = new Environment(folder, envConfig);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		env.close();
+		IO.deleteFolder(folder);
+	}
+
+	private static CrawlConfig resumableConfig(int checkpointInterval) {
+		CrawlConfig config = new CrawlConfig();
+		config.resumableCrawling_$eq(true);
+		config.countersCheckpointInterval_$eq(checkpointInterval);
+		return config;
+	}
+
+	/*
+	 * Reads the value of a counter from the statistics database, or -1 if it
+	 * has not been written yet.
+	 */
+	private long getStoredValue(String name) throws Exception {
+		DatabaseConfig dbConfig = new DatabaseConfig();
+		dbConfig.setTransactional(true);
+		Database statisticsDB = env.openDatabase(null, "Statistics", dbConfig);
+		try {
+			DatabaseEntry value = new DatabaseEntry();
+			if (statisticsDB.get(null, new DatabaseEntry(name.getBytes()), value, null) != OperationStatus.SUCCESS) {
+				return -1;
+			}
+			return Util.byteArray2Long(value.getData());
+		} finally {
+			statisticsDB.close();
+		}
+	}
+
+	public void testNamedCounters() throws Exception {
+		Counters counters = new Counters(null, new CrawlConfig());
+		assertEquals(0, counters.getValue("Fetched-Bytes"));
+		counters.increment("Fetched-Bytes", 100);
+		counters.increment("Fetched-Bytes");
+		assertEquals(101, counters.getValue("Fetched-Bytes"));
+		counters.setValue("Fetched-Bytes", 7);
+		assertEquals(7, counters.getValue("Fetched-Bytes"));
+		counters.close();
+	}
+
+	public void testConcurrentIncrements() throws Exception {
+		final Counters counters = new Counters(null, new CrawlConfig());
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			Thread thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < 10000; j++) {
+						counters.increment(Counters.ReservedCounterNames.PROCESSED_PAGES);
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(80000, counters.getValue(Counters.ReservedCounterNames.PROCESSED_PAGES));
+	}
+
+	public void testRestoredFromCheckpointOnClose() throws Exception {
+		// The periodic checkpoint does not run during this test
+		CrawlConfig config = resumableConfig(3600000);
+		Counters counters = new Counters(env, config);
+		counters.increment(Counters.ReservedCounterNames.SCHEDULED_PAGES, 10);
+		counters.increment(Counters.ReservedCounterNames.PROCESSED_PAGES, 4);
+		counters.setValue("Fetched-Bytes", 2048);
+		assertEquals(-1, getStoredValue(Counters.ReservedCounterNames.SCHEDULED_PAGES));
+		counters.close();
+
+		counters = new Counters(env, config);
+		try {
+			assertEquals(10, counters.getValue(Counters.ReservedCounterNames.SCHEDULED_PAGES));
+			assertEquals(4, counters.getValue(Counters.ReservedCounterNames.PROCESSED_PAGES));
+			assertEquals(2048, counters.getValue("Fetched-Bytes"));
+
+			// Restored values are the starting point of new increments
+			counters.increment(Counters.ReservedCounterNames.PROCESSED_PAGES);
+			assertEquals(5, counters.getValue(Counters.ReservedCounterNames.PROCESSED_PAGES));
+		} finally {
+			counters.close();
+		}
+	}
+
+	public void testRestoredFromPeriodicCheckpoint() throws Exception {
+		CrawlConfig config = resumableConfig(20);
+		Counters counters = new Counters(env, config);
+		Counters restored = null;
+		try {
+			counters.increment(Counters.ReservedCounterNames.PROCESSED_PAGES, 7);
+			long deadline = System.currentTimeMillis() + 5000;
+			while (getStoredValue(Counters.ReservedCounterNames.PROCESSED_PAGES) != 7) {
+				assertTrue("No checkpoint was written", System.currentTimeMillis() < deadline);
+				Thread.sleep(10);
+			}
+
+			// Restored without closing the counters, as after a crash
+			restored = new Counters(env, config);
+			assertEquals(7, restored.getValue(Counters.ReservedCounterNames.PROCESSED_PAGES));
+		} finally {
+			if (restored != null) {
+				restored.close();
+			}
+			counters.close();
+		}
+	}
+}
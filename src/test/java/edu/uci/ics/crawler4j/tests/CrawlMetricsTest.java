@@ -0,0 +1,76 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.uci.ics.crawler4j.metrics.CrawlMetrics;
+import edu.uci.ics.crawler4j.metrics.LatencyHistogram;
+import edu.uci.ics.crawler4j.metrics.StripedCounter;
+import junit.framework.TestCase;
+
+public class CrawlMetricsTest extends TestCase {
+
+	public void testHistogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000L);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000000, histogram.getMax());
+		assertEquals(500500.0, histogram.getMean(), 0.001);
+		assertWithin(500000, histogram.getValueAtPercentile(50));
+		assertWithin(990000, histogram.getValueAtPercentile(99));
+		assertEquals(1000000, histogram.getValueAtPercentile(100));
+	}
+
+	public void testSmallValuesAreExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 8; i++) {
+			histogram.record(i);
+		}
+		assertEquals(3, histogram.getValueAtPercentile(50));
+		assertEquals(0, new LatencyHistogram().getValueAtPercentile(50));
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue("Expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 8);
+	}
+
+	public void testConcurrentUpdates() throws Exception {
+		final StripedCounter counter = new StripedCounter();
+		final LatencyHistogram histogram = new LatencyHistogram();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			Thread thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < 10000; j++) {
+						counter.add(2);
+						histogram.record(j);
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(160000, counter.sum());
+		assertEquals(80000, histogram.getCount());
+		assertEquals(9999, histogram.getMax());
+	}
+
+	public void testStatusCodesAndDocIds() {
+		CrawlMetrics metrics = new CrawlMetrics();
+		metrics.recordStatusCode(200);
+		metrics.recordStatusCode(200);
+		metrics.recordStatusCode(404);
+		metrics.recordDocIdLookups(10, 4);
+		assertEquals(2, metrics.getStatusCodeCount(200));
+		assertEquals(2, metrics.getStatusCodeCounts().size());
+		assertEquals(0.4, metrics.getDocIdHitRate(), 0.0001);
+		assertEquals(-1, metrics.getFrontierQueueLength());
+	}
+}
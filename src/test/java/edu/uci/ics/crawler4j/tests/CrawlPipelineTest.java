@@ -0,0 +1,118 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.sapienapps.scrawler.crawler.CrawlConfig;
+import com.sapienapps.scrawler.crawler.Page;
+import edu.uci.ics.crawler4j.crawler.CrawlPipeline;
+import edu.uci.ics.crawler4j.crawler.WebCrawler;
+import edu.uci.ics.crawler4j.frontier.Frontier;
+import edu.uci.ics.crawler4j.frontier.OffHeapDocIDServer;
+import edu.uci.ics.crawler4j.url.WebURL;
+import junit.framework.TestCase;
+
+public class CrawlPipelineTest extends TestCase {
+
+	private static final int PAGES = 200;
+
+	/**
+	 * Records the pages which reach the last stage. Parsing is slow, so that
+	 * pages are still queued when the pipeline is shut down, and every tenth
+	 * page fails to parse.
+	 */
+	private static class RecordingPipeline extends CrawlPipeline {
+
+		final Set<Integer> visited = Collections.synchronizedSet(new HashSet<Integer>());
+
+		RecordingPipeline(Frontier frontier, int queueSize) {
+			super(frontier, queueSize);
+		}
+
+		@Override
+		protected boolean process(WebCrawler<?> crawler, Stage stage, Page page) {
+			int docid = page.url().getDocid();
+			switch (stage) {
+			case PARSE:
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return docid % 10 != 0;
+			case LINKS:
+				return true;
+			default:
+				assertTrue("Visited twice: " + docid, visited.add(docid));
+				return false;
+			}
+		}
+	}
+
+	public void testShutdownDrainsEveryStage() throws Exception {
+		CrawlConfig config = new CrawlConfig();
+		config.inMemoryFrontier_$eq(true);
+		Frontier frontier = new Frontier(null, config, new OffHeapDocIDServer(config, null));
+		for (int docid = 1; docid <= PAGES; docid++) {
+			WebURL webUrl = new WebURL();
+			webUrl.setURL("http://www.example.com/" + docid + ".html");
+			webUrl.setDocid(docid);
+			frontier.schedule(webUrl);
+		}
+		final List<WebURL> urls = new ArrayList<>();
+		frontier.getNextURLs(PAGES, urls);
+		assertEquals(PAGES, frontier.getNumberOfInFlightPages());
+
+		final RecordingPipeline pipeline = new RecordingPipeline(frontier, 2);
+		Map<CrawlPipeline.Stage, List<Thread>> workers = new EnumMap<>(CrawlPipeline.Stage.class);
+		for (CrawlPipeline.Stage stage : CrawlPipeline.Stage.values()) {
+			List<Thread> threads = new ArrayList<>();
+			for (int i = 0; i < 2; i++) {
+				Thread thread = new Thread(pipeline.newWorker(new WebCrawler<Object>(), stage));
+				thread.start();
+				threads.add(thread);
+			}
+			workers.put(stage, threads);
+		}
+
+		List<Thread> crawlers = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			final int crawler = i;
+			Thread thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						for (int j = crawler; j < urls.size(); j += 4) {
+							pipeline.submit(new Page(urls.get(j)));
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			thread.start();
+			crawlers.add(thread);
+		}
+
+		// The shutdown sequence of CrawlController
+		for (Thread thread : crawlers) {
+			thread.join();
+		}
+		for (CrawlPipeline.Stage stage : CrawlPipeline.Stage.values()) {
+			pipeline.stop(stage);
+			for (Thread thread : workers.get(stage)) {
+				thread.join(10000);
+				assertFalse(stage + " worker did not exit", thread.isAlive());
+			}
+		}
+
+		assertEquals(PAGES - PAGES / 10, pipeline.visited.size());
+		assertEquals(0, frontier.getNumberOfInFlightPages());
+	}
+}
@@ -0,0 +1,131 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.sapienapps.scrawler.crawler.CrawlConfig;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import edu.uci.ics.crawler4j.frontier.DocIDServer;
+import edu.uci.ics.crawler4j.util.IO;
+import junit.framework.TestCase;
+
+public class DocIDServerTest extends TestCase {
+
+	private static final List<String> SEEN = Arrays.asList("http://www.example.com/b.html",
+			"http://www.example.com/d.html");
+
+	// Unsorted, with seen and new URLs which both occur more than once
+	private static final List<String> BATCH = Arrays.asList("http://www.example.com/e.html",
+			"http://www.example.com/d.html", "http://www.example.com/a.html", "http://www.example.com/e.html",
+			"http://www.example.com/b.html", "http://www.example.com/c.html", "http://www.example.com/d.html",
+			"http://www.example.com/a.html");
+
+	private File folder;
+	private CrawlConfig config;
+	private Environment batchEnv;
+	private Environment singleEnv;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = File.createTempFile("docids", "");
+		assertTrue(folder.delete());
+		assertTrue(folder.mkdir());
+		config = new CrawlConfig();
+		config.crawlStorageFolder_$eq(folder.getAbsolutePath());
+		batchEnv = openEnvironment("batch");
+		singleEnv = openEnvironment("single");
+	}
+
+	private Environment openEnvironment(String name) throws Exception {
+		File envHome = new File(folder, name);
+		assertTrue(envHome.mkdir());
+		EnvironmentConfig envConfig = new EnvironmentConfig();
+		envConfig.setAllowCreate(true);
+		envConfig.setTransactional(true);
+		return new Environment(envHome, envConfig);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		batchEnv.close();
+		singleEnv.close();
+		IO.deleteFolder(folder);
+	}
+
+	/*
+	 * Resolves the batch with one server and url by url with another, both
+	 * starting with the same seen URLs.
+	 */
+	private void assertBatchMatchesSingleUrls() throws Exception {
+		DocIDServer batch = new DocIDServer(batchEnv, config);
+		DocIDServer single = new DocIDServer(singleEnv, config);
+		try {
+			for (String url : SEEN) {
+				batch.getNewDocID(url);
+				single.getNewDocID(url);
+			}
+
+			int[] docIds = batch.getDocIds(BATCH);
+			assertEquals(BATCH.size(), docIds.length);
+			for (int i = 0; i < docIds.length; i++) {
+				assertEquals(BATCH.get(i), single.getDocId(BATCH.get(i)), docIds[i]);
+			}
+
+			docIds = batch.getNewDocIDs(BATCH);
+			assertEquals(BATCH.size(), docIds.length);
+			for (int i = 0; i < docIds.length; i++) {
+				assertEquals(BATCH.get(i), single.getNewDocID(BATCH.get(i)), docIds[i]);
+			}
+			assertEquals(5, batch.getDocCount());
+			assertEquals(single.getDocCount(), batch.getDocCount());
+
+			// A second batch only finds seen URLs
+			assertTrue(Arrays.equals(docIds, batch.getNewDocIDs(BATCH)));
+			assertTrue(Arrays.equals(docIds, batch.getDocIds(BATCH)));
+			assertEquals(5, batch.getDocCount());
+		} finally {
+			batch.close();
+			single.close();
+		}
+	}
+
+	public void testBatchMatchesSingleUrls() throws Exception {
+		assertBatchMatchesSingleUrls();
+	}
+
+	public void testBatchMatchesSingleUrlsWithBloomFilter() throws Exception {
+		config.seenUrlBloomFilter_$eq(true);
+		config.seenUrlBloomFilterCapacity_$eq(1000);
+		assertBatchMatchesSingleUrls();
+	}
+
+	public void testEmptyBatch() throws Exception {
+		DocIDServer server = new DocIDServer(batchEnv, config);
+		try {
+			List<String> urls = Collections.emptyList();
+			assertEquals(0, server.getDocIds(urls).length);
+			assertEquals(0, server.getNewDocIDs(urls).length);
+			assertEquals(0, server.getDocCount());
+		} finally {
+			server.close();
+		}
+	}
+
+	public void testCloseTwice() throws Exception {
+		config.resumableCrawling_$eq(true);
+		config.seenUrlBloomFilter_$eq(true);
+		config.seenUrlBloomFilterCapacity_$eq(1000);
+		DocIDServer server = new DocIDServer(batchEnv, config);
+		assertEquals(1, server.getNewDocID("http://www.example.com/a.html"));
+		server.close();
+		File bloomFilterFile = new File(folder, "docids.bloom");
+		assertTrue(bloomFilterFile.delete());
+
+		// Nothing is saved once the server is closed
+		server.close();
+		assertFalse(bloomFilterFile.exists());
+	}
+}
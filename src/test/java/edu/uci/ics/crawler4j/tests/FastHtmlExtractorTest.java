@@ -0,0 +1,76 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import edu.uci.ics.crawler4j.parser.ExtractedHtml;
+import edu.uci.ics.crawler4j.parser.ExtractedUrlAnchorPair;
+import edu.uci.ics.crawler4j.parser.FastHtmlExtractor;
+import junit.framework.TestCase;
+
+public class FastHtmlExtractorTest extends TestCase {
+
+	private static ExtractedHtml extract(FastHtmlExtractor extractor, String html, boolean keepText) throws Exception {
+		return extractor.extract(new ByteArrayInputStream(html.getBytes("UTF-8")), "UTF-8", keepText);
+	}
+
+	public void testLinksAndAnchors() throws Exception {
+		String html = "<html><head><title>The  Title</title><base href='http://www.example.com/dir/'>"
+				+ "<link rel=stylesheet href=style.css></head>"
+				+ "<BODY><a href=\"a.html?x=1&amp;y=2\">First <b>link</b></a>"
+				+ "<!-- <a href=\"commented.html\">no</a> -->"
+				+ "<script>var s = '<a href=\"script.html\">';</script>"
+				+ "<img src=\"image.png\"><iframe src='frame.html'></iframe>"
+				+ "<a name=\"anchor\">not a link</a><A HREF=b.html>Second</A></body></html>";
+		ExtractedHtml extractedHtml = extract(new FastHtmlExtractor(), html, false);
+		assertEquals("The  Title", extractedHtml.getTitle());
+		assertEquals("http://www.example.com/dir/", extractedHtml.getBaseUrl());
+		assertNull(extractedHtml.getText());
+
+		List<ExtractedUrlAnchorPair> urls = extractedHtml.getOutgoingUrls();
+		assertEquals(5, urls.size());
+		assertEquals("style.css", urls.get(0).getHref());
+		assertEquals("a.html?x=1&y=2", urls.get(1).getHref());
+		assertEquals("First link", urls.get(1).getAnchor());
+		assertEquals("image.png", urls.get(2).getHref());
+		assertEquals("frame.html", urls.get(3).getHref());
+		assertEquals("b.html", urls.get(4).getHref());
+		assertEquals("Second", urls.get(4).getAnchor());
+	}
+
+	public void testLinkElementHasNoAnchorText() throws Exception {
+		String html = "<html><body><link rel=stylesheet href=style.css>Some text <a name=top>Top</a> <a href=a.html>A</a> more</body></html>";
+		List<ExtractedUrlAnchorPair> urls = extract(new FastHtmlExtractor(), html, false).getOutgoingUrls();
+		assertEquals(2, urls.size());
+		assertEquals("style.css", urls.get(0).getHref());
+		assertNull(urls.get(0).getAnchor());
+		assertEquals("A", urls.get(1).getAnchor());
+	}
+
+	public void testScriptEndsOnlyAtItsEndTag() throws Exception {
+		String html = "<html><body><script>var s = '</scripty><a href=\"no1.html\">';"
+				+ "var t = '</script_x><a href=\"no2.html\">';</SCRIPT ><a href=yes.html>Yes</a></body></html>";
+		List<ExtractedUrlAnchorPair> urls = extract(new FastHtmlExtractor(), html, false).getOutgoingUrls();
+		assertEquals(1, urls.size());
+		assertEquals("yes.html", urls.get(0).getHref());
+	}
+
+	public void testTextAndMeta() throws Exception {
+		String html = "<html><head><meta charset=\"ISO-8859-1\">"
+				+ "<meta http-equiv=\"refresh\" content=\"0; url=http://www.example.com/moved\">"
+				+ "<style>p { color: red; }</style></head>"
+				+ "<body><p>Fish &amp; chips &#233;</p></body></html>";
+		FastHtmlExtractor extractor = new FastHtmlExtractor();
+		ExtractedHtml extractedHtml = extract(extractor, html, true);
+		assertEquals("Fish & chips \u00e9", extractedHtml.getText());
+		assertEquals("ISO-8859-1", extractedHtml.getCharset());
+		assertEquals(1, extractedHtml.getOutgoingUrls().size());
+		assertEquals("http://www.example.com/moved", extractedHtml.getOutgoingUrls().get(0).getHref());
+
+		// The extractor is reused between pages
+		extractedHtml = extract(extractor, "<p>Other <a href=x.html>page", true);
+		assertEquals("Other page", extractedHtml.getText());
+		assertNull(extractedHtml.getTitle());
+		assertEquals(1, extractedHtml.getOutgoingUrls().size());
+	}
+}
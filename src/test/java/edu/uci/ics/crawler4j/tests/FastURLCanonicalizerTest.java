@@ -0,0 +1,144 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.util.Random;
+
+import edu.uci.ics.crawler4j.url.FastURLCanonicalizer;
+import edu.uci.ics.crawler4j.url.URLCanonicalizer;
+import junit.framework.TestCase;
+
+/**
+ * Checks that the canonicalizer gives exactly the same results as the legacy
+ * implementation.
+ */
+public class FastURLCanonicalizerTest extends TestCase {
+
+	private static final String[] SCHEMES = { "http://", "HTTP://", "https://", "Https://", "ftp://", "mailto:",
+			"http:", "" };
+	private static final String[] HOSTS = { "www.example.com", "Example.COM", "a-b.c_d.org", "localhost",
+			"WWW.IBM.COM", "", "user@host.com", "[::1]", "x.com.", "exa mple.com", "127.0.0.1" };
+	private static final String[] PORTS = { "", "", "", ":80", ":443", ":8080", ":", ":0080", ":99999", ":8a" };
+	private static final String[] SEGMENTS = { "a", "B", "index.html", ".", "..", "", "%7E", "%7e", "~x",
+			"a b", "%", "%2", "%zz", "x;y", "a:b", "!$&'()*+,=@", "|", "\u00e4", "..a", "%41%2F" };
+	private static final String[] TOKENS = { "a", "B", "q", "", "jsessionid", "JSESSIONID", "PHPSESSID",
+			"AspSessionId", "%41", "%C3%A4", "a+b", "a*b", "~", "%7E", "100%", "x%2", "%-1", "a b", "/", "?",
+			"\u00e4", "=", "%2B", "%20", "x.y-z_" };
+	private static final String[] FRAGMENTS = { "", "", "#", "#frag", "#a?b=c" };
+	private static final String[] RELATIVE = { "", "#x", "?q=1", "?", "/abs/path", "/", "//other.com/x",
+			"rel/path.html", "../up", "./here", "a", ";p", "mailto:x@example.com", "javascript:void(0)", "..a",
+			"/..a", "/../a", "a?b=c#d", " a.html ", "a;x", "b/c/", "?b=2&a=1" };
+
+	private static String canonicalize(String href, String context) {
+		try {
+			return URLCanonicalizer.getCanonicalURL(href, context);
+		} catch (RuntimeException e) {
+			return e.getClass().getName();
+		}
+	}
+
+	private static String canonicalizeLegacy(String href, String context) {
+		try {
+			return URLCanonicalizer.getLegacyCanonicalURL(href, context);
+		} catch (RuntimeException e) {
+			return e.getClass().getName();
+		}
+	}
+
+	private static void assertSameAsLegacy(String href, String context) {
+		assertEquals("href: [" + href + "], context: [" + context + "]", canonicalizeLegacy(href, context),
+				canonicalize(href, context));
+	}
+
+	private static String pick(Random random, String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+
+	private static String randomURL(Random random) {
+		return randomURL(random, pick(random, SCHEMES));
+	}
+
+	private static String randomURL(Random random, String scheme) {
+		StringBuilder sb = new StringBuilder();
+		if (random.nextInt(10) == 0) {
+			sb.append(' ');
+		}
+		sb.append(scheme).append(pick(random, HOSTS)).append(pick(random, PORTS));
+		int segments = random.nextInt(5);
+		for (int i = 0; i < segments; i++) {
+			sb.append('/').append(pick(random, SEGMENTS));
+		}
+		if (random.nextInt(3) > 0) {
+			sb.append('?');
+			int parameters = random.nextInt(6);
+			for (int i = 0; i < parameters; i++) {
+				if (i > 0 || random.nextInt(5) == 0) {
+					sb.append('&');
+				}
+				sb.append(pick(random, TOKENS));
+				if (random.nextInt(4) > 0) {
+					sb.append('=').append(pick(random, TOKENS));
+				}
+			}
+		}
+		sb.append(pick(random, FRAGMENTS));
+		if (random.nextInt(10) == 0) {
+			sb.append('\t');
+		}
+		return sb.toString();
+	}
+
+	public void testSameAsLegacy() {
+		String[] urls = { "http://www.example.com/display?category=foo/bar+baz", "http://www.example.com/?q=a+b",
+				"http://HOSTNAME.com", "http://www.example.com/index.html?&", "http://www.example.com:80/bar.html",
+				"http://www.example.com/%7Eusername/", "http://www.example.com//A//B/index.html",
+				"http://www.example.com/../a/b/../c/./d.html", "http://foo.bar.com?baz=1",
+				"http://www.example.com/index.html?&c=d&e=f&a=b", "http://www.example.com/index.html?q=a b",
+				"http://www.example.com/search?width=100%&height=100%", "https://www.example.com:443/",
+				"https://www.example.com:8443/a?b=1&b=2&a", "http://www.example.com/a?JSESSIONID=1&x=2",
+				"http://www.example.com/a?=v&k=", "http://www.example.com/a?x=%C3%A4", "http://www.example.com/a?x=*~",
+				"http://www.example.com/a?B=1&a=2&_=3", "http://www.example.com:0080/", "http://a.com?x=/y",
+				"http://www.example.com/a;jsessionid=1?x", "  http://www.example.com/a\t", "http://www.example.com#f" };
+		for (String url : urls) {
+			assertSameAsLegacy(url, null);
+		}
+		String[] contexts = { "http://foo.bar/mydir/myfile", "http://foo.bar", "http://foo.bar/", "http://foo.bar?x=1",
+				"http://foo.bar/a/b?x=1#f", "HTTPS://Foo.Bar:8443/a/b/", "http://a.com?x=/y", "http://foo.bar/a;p/b",
+				"ftp://foo.bar/a" };
+		for (String context : contexts) {
+			for (String href : RELATIVE) {
+				assertSameAsLegacy(href, context);
+			}
+		}
+	}
+
+	public void testRandomURLsSameAsLegacy() {
+		Random random = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			assertSameAsLegacy(randomURL(random), null);
+		}
+		for (int i = 0; i < 20000; i++) {
+			// UrlResolver never returns for some contexts without a network
+			// location, so the contexts always have one
+			String context = randomURL(random, SCHEMES[random.nextInt(5)]);
+			String href = random.nextBoolean() ? pick(random, RELATIVE) : randomURL(random);
+			assertSameAsLegacy(href, context);
+		}
+	}
+
+	public void testCommonURLsAreHandled() {
+		assertEquals("http://www.example.com/a/b.html?a=1&b=2",
+				FastURLCanonicalizer.canonicalize("http://www.Example.com:80/a/b.html?b=2&a=1#top", null));
+		assertEquals("https://www.example.com/",
+				FastURLCanonicalizer.canonicalize("https://www.example.com", null));
+		assertEquals("http://foo.bar/mydir/other.html?x=%2B",
+				FastURLCanonicalizer.canonicalize("other.html?x=+", "http://foo.bar/mydir/myfile"));
+		assertEquals("http://foo.bar/x", FastURLCanonicalizer.canonicalize("/x", "http://foo.bar/mydir/myfile"));
+		assertEquals("http://other.com/", FastURLCanonicalizer.canonicalize("//other.com", "http://foo.bar/"));
+		assertEquals("http://foo.bar/mydir/myfile?page=2",
+				FastURLCanonicalizer.canonicalize("?page=2", "http://foo.bar/mydir/myfile"));
+
+		// Left to the legacy implementation
+		assertNull(FastURLCanonicalizer.canonicalize("../a.html", "http://foo.bar/mydir/myfile"));
+		assertNull(FastURLCanonicalizer.canonicalize("mailto:someone@example.com", null));
+		assertNull(FastURLCanonicalizer.canonicalize("http://www.example.com/\u00e4", null));
+	}
+}
@@ -0,0 +1,150 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.sapienapps.scrawler.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.frontier.Frontier;
+import edu.uci.ics.crawler4j.frontier.OffHeapDocIDServer;
+import edu.uci.ics.crawler4j.url.WebURL;
+import junit.framework.TestCase;
+
+public class FrontierTest extends TestCase {
+
+	private static WebURL webUrl(String url, int docid) {
+		WebURL webUrl = new WebURL();
+		webUrl.setURL(url);
+		webUrl.setDocid(docid);
+		return webUrl;
+	}
+
+	public void testIdleOnceAllUrlsAreProcessed() throws Exception {
+		CrawlConfig config = new CrawlConfig();
+		config.inMemoryFrontier_$eq(true);
+		final Frontier frontier = new Frontier(null, config, new OffHeapDocIDServer(config, null));
+		frontier.schedule(webUrl("http://www.example.com/1.html", 1));
+		frontier.schedule(webUrl("http://www.example.com/2.html", 2));
+
+		List<WebURL> urls = new ArrayList<>();
+		frontier.getNextURLs(10, urls);
+		assertEquals(2, urls.size());
+		assertEquals(2, frontier.getNumberOfInFlightPages());
+
+		// A crawler which waits for more URLs, so the queue is known to be
+		// empty.
+		Thread waiting = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				frontier.getNextURLs(10, new ArrayList<WebURL>());
+			}
+		});
+		waiting.start();
+
+		frontier.setProcessed(urls.get(0));
+		assertFalse(frontier.awaitIdle(50, TimeUnit.MILLISECONDS));
+		frontier.setProcessed(urls.get(1));
+		assertTrue(frontier.awaitIdle(5, TimeUnit.SECONDS));
+
+		frontier.finish();
+		waiting.join();
+	}
+
+	public void testWaitingCrawlersGetNewUrls() throws Exception {
+		CrawlConfig config = new CrawlConfig();
+		config.inMemoryFrontier_$eq(true);
+		final Frontier frontier = new Frontier(null, config, new OffHeapDocIDServer(config, null));
+		final List<WebURL> received = Collections.synchronizedList(new ArrayList<WebURL>());
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			Thread thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					frontier.getNextURLs(10, received);
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		Thread.sleep(100);
+
+		long start = System.nanoTime();
+		frontier.schedule(webUrl("http://www.example.com/1.html", 1));
+		while (received.isEmpty() && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) {
+			Thread.sleep(1);
+		}
+		assertEquals(1, received.size());
+
+		frontier.finish();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(1, received.size());
+	}
+
+	public void testAssignmentSizeAdapts() throws Exception {
+		CrawlConfig config = new CrawlConfig();
+		config.inMemoryFrontier_$eq(true);
+		config.minAssignmentSize_$eq(2);
+		config.maxAssignmentSize_$eq(100);
+		Frontier frontier = new Frontier(null, config, new OffHeapDocIDServer(config, null));
+		frontier.setNumberOfCrawlers(10);
+		assertEquals(2, frontier.getAssignmentSize(0));
+
+		List<WebURL> urls = new ArrayList<>();
+		for (int i = 1; i <= 500; i++) {
+			urls.add(webUrl("http://www.example.com/" + i + ".html", i));
+		}
+		frontier.scheduleAll(urls);
+		// A fair share of the queue
+		assertEquals(50, frontier.getAssignmentSize(0));
+		// No more than can be processed in about two seconds
+		assertEquals(4, frontier.getAssignmentSize(TimeUnit.MILLISECONDS.toNanos(500)));
+
+		frontier.setNumberOfCrawlers(1);
+		assertEquals(100, frontier.getAssignmentSize(TimeUnit.MILLISECONDS.toNanos(1)));
+		frontier.getNextURLs(100, new ArrayList<WebURL>());
+		assertEquals(100, frontier.getAssignmentSize(0));
+	}
+
+	public void testReturnedUrlsAreHandedOutAgain() throws Exception {
+		CrawlConfig config = new CrawlConfig();
+		config.inMemoryFrontier_$eq(true);
+		final Frontier frontier = new Frontier(null, config, new OffHeapDocIDServer(config, null));
+		for (int docid = 1; docid <= 3; docid++) {
+			frontier.schedule(webUrl("http://www.example.com/" + docid + ".html", docid));
+		}
+		List<WebURL> urls = new ArrayList<>();
+		frontier.getNextURLs(10, urls);
+		assertEquals(3, urls.size());
+
+		// The crawler processed the first URL and died
+		frontier.setProcessed(urls.get(0));
+		frontier.returnURLs(urls.subList(1, 3));
+		assertEquals(0, frontier.getNumberOfInFlightPages());
+		assertFalse(frontier.awaitIdle(50, TimeUnit.MILLISECONDS));
+
+		List<WebURL> returned = new ArrayList<>();
+		frontier.getNextURLs(10, returned);
+		assertEquals(2, returned.size());
+		assertEquals(2, returned.get(0).getDocid());
+		assertEquals(3, returned.get(1).getDocid());
+		Thread waiting = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				frontier.getNextURLs(10, new ArrayList<WebURL>());
+			}
+		});
+		waiting.start();
+		frontier.setProcessed(returned.get(0));
+		frontier.setProcessed(returned.get(1));
+		assertTrue(frontier.awaitIdle(5, TimeUnit.SECONDS));
+
+		frontier.finish();
+		waiting.join();
+	}
+}
@@ -0,0 +1,179 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.File;
+import java.util.List;
+
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import com.sleepycat.je.Transaction;
+import edu.uci.ics.crawler4j.frontier.HostWorkQueues;
+import edu.uci.ics.crawler4j.frontier.InProcessPagesDB;
+import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.IO;
+import junit.framework.TestCase;
+
+public class HostWorkQueuesTest extends TestCase {
+
+	private File folder;
+	private Environment env;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = File.createTempFile("frontier", "");
+		assertTrue(folder.delete());
+		assertTrue(folder.mkdir());
+		EnvironmentConfig envConfig = new EnvironmentConfig();
+		envConfig.setAllowCreate(true);
+		envConfig.setTransactional(true);
+		envConfig.setLocking(true);
+		env = new Environment(folder, envConfig);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		env.close();
+		IO.deleteFolder(folder);
+	}
+
+	/**
+	 * Fails the second page that a take moves in process.
+	 */
+	private static class FailingInProcessPagesDB extends InProcessPagesDB {
+
+		private int puts;
+
+		public FailingInProcessPagesDB(Environment env) {
+			super(env);
+		}
+
+		@Override
+		protected void put(WebURL url, Transaction txn) throws DatabaseException {
+			if (++puts == 2) {
+				throw new DatabaseException("Failed to store " + url.getURL()) {
+				};
+			}
+			super.put(url, txn);
+		}
+	}
+
+	private static WebURL webUrl(String host, int docid) {
+		WebURL webUrl = new WebURL();
+		webUrl.setURL("http://" + host + "/" + docid + ".html");
+		webUrl.setDocid(docid);
+		return webUrl;
+	}
+
+	private static void assertUrls(List<WebURL> urls, int... docids) {
+		assertEquals(docids.length, urls.size());
+		for (int i = 0; i < docids.length; i++) {
+			assertEquals(docids[i], urls.get(i).getDocid());
+		}
+	}
+
+	public void testOneUrlPerHostInReadyTimeOrder() throws Exception {
+		HostWorkQueues queues = new HostWorkQueues(env, "PendingURLsDB", false, 0);
+		try {
+			queues.put(webUrl("www.b.com", 4));
+			queues.put(webUrl("www.a.com", 3));
+			queues.put(webUrl("www.a.com", 1));
+			queues.put(webUrl("www.c.com", 2));
+			assertEquals(3, queues.getNumberOfHosts());
+
+			// Every host is ready, so they come in host order, and a.com only
+			// once even though its window opens again at once
+			assertUrls(queues.take(10, null), 1, 4, 2);
+			assertEquals(1, queues.getNumberOfHosts());
+			assertUrls(queues.take(10, null), 3);
+			assertEquals(0, queues.getNumberOfHosts());
+			assertEquals(0, queues.getLength());
+		} finally {
+			queues.close();
+		}
+	}
+
+	public void testPolitenessGap() throws Exception {
+		HostWorkQueues queues = new HostWorkQueues(env, "PendingURLsDB", false, 60000);
+		try {
+			queues.put(webUrl("www.a.com", 1));
+			queues.put(webUrl("www.a.com", 2));
+			queues.put(webUrl("www.a.com", 3));
+			queues.put(webUrl("www.b.com", 4));
+			assertUrls(queues.take(10, null), 1, 4);
+
+			// A new host is ready before a.com, whose window opens in a minute
+			queues.put(webUrl("www.c.com", 5));
+			assertUrls(queues.take(10, null), 5);
+
+			// No host is ready, so the one which becomes ready first is
+			// returned anyway, and only that one
+			assertUrls(queues.take(10, null), 2);
+			assertUrls(queues.take(10, null), 3);
+			assertTrue(queues.take(10, null).isEmpty());
+		} finally {
+			queues.close();
+		}
+	}
+
+	public void testGetAndDeleteMatchTake() throws Exception {
+		HostWorkQueues queues = new HostWorkQueues(env, "PendingURLsDB", false, 60000);
+		try {
+			queues.put(webUrl("www.a.com", 1));
+			queues.put(webUrl("www.a.com", 2));
+			queues.put(webUrl("www.b.com", 3));
+			assertUrls(queues.get(10), 1, 3);
+			queues.delete(2);
+			assertEquals(1, queues.getLength());
+			assertEquals(1, queues.getNumberOfHosts());
+			assertUrls(queues.take(10, null), 2);
+		} finally {
+			queues.close();
+		}
+	}
+
+	public void testReopenResumableQueue() throws Exception {
+		HostWorkQueues queues = new HostWorkQueues(env, "PendingURLsDB", true, 0);
+		queues.put(webUrl("www.a.com", 1));
+		queues.put(webUrl("www.a.com", 2));
+		queues.put(webUrl("www.b.com", 3));
+		queues.put(webUrl("www.c.com", 4));
+		assertUrls(queues.take(1, null), 1);
+		queues.close();
+
+		queues = new HostWorkQueues(env, "PendingURLsDB", true, 0);
+		try {
+			assertEquals(3, queues.getLength());
+			assertEquals(3, queues.getNumberOfHosts());
+			assertUrls(queues.take(10, null), 2, 3, 4);
+			assertEquals(0, queues.getNumberOfHosts());
+		} finally {
+			queues.close();
+		}
+	}
+
+	public void testFailedTakeLeavesQueuesUnchanged() throws Exception {
+		HostWorkQueues queues = new HostWorkQueues(env, "PendingURLsDB", true, 60000);
+		InProcessPagesDB inProcessPages = new FailingInProcessPagesDB(env);
+		try {
+			queues.put(webUrl("www.a.com", 1));
+			queues.put(webUrl("www.a.com", 2));
+			queues.put(webUrl("www.b.com", 3));
+			try {
+				queues.take(10, inProcessPages);
+				fail("The take should have failed");
+			} catch (DatabaseException e) {
+				// expected
+			}
+			assertEquals(3, queues.getLength());
+			assertEquals(2, queues.getNumberOfHosts());
+			assertEquals(0, inProcessPages.getLength());
+
+			// Neither host has been delayed by the failed take
+			assertUrls(queues.take(10, inProcessPages), 1, 3);
+			assertEquals(2, inProcessPages.getLength());
+		} finally {
+			inProcessPages.close();
+			queues.close();
+		}
+	}
+}
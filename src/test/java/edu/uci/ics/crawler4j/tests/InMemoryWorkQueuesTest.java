@@ -0,0 +1,59 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.util.List;
+
+import edu.uci.ics.crawler4j.frontier.InMemoryHostWorkQueues;
+import edu.uci.ics.crawler4j.frontier.InMemoryWorkQueues;
+import edu.uci.ics.crawler4j.url.WebURL;
+import junit.framework.TestCase;
+
+public class InMemoryWorkQueuesTest extends TestCase {
+
+	private static WebURL webUrl(String url, int docid, short depth, byte priority) {
+		WebURL webUrl = new WebURL();
+		webUrl.setURL(url);
+		webUrl.setDocid(docid);
+		webUrl.setDepth(depth);
+		webUrl.setPriority(priority);
+		return webUrl;
+	}
+
+	public void testOrder() {
+		InMemoryWorkQueues queues = new InMemoryWorkQueues();
+		queues.put(webUrl("http://www.example.com/3.html", 3, (short) 1, (byte) 0));
+		queues.put(webUrl("http://www.example.com/2.html", 2, (short) 2, (byte) 0));
+		queues.put(webUrl("http://www.example.com/1.html", 1, (short) 1, (byte) 0));
+		queues.put(webUrl("http://www.example.com/4.html", 4, (short) 0, (byte) 1));
+		queues.put(webUrl("http://www.example.com/1.html", 1, (short) 1, (byte) 0));
+		assertEquals(4, queues.getLength());
+
+		assertEquals(1, queues.get(1).get(0).getDocid());
+		List<WebURL> urls = queues.take(3, null);
+		assertEquals(3, urls.size());
+		assertEquals(1, urls.get(0).getDocid());
+		assertEquals(3, urls.get(1).getDocid());
+		assertEquals(2, urls.get(2).getDocid());
+		assertEquals(1, queues.getLength());
+		queues.delete(5);
+		assertEquals(0, queues.getLength());
+	}
+
+	public void testHostsTakeTurns() {
+		InMemoryHostWorkQueues queues = new InMemoryHostWorkQueues(60000);
+		queues.put(webUrl("http://a.example.com/1.html", 1, (short) 0, (byte) 0));
+		queues.put(webUrl("http://a.example.com/2.html", 2, (short) 0, (byte) 0));
+		queues.put(webUrl("http://b.example.com/3.html", 3, (short) 0, (byte) 0));
+		assertEquals(2, queues.getNumberOfHosts());
+
+		List<WebURL> urls = queues.take(10, null);
+		assertEquals(2, urls.size());
+		assertEquals(1, urls.get(0).getDocid());
+		assertEquals(3, urls.get(1).getDocid());
+		assertEquals(1, queues.getLength());
+
+		urls = queues.take(10, null);
+		assertEquals(1, urls.size());
+		assertEquals(2, urls.get(0).getDocid());
+		assertEquals(0, queues.getNumberOfHosts());
+	}
+}
@@ -0,0 +1,116 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import com.sapienapps.scrawler.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.frontier.OffHeapDocIDServer;
+import edu.uci.ics.crawler4j.util.IO;
+import junit.framework.TestCase;
+
+public class OffHeapDocIDServerTest extends TestCase {
+
+	private File folder;
+	private CrawlConfig config;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = File.createTempFile("docids", "");
+		assertTrue(folder.delete());
+		config = new CrawlConfig();
+		config.crawlStorageFolder_$eq(folder.getAbsolutePath());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (folder.exists()) {
+			IO.deleteFolder(folder);
+		}
+	}
+
+	public void testAssignAndLookup() throws Exception {
+		OffHeapDocIDServer server = new OffHeapDocIDServer(config, null, 16);
+		assertEquals(-1, server.getDocId("http://www.example.com/"));
+		assertEquals(1, server.getNewDocID("http://www.example.com/"));
+		assertEquals(2, server.getNewDocID("http://www.example.com/a.html"));
+		assertEquals(1, server.getNewDocID("http://www.example.com/"));
+		assertEquals(2, server.getDocId("http://www.example.com/a.html"));
+		assertTrue(server.isSeenBefore("http://www.example.com/a.html"));
+		assertFalse(server.isSeenBefore("http://www.example.com/b.html"));
+		assertEquals(2, server.getDocCount());
+	}
+
+	public void testBatchMatchesSingleUrls() throws Exception {
+		List<String> urls = Arrays.asList("http://www.example.com/c.html", "http://www.example.com/a.html",
+				"http://www.example.com/c.html", "http://www.example.com/b.html", "http://www.example.com/a.html");
+		OffHeapDocIDServer batch = new OffHeapDocIDServer(config, null, 16);
+		OffHeapDocIDServer single = new OffHeapDocIDServer(config, null, 16);
+		batch.getNewDocID("http://www.example.com/b.html");
+		single.getNewDocID("http://www.example.com/b.html");
+
+		int[] docIds = batch.getDocIds(urls);
+		for (int i = 0; i < docIds.length; i++) {
+			assertEquals(single.getDocId(urls.get(i)), docIds[i]);
+		}
+		docIds = batch.getNewDocIDs(urls);
+		for (int i = 0; i < docIds.length; i++) {
+			assertEquals(single.getNewDocID(urls.get(i)), docIds[i]);
+		}
+		assertEquals(docIds[0], docIds[2]);
+		assertEquals(docIds[1], docIds[4]);
+		assertEquals(3, batch.getDocCount());
+		assertTrue(Arrays.equals(docIds, batch.getDocIds(urls)));
+	}
+
+	public void testGrowsBeyondInitialCapacity() throws Exception {
+		OffHeapDocIDServer server = new OffHeapDocIDServer(config, folder, 16);
+		for (int i = 1; i <= 50000; i++) {
+			assertEquals(i, server.getNewDocID("http://www.example.com/" + i + ".html"));
+		}
+		for (int i = 1; i <= 50000; i++) {
+			assertEquals(i, server.getDocId("http://www.example.com/" + i + ".html"));
+		}
+		assertEquals(50000, server.getDocCount());
+		server.close();
+	}
+
+	public void testAddUrlAndDocId() throws Exception {
+		OffHeapDocIDServer server = new OffHeapDocIDServer(config, null, 16);
+		server.addUrlAndDocId("http://www.example.com/", 7);
+		server.addUrlAndDocId("http://www.example.com/", 7);
+		assertEquals(8, server.getNewDocID("http://www.example.com/a.html"));
+		try {
+			server.addUrlAndDocId("http://www.example.com/b.html", 5);
+			fail("Smaller docid should be rejected");
+		} catch (Exception expected) {
+			// expected
+		}
+		try {
+			server.addUrlAndDocId("http://www.example.com/", 10);
+			fail("URL with a docid should be rejected");
+		} catch (Exception expected) {
+			// expected
+		}
+	}
+
+	public void testResumeFromFolder() throws Exception {
+		config.resumableCrawling_$eq(true);
+		OffHeapDocIDServer server = new OffHeapDocIDServer(config, folder, 16);
+		for (int i = 1; i <= 1000; i++) {
+			server.getNewDocID("http://www.example.com/" + i + ".html");
+		}
+		server.close();
+
+		server = new OffHeapDocIDServer(config, folder, 16);
+		assertEquals(1000, server.getDocCount());
+		assertEquals(500, server.getDocId("http://www.example.com/500.html"));
+		assertEquals(1001, server.getNewDocID("http://www.example.com/new.html"));
+		server.close();
+
+		config.resumableCrawling_$eq(false);
+		server = new OffHeapDocIDServer(config, folder, 16);
+		assertEquals(0, server.getDocCount());
+		server.close();
+	}
+}
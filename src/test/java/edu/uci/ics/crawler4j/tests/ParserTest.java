@@ -0,0 +1,116 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+import com.sapienapps.scrawler.crawler.CrawlConfig;
+import com.sapienapps.scrawler.crawler.Page;
+import edu.uci.ics.crawler4j.parser.HtmlParseData;
+import edu.uci.ics.crawler4j.parser.Parser;
+import edu.uci.ics.crawler4j.url.WebURL;
+import junit.framework.TestCase;
+
+public class ParserTest extends TestCase {
+
+	private static final String HTML = "<html><head><title>Title</title></head>"
+			+ "<body><p>Some text</p><a href=\"a.html\">A</a> <a href=\"b.html\">B</a></body></html>";
+
+	private CrawlConfig config;
+
+	@Override
+	protected void setUp() throws Exception {
+		config = new CrawlConfig();
+		config.htmlExtractor_$eq("fast");
+	}
+
+	private static Page page() {
+		WebURL url = new WebURL();
+		url.setURL("http://www.example.com/index.html");
+		Page page = new Page(url);
+		page.contentType_$eq("text/html");
+		page.contentCharset_$eq("UTF-8");
+		return page;
+	}
+
+	private static InputStream stream(String html) throws Exception {
+		return new ByteArrayInputStream(html.getBytes("UTF-8"));
+	}
+
+	private HtmlParseData parse() throws Exception {
+		Page page = page();
+		page.contentData_$eq(HTML.getBytes("UTF-8"));
+		assertTrue(new Parser(config).parse(page, page.url().getURL()));
+		return (HtmlParseData) page.parseData();
+	}
+
+	public void testParseKeepsTextAndHtml() throws Exception {
+		HtmlParseData parseData = parse();
+		assertEquals("Title", parseData.getTitle());
+		assertTrue(parseData.getText().contains("Some text"));
+		assertEquals(HTML, parseData.getHtml());
+		assertEquals(2, parseData.getOutgoingUrls().size());
+		assertEquals("http://www.example.com/a.html", parseData.getOutgoingUrls().get(0).getURL());
+	}
+
+	public void testParseKeepText() throws Exception {
+		config.parseKeepText_$eq(false);
+		HtmlParseData parseData = parse();
+		assertNull(parseData.getText());
+		assertEquals(HTML, parseData.getHtml());
+		assertEquals(2, parseData.getOutgoingUrls().size());
+	}
+
+	public void testParseKeepHtml() throws Exception {
+		config.parseKeepHtml_$eq(false);
+		HtmlParseData parseData = parse();
+		assertNull(parseData.getHtml());
+		assertTrue(parseData.getText().contains("Some text"));
+		assertEquals(2, parseData.getOutgoingUrls().size());
+	}
+
+	public void testStreamingParse() throws Exception {
+		config.streamingParse_$eq(true);
+		config.parseKeepHtml_$eq(false);
+		config.validate();
+
+		Page page = page();
+		assertTrue(new Parser(config).parseHtml(page, page.url().getURL(), stream(HTML)));
+		assertNull(page.contentData());
+		HtmlParseData parseData = (HtmlParseData) page.parseData();
+		assertEquals("Title", parseData.getTitle());
+		assertTrue(parseData.getText().contains("Some text"));
+		assertNull(parseData.getHtml());
+		assertEquals(2, parseData.getOutgoingUrls().size());
+	}
+
+	public void testStreamingParseCanNotKeepHtml() throws Exception {
+		config.streamingParse_$eq(true);
+		try {
+			config.validate();
+			fail("Streaming parse should require parseKeepHtml to be disabled");
+		} catch (Exception expected) {
+			// expected
+		}
+	}
+
+	public void testReadErrorFailsParse() throws Exception {
+		config.streamingParse_$eq(true);
+		config.parseKeepHtml_$eq(false);
+		InputStream failing = new InputStream() {
+
+			@Override
+			public int read() throws IOException {
+				throw new IOException("Connection reset");
+			}
+		};
+		// The first link is read before the connection fails
+		InputStream content = new SequenceInputStream(stream(HTML.substring(0, HTML.indexOf("<a href=\"b.html\""))),
+				failing);
+
+		Page page = page();
+		assertFalse(new Parser(config).parseHtml(page, page.url().getURL(), content));
+		assertNull(page.parseData());
+	}
+}
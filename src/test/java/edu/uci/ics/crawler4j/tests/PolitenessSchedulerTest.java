@@ -0,0 +1,62 @@
+package edu.uci.ics.crawler4j.tests;
+
+import edu.uci.ics.crawler4j.fetcher.PolitenessScheduler;
+import edu.uci.ics.crawler4j.url.WebURL;
+import junit.framework.TestCase;
+
+public class PolitenessSchedulerTest extends TestCase {
+
+	private static WebURL webUrl(String url) {
+		WebURL webUrl = new WebURL();
+		webUrl.setURL(url);
+		return webUrl;
+	}
+
+	public void testHostKey() {
+		assertEquals("www.example.com", PolitenessScheduler.getHostKey(webUrl("http://www.example.com/a.html")));
+		assertEquals("example.com", PolitenessScheduler.getHostKey(webUrl("http://example.com/")));
+		assertEquals("www.example.ac.jp", PolitenessScheduler.getHostKey(webUrl("http://www.example.ac.jp/")));
+	}
+
+	public void testSameHostIsDelayed() {
+		PolitenessScheduler scheduler = new PolitenessScheduler(1000);
+		long first = scheduler.reserve("www.example.com");
+		long second = scheduler.reserve("www.example.com");
+		long third = scheduler.reserve("www.example.com");
+		assertEquals(first + 1000, second);
+		assertEquals(second + 1000, third);
+		assertEquals(third + 1000, scheduler.getNextFetchTime("www.example.com"));
+	}
+
+	public void testDifferentHostsAreNotDelayed() {
+		PolitenessScheduler scheduler = new PolitenessScheduler(60000);
+		long start = System.currentTimeMillis();
+		scheduler.reserve("a.example.com");
+		long other = scheduler.reserve("b.example.com");
+		assertTrue(other - start < 60000);
+		assertEquals(0, scheduler.getNextFetchTime("c.example.com"));
+	}
+
+	public void testPurgeOnlyRemovesExpiredHosts() throws Exception {
+		PolitenessScheduler scheduler = new PolitenessScheduler(1);
+		scheduler.reserve("a.example.com");
+		Thread.sleep(5);
+		scheduler.purgeExpired();
+		assertEquals(0, scheduler.getNextFetchTime("a.example.com"));
+
+		scheduler = new PolitenessScheduler(60000);
+		long fetchTime = scheduler.reserve("a.example.com");
+		scheduler.purgeExpired();
+		assertEquals(fetchTime + 60000, scheduler.getNextFetchTime("a.example.com"));
+	}
+
+	public void testHostDelay() {
+		PolitenessScheduler scheduler = new PolitenessScheduler(100);
+		scheduler.setHostDelay("slow.example.com", 5000);
+		scheduler.setHostDelay("fast.example.com", 10);
+		assertEquals(5000, scheduler.getDelay("slow.example.com"));
+		assertEquals(100, scheduler.getDelay("fast.example.com"));
+		long first = scheduler.reserve("slow.example.com");
+		assertEquals(first + 5000, scheduler.reserve("slow.example.com"));
+	}
+}
@@ -0,0 +1,76 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.uci.ics.crawler4j.robotstxt.HostDirectives;
+import edu.uci.ics.crawler4j.robotstxt.RobotsTxtCache;
+import junit.framework.TestCase;
+
+public class RobotsTxtCacheTest extends TestCase {
+
+	private static Callable<HostDirectives> loader(final AtomicInteger loads) {
+		return new Callable<HostDirectives>() {
+
+			@Override
+			public HostDirectives call() throws Exception {
+				loads.incrementAndGet();
+				Thread.sleep(50);
+				return new HostDirectives();
+			}
+		};
+	}
+
+	public void testSingleFlight() throws Exception {
+		final RobotsTxtCache cache = new RobotsTxtCache(10);
+		final AtomicInteger loads = new AtomicInteger();
+		final List<HostDirectives> results = new ArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			Thread thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					HostDirectives directives = cache.get("www.example.com", loader(loads));
+					synchronized (results) {
+						results.add(directives);
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(1, loads.get());
+		assertEquals(8, results.size());
+		for (HostDirectives directives : results) {
+			assertSame(results.get(0), directives);
+		}
+	}
+
+	public void testEvictionGivesUsedHostsASecondChance() {
+		RobotsTxtCache cache = new RobotsTxtCache(3);
+		AtomicInteger loads = new AtomicInteger();
+		cache.get("a.example.com", loader(loads));
+		cache.get("b.example.com", loader(loads));
+		cache.get("c.example.com", loader(loads));
+		// Clears the reference bits of a, b and c, and evicts a
+		cache.get("d.example.com", loader(loads));
+		assertEquals(3, cache.size());
+		assertEquals(4, loads.get());
+
+		cache.get("b.example.com", loader(loads));
+		assertEquals(4, loads.get());
+		// c is not used since, so it goes before b
+		cache.get("e.example.com", loader(loads));
+		cache.get("b.example.com", loader(loads));
+		assertEquals(5, loads.get());
+		cache.get("a.example.com", loader(loads));
+		assertEquals(6, loads.get());
+		assertEquals(3, cache.size());
+	}
+}
@@ -0,0 +1,84 @@
+package edu.uci.ics.crawler4j.tests;
+
+import edu.uci.ics.crawler4j.robotstxt.HostDirectives;
+import edu.uci.ics.crawler4j.robotstxt.RobotsTxtParser;
+import junit.framework.TestCase;
+
+public class RobotsTxtParserTest extends TestCase {
+
+	public void testPrefixRules() {
+		HostDirectives directives = RobotsTxtParser.parse(
+				"User-agent: *\nDisallow: /private/\nDisallow: /tmp*\nAllow: /private/public/\n", "crawler4j");
+		assertTrue(directives.allows("/"));
+		assertTrue(directives.allows("/index.html"));
+		assertFalse(directives.allows("/private/"));
+		assertFalse(directives.allows("/private/a.html"));
+		assertTrue(directives.allows("/private/public/a.html"));
+		assertFalse(directives.allows("/tmp"));
+		assertFalse(directives.allows("/tmpfile"));
+		assertTrue(directives.allows("/tm"));
+	}
+
+	public void testLongestMatchWins() {
+		HostDirectives directives = RobotsTxtParser.parse(
+				"User-agent: *\nAllow: /p\nDisallow: /page\nAllow: /page/a\nDisallow: /\n", "crawler4j");
+		assertTrue(directives.allows("/p"));
+		assertFalse(directives.allows("/page.html"));
+		assertTrue(directives.allows("/page/a.html"));
+		assertFalse(directives.allows("/other"));
+
+		// An allow rule wins over a disallow rule of the same length
+		directives = RobotsTxtParser.parse("User-agent: *\nDisallow: /folder\nAllow: /folder\n", "crawler4j");
+		assertTrue(directives.allows("/folder/page"));
+	}
+
+	public void testWildcardsAndAnchors() {
+		HostDirectives directives = RobotsTxtParser.parse(
+				"User-agent: *\nDisallow: /*.php$\nDisallow: /*/secret/\nDisallow: /exact$\nAllow: /*/secret/ok*\n",
+				"crawler4j");
+		assertFalse(directives.allows("/index.php"));
+		assertFalse(directives.allows("/a/b/index.php"));
+		assertTrue(directives.allows("/index.php?x=1"));
+		assertTrue(directives.allows("/index.php5"));
+		assertFalse(directives.allows("/a/secret/x.html"));
+		assertFalse(directives.allows("/a/b/secret/x.html"));
+		assertTrue(directives.allows("/a/secret/ok.html"));
+		assertTrue(directives.allows("/secret/x.html"));
+		assertFalse(directives.allows("/exact"));
+		assertTrue(directives.allows("/exact/"));
+	}
+
+	public void testWildcardOnlyRules() {
+		HostDirectives directives = RobotsTxtParser.parse("User-agent: *\nDisallow: *\n", "crawler4j");
+		assertFalse(directives.allows("/"));
+		assertFalse(directives.allows("/index.html"));
+
+		directives = RobotsTxtParser.parse("User-agent: *\nDisallow: **\nAllow: /a\n", "crawler4j");
+		assertFalse(directives.allows("/index.html"));
+		assertTrue(directives.allows("/a.html"));
+	}
+
+	public void testTrailingWildcardsCountInLength() {
+		// The disallow rule is longer as written
+		HostDirectives directives = RobotsTxtParser.parse("User-agent: *\nDisallow: /tmp*\nAllow: /tmp\n",
+				"crawler4j");
+		assertFalse(directives.allows("/tmpfile"));
+
+		directives = RobotsTxtParser.parse("User-agent: *\nDisallow: /tmp*\nAllow: /tmpf\n", "crawler4j");
+		assertTrue(directives.allows("/tmpfile"));
+		assertFalse(directives.allows("/tmpa"));
+	}
+
+	public void testUserAgentGroupsAndCrawlDelay() {
+		String content = "User-agent: other\nDisallow: /\n\n"
+				+ "User-agent: Crawler4j\nUser-agent: someone-else\nDisallow: /mine/ # comment\nCrawl-delay: 2.5\n\n"
+				+ "<p>User-agent: *</p>\nDisallow: /all/\n";
+		HostDirectives directives = RobotsTxtParser.parse(content, "crawler4j");
+		assertTrue(directives.allows("/index.html"));
+		assertFalse(directives.allows("/mine/a.html"));
+		assertFalse(directives.allows("/all/a.html"));
+		assertEquals(2500, directives.getCrawlDelay());
+
+		assertNull(RobotsTxtParser.parse("User-agent: other\nDisallow: /\n", "crawler4j"));
+	}
+}
@@ -0,0 +1,215 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sapienapps.scrawler.crawler.CrawlConfig;
+import com.sapienapps.scrawler.fetcher.PageFetchResult;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.fetcher.PolitenessScheduler;
+import edu.uci.ics.crawler4j.robotstxt.RobotsTxtConfig;
+import edu.uci.ics.crawler4j.robotstxt.RobotsTxtServer;
+import edu.uci.ics.crawler4j.robotstxt.RobotsTxtStore;
+import edu.uci.ics.crawler4j.url.WebURL;
+import junit.framework.TestCase;
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+
+public class RobotsTxtServerTest extends TestCase {
+
+	/**
+	 * Answers every request with a 404, after the latch is released.
+	 */
+	private static class SlowPageFetcher extends PageFetcher {
+
+		final AtomicInteger fetches = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(1);
+
+		SlowPageFetcher() {
+			super(new CrawlConfig());
+		}
+
+		@Override
+		public PageFetchResult fetchHeader(WebURL webUrl) {
+			fetches.incrementAndGet();
+			try {
+				latch.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			PageFetchResult fetchResult = new PageFetchResult();
+			fetchResult.statusCode_$eq(404);
+			return fetchResult;
+		}
+	}
+
+	private static WebURL webUrl(String url) {
+		WebURL webUrl = new WebURL();
+		webUrl.setURL(url);
+		return webUrl;
+	}
+
+	public void testPrefetchDoesNotBlock() throws Exception {
+		SlowPageFetcher pageFetcher = new SlowPageFetcher();
+		RobotsTxtServer server = new RobotsTxtServer(new RobotsTxtConfig(), pageFetcher);
+		try {
+			long start = System.nanoTime();
+			server.prefetch(webUrl("http://www.example.com/a.html"));
+			server.prefetch(webUrl("http://www.example.com/b.html"));
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+			pageFetcher.latch.countDown();
+			assertTrue(server.allows(webUrl("http://www.example.com/c.html")));
+			assertEquals(1, pageFetcher.fetches.get());
+		} finally {
+			server.shutDown();
+			pageFetcher.shutDown();
+		}
+	}
+
+	/**
+	 * Keeps the entries in a map instead of Berkeley DB.
+	 */
+	private static class MemoryRobotsTxtStore extends RobotsTxtStore {
+
+		final Map<String, Entry> entries = new HashMap<>();
+		final AtomicInteger lookups = new AtomicInteger();
+
+		@Override
+		public synchronized Entry get(String host) {
+			lookups.incrementAndGet();
+			return entries.get(host);
+		}
+
+		@Override
+		public synchronized void put(String host, Entry entry) {
+			entries.put(host, entry);
+		}
+	}
+
+	/**
+	 * Answers every request with a 304 and remembers the request headers.
+	 */
+	private static class NotModifiedPageFetcher extends PageFetcher {
+
+		final AtomicInteger fetches = new AtomicInteger();
+		volatile Header[] requestHeaders;
+
+		NotModifiedPageFetcher() {
+			super(new CrawlConfig());
+		}
+
+		@Override
+		public PageFetchResult fetchHeader(WebURL webUrl, Header[] requestHeaders) {
+			fetches.incrementAndGet();
+			this.requestHeaders = requestHeaders;
+			PageFetchResult fetchResult = new PageFetchResult();
+			fetchResult.statusCode_$eq(304);
+			fetchResult.responseHeaders_$eq(new Header[] { new BasicHeader("ETag", "\"v2\"") });
+			return fetchResult;
+		}
+	}
+
+	public void testFreshStoredEntryIsNotFetched() throws Exception {
+		NotModifiedPageFetcher pageFetcher = new NotModifiedPageFetcher();
+		MemoryRobotsTxtStore store = new MemoryRobotsTxtStore();
+		store.put("www.example.com", new RobotsTxtStore.Entry(System.currentTimeMillis(), 200,
+				"User-agent: *\nDisallow: /private/\n", "\"v1\"", null));
+		RobotsTxtServer server = new RobotsTxtServer(new RobotsTxtConfig(), pageFetcher);
+		server.setStore(store);
+		try {
+			assertFalse(server.allows(webUrl("http://www.example.com/private/a.html")));
+			assertTrue(server.allows(webUrl("http://www.example.com/public/a.html")));
+			assertEquals(0, pageFetcher.fetches.get());
+		} finally {
+			server.shutDown();
+			pageFetcher.shutDown();
+		}
+	}
+
+	public void testExpiredStoredEntryIsRevalidated() throws Exception {
+		NotModifiedPageFetcher pageFetcher = new NotModifiedPageFetcher();
+		MemoryRobotsTxtStore store = new MemoryRobotsTxtStore();
+		store.put("www.example.com", new RobotsTxtStore.Entry(0, 200, "User-agent: *\nDisallow: /private/\n",
+				"\"v1\"", "Thu, 01 Jan 1970 00:00:00 GMT"));
+		RobotsTxtServer server = new RobotsTxtServer(new RobotsTxtConfig(), pageFetcher);
+		server.setStore(store);
+		try {
+			assertFalse(server.allows(webUrl("http://www.example.com/private/a.html")));
+			assertEquals(1, pageFetcher.fetches.get());
+			assertEquals(2, pageFetcher.requestHeaders.length);
+			assertEquals("If-None-Match", pageFetcher.requestHeaders[0].getName());
+			assertEquals("\"v1\"", pageFetcher.requestHeaders[0].getValue());
+			assertEquals("If-Modified-Since", pageFetcher.requestHeaders[1].getName());
+
+			RobotsTxtStore.Entry entry = store.get("www.example.com");
+			assertTrue(entry.getTimeFetched() > 0);
+			assertEquals("\"v2\"", entry.getEtag());
+			assertEquals("Thu, 01 Jan 1970 00:00:00 GMT", entry.getLastModified());
+			assertEquals("User-agent: *\nDisallow: /private/\n", entry.getContent());
+		} finally {
+			server.shutDown();
+			pageFetcher.shutDown();
+		}
+	}
+
+	public void testCrawlDelayIsDroppedOnEviction() throws Exception {
+		NotModifiedPageFetcher pageFetcher = new NotModifiedPageFetcher();
+		MemoryRobotsTxtStore store = new MemoryRobotsTxtStore();
+		long now = System.currentTimeMillis();
+		store.put("a.example.com", new RobotsTxtStore.Entry(now, 200, "User-agent: *\nCrawl-delay: 5\n", null, null));
+		store.put("b.example.com", new RobotsTxtStore.Entry(now, 200, "User-agent: *\nDisallow:\n", null, null));
+		RobotsTxtConfig config = new RobotsTxtConfig();
+		config.setCacheSize(1);
+		RobotsTxtServer server = new RobotsTxtServer(config, pageFetcher);
+		server.setStore(store);
+		PolitenessScheduler scheduler = pageFetcher.getPolitenessScheduler();
+		long politenessDelay = scheduler.getDelay("b.example.com");
+		try {
+			assertTrue(server.allows(webUrl("http://a.example.com/a.html")));
+			assertEquals(5000, scheduler.getDelay("a.example.com"));
+
+			// Evicts a.example.com, whose delay is set again when its
+			// robots.txt is
+			assertTrue(server.allows(webUrl("http://b.example.com/a.html")));
+			assertEquals(politenessDelay, scheduler.getDelay("a.example.com"));
+			assertTrue(server.allows(webUrl("http://a.example.com/b.html")));
+			assertEquals(5000, scheduler.getDelay("a.example.com"));
+		} finally {
+			server.shutDown();
+			pageFetcher.shutDown();
+		}
+	}
+
+	/**
+	 * Checks that a robots.txt with no rules for us allows everything and is
+	 * only looked up once.
+	 */
+	private void assertAllowsAllAndIsCached(String content) throws Exception {
+		NotModifiedPageFetcher pageFetcher = new NotModifiedPageFetcher();
+		MemoryRobotsTxtStore store = new MemoryRobotsTxtStore();
+		store.put("www.example.com", new RobotsTxtStore.Entry(System.currentTimeMillis(), 200, content, null, null));
+		RobotsTxtServer server = new RobotsTxtServer(new RobotsTxtConfig(), pageFetcher);
+		server.setStore(store);
+		try {
+			assertTrue(server.allows(webUrl("http://www.example.com/a.html")));
+			assertTrue(server.allows(webUrl("http://www.example.com/private/b.html")));
+			assertEquals(1, store.lookups.get());
+			assertEquals(0, pageFetcher.fetches.get());
+		} finally {
+			server.shutDown();
+			pageFetcher.shutDown();
+		}
+	}
+
+	public void testEmptyRobotsTxtIsCached() throws Exception {
+		assertAllowsAllAndIsCached("");
+	}
+
+	public void testRobotsTxtForOtherAgentsIsCached() throws Exception {
+		assertAllowsAllAndIsCached("User-agent: other\nDisallow: /\n");
+	}
+}
@@ -0,0 +1,54 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.File;
+
+import edu.uci.ics.crawler4j.util.ScalableBloomFilter;
+import junit.framework.TestCase;
+
+public class ScalableBloomFilterTest extends TestCase {
+
+	public void testNoFalseNegativesWhileGrowing() {
+		ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.01);
+		for (int i = 0; i < 10000; i++) {
+			filter.put("http://www.example.com/" + i + ".html");
+		}
+		for (int i = 0; i < 10000; i++) {
+			assertTrue(filter.mightContain("http://www.example.com/" + i + ".html"));
+		}
+		assertEquals(10000, filter.getCount());
+	}
+
+	public void testFalsePositiveRate() {
+		ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+		for (int i = 0; i < 20000; i++) {
+			filter.put("http://www.example.com/" + i + ".html");
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 20000; i++) {
+			if (filter.mightContain("http://www.example.org/" + i + ".html")) {
+				falsePositives++;
+			}
+		}
+		assertTrue("Too many false positives: " + falsePositives, falsePositives < 20000 * 0.02);
+	}
+
+	public void testSaveAndLoad() throws Exception {
+		ScalableBloomFilter filter = new ScalableBloomFilter(10, 0.01);
+		for (int i = 0; i < 100; i++) {
+			filter.put("http://www.example.com/" + i + ".html");
+		}
+		File file = File.createTempFile("seen", ".bloom");
+		try {
+			filter.save(file);
+			ScalableBloomFilter loaded = ScalableBloomFilter.load(file);
+			assertEquals(100, loaded.getCount());
+			for (int i = 0; i < 100; i++) {
+				assertTrue(loaded.mightContain("http://www.example.com/" + i + ".html"));
+			}
+			loaded.put("http://www.example.com/new.html");
+			assertTrue(loaded.mightContain("http://www.example.com/new.html"));
+		} finally {
+			assertTrue(file.delete());
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import edu.uci.ics.crawler4j.frontier.TieredWorkQueues;
+import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.IO;
+import junit.framework.TestCase;
+
+public class TieredWorkQueuesTest extends TestCase {
+
+	private static final int HEAD_SIZE = 50;
+
+	private File folder;
+	private Environment env;
+	private TieredWorkQueues queues;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = File.createTempFile("frontier", "");
+		assertTrue(folder.delete());
+		assertTrue(folder.mkdir());
+		EnvironmentConfig envConfig = new EnvironmentConfig();
+		envConfig.setAllowCreate(true);
+		envConfig.setTransactional(false);
+		envConfig.setLocking(false);
+		env = new Environment(folder, envConfig);
+		queues = new TieredWorkQueues(env, "PendingURLsDB", HEAD_SIZE);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		queues.close();
+		env.close();
+		IO.deleteFolder(folder);
+	}
+
+	private static WebURL webUrl(int docid) {
+		WebURL webUrl = new WebURL();
+		webUrl.setURL("http://www.example.com/" + docid + ".html");
+		webUrl.setDocid(docid);
+		webUrl.setDepth((short) (docid % 5));
+		webUrl.setPriority((byte) (docid % 3));
+		return webUrl;
+	}
+
+	/*
+	 * The order of WorkQueues: priority, then depth, then docid.
+	 */
+	private static int compare(WebURL a, WebURL b) {
+		if (a.getPriority() != b.getPriority()) {
+			return a.getPriority() - b.getPriority();
+		}
+		if (a.getDepth() != b.getDepth()) {
+			return a.getDepth() - b.getDepth();
+		}
+		return a.getDocid() - b.getDocid();
+	}
+
+	private static List<Integer> shuffledDocids(int from, int to, long seed) {
+		List<Integer> docids = new ArrayList<>();
+		for (int docid = from; docid <= to; docid++) {
+			docids.add(docid);
+		}
+		Collections.shuffle(docids, new Random(seed));
+		return docids;
+	}
+
+	/*
+	 * Takes everything in small batches, checking the order and the length.
+	 */
+	private List<WebURL> drain() throws Exception {
+		List<WebURL> drained = new ArrayList<>();
+		long length = queues.getLength();
+		while (true) {
+			List<WebURL> urls = queues.take(7, null);
+			if (urls.isEmpty()) {
+				break;
+			}
+			for (WebURL url : urls) {
+				if (!drained.isEmpty()) {
+					assertTrue("Out of order: " + url.getDocid(), compare(drained.get(drained.size() - 1), url) < 0);
+				}
+				drained.add(url);
+			}
+			length -= urls.size();
+			assertEquals(length, queues.getLength());
+		}
+		assertEquals(0, queues.getLength());
+		return drained;
+	}
+
+	public void testSpillAndRefillKeepOrder() throws Exception {
+		for (int docid : shuffledDocids(1, 1000, 42)) {
+			queues.put(webUrl(docid));
+		}
+		assertEquals(1000, queues.getLength());
+
+		// Duplicates, both in memory and in the database, are not counted
+		queues.put(webUrl(1));
+		queues.put(webUrl(999));
+		assertEquals(1000, queues.getLength());
+
+		List<WebURL> drained = drain();
+		assertEquals(1000, drained.size());
+		Set<Integer> docids = new HashSet<>();
+		for (WebURL url : drained) {
+			assertTrue("Duplicate: " + url.getDocid(), docids.add(url.getDocid()));
+		}
+	}
+
+	public void testPutWhileDraining() throws Exception {
+		List<Integer> docids = shuffledDocids(1, 600, 7);
+		for (int docid : docids.subList(0, 300)) {
+			queues.put(webUrl(docid));
+		}
+		Set<Integer> taken = new HashSet<>();
+		for (int i = 0; i < 10; i++) {
+			for (WebURL url : queues.take(10, null)) {
+				assertTrue(taken.add(url.getDocid()));
+			}
+		}
+		assertEquals(200, queues.getLength());
+
+		// These keys fall on both sides of the boundary between memory and
+		// the database
+		for (int docid : docids.subList(300, 600)) {
+			queues.put(webUrl(docid));
+		}
+		assertEquals(500, queues.getLength());
+
+		for (WebURL url : drain()) {
+			assertTrue("Duplicate: " + url.getDocid(), taken.add(url.getDocid()));
+		}
+		assertEquals(600, taken.size());
+	}
+
+	public void testGetAndDelete() throws Exception {
+		for (int docid : shuffledDocids(1, 200, 3)) {
+			queues.put(webUrl(docid));
+		}
+		List<WebURL> head = queues.get(HEAD_SIZE * 2);
+		assertEquals(HEAD_SIZE * 2, head.size());
+		queues.delete(HEAD_SIZE * 2);
+		assertEquals(100, queues.getLength());
+		WebURL next = queues.take(1, null).get(0);
+		assertTrue(compare(head.get(head.size() - 1), next) < 0);
+	}
+}
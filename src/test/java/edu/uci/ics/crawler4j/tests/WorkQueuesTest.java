@@ -0,0 +1,106 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import com.sleepycat.je.Transaction;
+import edu.uci.ics.crawler4j.frontier.InProcessPagesDB;
+import edu.uci.ics.crawler4j.frontier.WorkQueues;
+import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.IO;
+import junit.framework.TestCase;
+
+public class WorkQueuesTest extends TestCase {
+
+	private File folder;
+	private Environment env;
+	private WorkQueues queues;
+	private CountingInProcessPagesDB inProcessPages;
+
+	/**
+	 * Records the URLs that are moved in process.
+	 */
+	private static class CountingInProcessPagesDB extends InProcessPagesDB {
+
+		private final List<WebURL> puts = new ArrayList<>();
+
+		public CountingInProcessPagesDB(Environment env) {
+			super(env);
+		}
+
+		@Override
+		protected void put(WebURL url, Transaction txn) throws DatabaseException {
+			puts.add(url);
+			super.put(url, txn);
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = File.createTempFile("frontier", "");
+		assertTrue(folder.delete());
+		assertTrue(folder.mkdir());
+		EnvironmentConfig envConfig = new EnvironmentConfig();
+		envConfig.setAllowCreate(true);
+		envConfig.setTransactional(true);
+		envConfig.setLocking(true);
+		env = new Environment(folder, envConfig);
+		queues = new WorkQueues(env, "PendingURLsDB", true);
+		inProcessPages = new CountingInProcessPagesDB(env);
+		for (int docid = 1; docid <= 5; docid++) {
+			WebURL webUrl = new WebURL();
+			webUrl.setURL("http://www.example.com/" + docid + ".html");
+			webUrl.setDocid(docid);
+			queues.put(webUrl);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		inProcessPages.close();
+		queues.close();
+		env.close();
+		IO.deleteFolder(folder);
+	}
+
+	private static void assertUrls(List<WebURL> urls, int... docids) {
+		assertEquals(docids.length, urls.size());
+		for (int i = 0; i < docids.length; i++) {
+			assertEquals(docids[i], urls.get(i).getDocid());
+		}
+	}
+
+	public void testTakeMovesUrlsInProcess() throws Exception {
+		List<WebURL> urls = queues.take(3, inProcessPages);
+		assertUrls(urls, 1, 2, 3);
+		assertUrls(inProcessPages.puts, 1, 2, 3);
+		assertEquals(2, queues.getLength());
+		assertEquals(3, inProcessPages.getLength());
+		for (WebURL url : urls) {
+			assertTrue(inProcessPages.removeURL(url));
+		}
+
+		assertUrls(queues.get(10), 4, 5);
+	}
+
+	public void testTakeFromShortQueue() throws Exception {
+		assertUrls(queues.take(3, inProcessPages), 1, 2, 3);
+		assertUrls(queues.take(3, inProcessPages), 4, 5);
+		assertUrls(inProcessPages.puts, 1, 2, 3, 4, 5);
+		assertEquals(0, queues.getLength());
+		assertEquals(5, inProcessPages.getLength());
+
+		assertTrue(queues.take(3, inProcessPages).isEmpty());
+		assertEquals(5, inProcessPages.puts.size());
+	}
+
+	public void testTakeWithoutInProcessPages() throws Exception {
+		assertUrls(queues.take(2, null), 1, 2);
+		assertEquals(3, queues.getLength());
+		assertEquals(0, inProcessPages.getLength());
+	}
+}